@@ -0,0 +1,478 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * This class implements the future event queue as a calendar queue (R. Brown, "Calendar queues: a
+ * fast O(1) priority queue implementation for the simulation event set problem", CACM 1988).
+ * Events are hashed by their time into an array of buckets, each one covering a time interval of
+ * fixed width ("day"), and the buckets are visited cyclically ("year") as the simulation clock
+ * advances. The number of buckets and their width are recomputed whenever the queue doubles or
+ * halves, so that each bucket holds a small number of events on average: insertions and
+ * extractions are therefore amortized constant time, instead of the logarithmic cost of the
+ * {@link TreeSetFutureQueue}.
+ * <p>
+ * Within each bucket the events are kept in the same <tt>(time, serial)</tt> order defined by
+ * {@link SimEvent#compareTo(SimEvent)}, so the extraction order is the same of the default queue.
+ *
+ * @see FutureQueue
+ * @see TreeSetFutureQueue
+ */
+public class CalendarFutureQueue extends FutureQueue {
+
+	/** The minimum number of buckets of the calendar. */
+	private static final int MIN_BUCKETS = 16;
+
+	/** The number of distinct time separations sampled when resizing the calendar. */
+	private static final int SAMPLE_SIZE = 25;
+
+	/** The buckets, each one sorted by time and serial. */
+	private Bucket[] buckets;
+
+	/** The time interval covered by each bucket. */
+	private double width;
+
+	/** Lower bound of the virtual bucket (time / width) of all the events in the queue. */
+	private long cursor;
+
+	/** The bucket containing the first event, or -1 if it has to be searched again. */
+	private int minBucket;
+
+	/** The number of events in the queue. */
+	private int size;
+
+	/** Number of structural modifications, for fail-fast iterators. */
+	private int modCount;
+
+	public CalendarFutureQueue() {
+		this(1.0);
+	}
+
+	/**
+	 * @param initialWidth the initial time interval covered by each bucket. This is going to be
+	 *            adjusted to the actual event distribution as soon as the calendar is resized.
+	 */
+	public CalendarFutureQueue(double initialWidth) {
+		if (initialWidth <= 0) {
+			throw new IllegalArgumentException("The bucket width should be positive, but is:" + initialWidth);
+		}
+		width = initialWidth;
+		buckets = newBuckets(MIN_BUCKETS);
+		cursor = 0;
+		minBucket = -1;
+		size = 0;
+	}
+
+	@Override
+	protected void insert(SimEvent newEvent) {
+		if (size + 1 > 2 * buckets.length) {
+			resize(buckets.length * 2);
+		}
+		append(newEvent, false);
+		modCount++;
+	}
+
+	@Override
+	protected Iterator<SimEvent> sortedIterator() {
+		return new CalendarIterator();
+	}
+
+	@Override
+	public SimEvent peek() {
+		int b = findMinBucket();
+		return b < 0 ? null : buckets[b].first();
+	}
+
+	@Override
+	protected SimEvent extractFirst() {
+		int b = findMinBucket();
+		if (b < 0) {
+			return null;
+		}
+		SimEvent event = buckets[b].pollFirst();
+		size--;
+		modCount++;
+		minBucket = -1;
+		shrinkIfRequired();
+		return event;
+	}
+
+	@Override
+	protected void extractAllAt(double time, List<SimEvent> cohort) {
+		// Events sharing the same time always share the same bucket
+		int b = findMinBucket();
+		if (b < 0) {
+			return;
+		}
+		Bucket bucket = buckets[b];
+		int n = 0;
+		while (!bucket.isEmpty() && bucket.first().eventTime() == time) {
+			cohort.add(bucket.pollFirst());
+			n++;
+		}
+		if (n > 0) {
+			size -= n;
+			modCount++;
+			minBucket = -1;
+			shrinkIfRequired();
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	protected boolean extract(SimEvent event) {
+		if (size == 0 || !buckets[bucketOf(virtualBucket(event.eventTime()))].remove(event)) {
+			return false;
+		}
+		size--;
+		modCount++;
+		minBucket = -1;
+		shrinkIfRequired();
+		return true;
+	}
+
+	@Override
+	protected void clearEvents() {
+		buckets = newBuckets(MIN_BUCKETS);
+		cursor = 0;
+		minBucket = -1;
+		size = 0;
+		modCount++;
+	}
+
+	// ------------------- PRIVATE METHODS --------------------------
+
+	private long virtualBucket(double time) {
+		return (long) Math.floor(time / width);
+	}
+
+	private int bucketOf(long virtualBucket) {
+		return (int) Math.floorMod(virtualBucket, (long) buckets.length);
+	}
+
+	private static Bucket[] newBuckets(int n) {
+		Bucket[] result = new Bucket[n];
+		for (int i = 0; i < n; i++) {
+			result[i] = new Bucket();
+		}
+		return result;
+	}
+
+	/**
+	 * Stores the event in its bucket, keeping the cached position of the first event up to date.
+	 *
+	 * @param newEvent the event to be stored
+	 * @param sorted whether the event is known to follow all the events already in the queue
+	 */
+	private void append(SimEvent newEvent, boolean sorted) {
+		long v = virtualBucket(newEvent.eventTime());
+		int b = bucketOf(v);
+		if (size == 0 || v < cursor) {
+			cursor = v;
+		}
+		if (size == 0) {
+			minBucket = b;
+		} else if (minBucket >= 0 && newEvent.compareTo(buckets[minBucket].first()) < 0) {
+			minBucket = b;
+		}
+		if (sorted) {
+			buckets[b].addLast(newEvent);
+		} else {
+			buckets[b].add(newEvent);
+		}
+		size++;
+	}
+
+	/**
+	 * Finds the bucket holding the first event, by visiting the buckets of the current year from
+	 * the cursor onwards. If a whole year is empty, it falls back to a direct search.
+	 *
+	 * @return the bucket index, or -1 if the queue is empty
+	 */
+	private int findMinBucket() {
+		if (size == 0) {
+			return -1;
+		}
+		if (minBucket >= 0) {
+			return minBucket;
+		}
+		for (int k = 0; k < buckets.length; k++) {
+			long v = cursor + k;
+			int b = bucketOf(v);
+			Bucket bucket = buckets[b];
+			if (!bucket.isEmpty() && virtualBucket(bucket.first().eventTime()) == v) {
+				cursor = v;
+				minBucket = b;
+				return b;
+			}
+		}
+		SimEvent best = null;
+		for (int b = 0; b < buckets.length; b++) {
+			Bucket bucket = buckets[b];
+			if (!bucket.isEmpty() && (best == null || bucket.first().compareTo(best) < 0)) {
+				best = bucket.first();
+				minBucket = b;
+			}
+		}
+		cursor = virtualBucket(best.eventTime());
+		return minBucket;
+	}
+
+	private void shrinkIfRequired() {
+		if (buckets.length > MIN_BUCKETS && size < buckets.length / 2) {
+			resize(buckets.length / 2);
+		}
+	}
+
+	/**
+	 * Rebuilds the calendar with a new number of buckets, estimating the bucket width from the
+	 * separation between the first distinct event times.
+	 *
+	 * @param nBuckets the new number of buckets
+	 */
+	private void resize(int nBuckets) {
+		int n = size;
+		SimEvent[] all = new SimEvent[n];
+		for (int i = 0; i < n; i++) {
+			int b = findMinBucket();
+			all[i] = buckets[b].pollFirst();
+			size--;
+			minBucket = -1;
+		}
+		width = estimateWidth(all);
+		buckets = newBuckets(nBuckets);
+		minBucket = -1;
+		size = 0;
+		for (SimEvent event : all) {
+			append(event, true);
+		}
+	}
+
+	private double estimateWidth(SimEvent[] sorted) {
+		double sum = 0;
+		int count = 0;
+		double[] gaps = new double[SAMPLE_SIZE];
+		for (int i = 1; i < sorted.length && count < SAMPLE_SIZE; i++) {
+			double gap = sorted[i].eventTime() - sorted[i - 1].eventTime();
+			if (gap > 0) {
+				gaps[count++] = gap;
+				sum += gap;
+			}
+		}
+		if (count == 0) {
+			return width;
+		}
+		// Discarding the separations that are much larger than the average, as in Brown's paper
+		double average = sum / count;
+		double filteredSum = 0;
+		int filteredCount = 0;
+		for (int i = 0; i < count; i++) {
+			if (gaps[i] <= 2 * average) {
+				filteredSum += gaps[i];
+				filteredCount++;
+			}
+		}
+		double result = 3 * (filteredCount == 0 ? average : filteredSum / filteredCount);
+		return result > 0 ? result : width;
+	}
+
+	/**
+	 * Visits the events in their temporal order, without copying the queue: each call to
+	 * {@link #next()} costs as an extraction from the calendar.
+	 */
+	private class CalendarIterator implements Iterator<SimEvent> {
+
+		/** Next position to be visited within each bucket that has been visited so far. */
+		private final Map<Integer, Integer> positions = new HashMap<>();
+
+		private long current = cursor;
+		private int visited = 0;
+		private int lastBucket = -1;
+		private int expectedModCount = modCount;
+
+		private int position(int b) {
+			Integer pos = positions.get(b);
+			return pos == null ? buckets[b].head : pos;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return visited < size;
+		}
+
+		@Override
+		public SimEvent next() {
+			if (expectedModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			if (visited >= size) {
+				throw new NoSuchElementException();
+			}
+			int found = -1;
+			for (int k = 0; k < buckets.length && found < 0; k++, current++) {
+				int b = bucketOf(current);
+				int pos = position(b);
+				if (pos < buckets[b].tail && virtualBucket(buckets[b].events[pos].eventTime()) == current) {
+					found = b;
+					break;
+				}
+			}
+			if (found < 0) {
+				SimEvent best = null;
+				for (int b = 0; b < buckets.length; b++) {
+					int pos = position(b);
+					if (pos < buckets[b].tail && (best == null || buckets[b].events[pos].compareTo(best) < 0)) {
+						best = buckets[b].events[pos];
+						found = b;
+					}
+				}
+				current = virtualBucket(best.eventTime());
+			}
+			int pos = position(found);
+			positions.put(found, pos + 1);
+			lastBucket = found;
+			visited++;
+			return buckets[found].events[pos];
+		}
+
+		@Override
+		public void remove() {
+			if (lastBucket < 0) {
+				throw new IllegalStateException();
+			}
+			if (expectedModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			int pos = positions.get(lastBucket) - 1;
+			buckets[lastBucket].removeAt(pos);
+			positions.put(lastBucket, pos);
+			lastBucket = -1;
+			visited--;
+			size--;
+			minBucket = -1;
+			modCount++;
+			expectedModCount = modCount;
+		}
+	}
+
+	/**
+	 * A bucket of the calendar: a sorted array where the first events are removed by moving the
+	 * head, so that extracting a whole cohort of same-time events never shifts the array.
+	 */
+	private static class Bucket {
+
+		private SimEvent[] events = new SimEvent[4];
+		private int head = 0;
+		private int tail = 0;
+
+		boolean isEmpty() {
+			return head == tail;
+		}
+
+		SimEvent first() {
+			return events[head];
+		}
+
+		SimEvent pollFirst() {
+			SimEvent event = events[head];
+			events[head++] = null;
+			if (head == tail) {
+				head = tail = 0;
+			}
+			return event;
+		}
+
+		void addLast(SimEvent event) {
+			ensureCapacity();
+			events[tail++] = event;
+		}
+
+		void add(SimEvent event) {
+			// Fast path: the events scheduled later than all the others are appended
+			if (isEmpty() || events[tail - 1].compareTo(event) < 0) {
+				addLast(event);
+				return;
+			}
+			ensureCapacity();
+			// First position whose event follows the new one
+			int lo = head, hi = tail;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (event.compareTo(events[mid]) < 0) {
+					hi = mid;
+				} else {
+					lo = mid + 1;
+				}
+			}
+			System.arraycopy(events, lo, events, lo + 1, tail - lo);
+			events[lo] = event;
+			tail++;
+		}
+
+		boolean remove(SimEvent event) {
+			double time = event.eventTime();
+			// First position having the same time of the event
+			int lo = head, hi = tail;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (events[mid].eventTime() < time) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			for (int i = lo; i < tail && events[i].eventTime() == time; i++) {
+				if (events[i] == event) {
+					if (i == head) {
+						pollFirst();
+					} else {
+						removeAt(i);
+					}
+					return true;
+				}
+			}
+			return false;
+		}
+
+		void removeAt(int i) {
+			System.arraycopy(events, i + 1, events, i, tail - i - 1);
+			events[--tail] = null;
+			if (head == tail) {
+				head = tail = 0;
+			}
+		}
+
+		private void ensureCapacity() {
+			if (tail < events.length) {
+				return;
+			}
+			if (head > 0) {
+				System.arraycopy(events, head, events, 0, tail - head);
+				Arrays.fill(events, tail - head, tail, null);
+				tail -= head;
+				head = 0;
+			} else {
+				events = Arrays.copyOf(events, events.length * 2);
+			}
+		}
+	}
+
+}
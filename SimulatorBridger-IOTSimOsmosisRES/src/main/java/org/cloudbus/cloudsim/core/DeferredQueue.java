@@ -8,15 +8,20 @@
 
 package org.cloudbus.cloudsim.core;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
-import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 
 /**
- * This class implements the deferred event queue used by {@link Simulation}. The event queue uses a
- * linked list to store the events.
- * 
+ * This class implements the deferred event queue used by {@link Simulation}. The events are
+ * indexed by their destination entity, and each entity has its own linked list of events in
+ * temporal order: looking up the events of one entity does not visit the ones deferred to the
+ * other entities. As long as no event is added, the events of distinct entities can be looked up
+ * and removed concurrently, as the logical processes run by {@link LogicalProcessExecutor} do.
+ *
  * @author Marcos Dias de Assuncao
  * @since CloudSim Toolkit 1.0
  * @see Simulation
@@ -24,25 +29,23 @@ import java.util.ListIterator;
  */
 public class DeferredQueue {
 
-	/** The list. */
-	private final List<SimEvent> list = new LinkedList<SimEvent>();
-
-	/** The max time. */
-	private double maxTime = -1;
+	/** The lists of events, indexed by the destination entity id. */
+	private final Map<Integer, LinkedList<SimEvent>> byDestination = new HashMap<>();
 
 	/**
 	 * Adds a new event to the queue. Adding a new event to the queue preserves the temporal order
 	 * of the events.
-	 * 
+	 *
 	 * @param newEvent The event to be added to the queue.
 	 */
 	public void addEvent(SimEvent newEvent) {
+		LinkedList<SimEvent> list = byDestination.computeIfAbsent(newEvent.getDestination(), k -> new LinkedList<>());
+
 		// The event has to be inserted as the last of all events
 		// with the same event_time(). Yes, this matters.
 		double eventTime = newEvent.eventTime();
-		if (eventTime >= maxTime) {
+		if (list.isEmpty() || eventTime >= list.getLast().eventTime()) {
 			list.add(newEvent);
-			maxTime = eventTime;
 			return;
 		}
 
@@ -61,28 +64,94 @@ public class DeferredQueue {
 	}
 
 	/**
-	 * Returns an iterator to the events in the queue.
-	 * 
+	 * Returns an iterator to the events in the queue, grouped by destination entity.
+	 *
 	 * @return the iterator
 	 */
 	public Iterator<SimEvent> iterator() {
+		Iterator<LinkedList<SimEvent>> lists = byDestination.values().iterator();
+		return new Iterator<SimEvent>() {
+			private Iterator<SimEvent> current = Collections.emptyIterator();
+
+			@Override
+			public boolean hasNext() {
+				while (!current.hasNext() && lists.hasNext()) {
+					current = lists.next().iterator();
+				}
+				return current.hasNext();
+			}
+
+			@Override
+			public SimEvent next() {
+				hasNext();
+				return current.next();
+			}
+
+			@Override
+			public void remove() {
+				current.remove();
+			}
+		};
+	}
+
+	/**
+	 * Returns an iterator to the events in the queue having a given destination, in their temporal
+	 * order.
+	 *
+	 * @param destination the id of the destination entity
+	 * @return the iterator
+	 */
+	public Iterator<SimEvent> iterator(int destination) {
+		LinkedList<SimEvent> list = byDestination.get(destination);
+		if (list == null) {
+			return Collections.emptyIterator();
+		}
 		return list.iterator();
 	}
 
+	/**
+	 * Returns the number of events in the queue having a given destination.
+	 *
+	 * @param destination the id of the destination entity
+	 * @return the number of events
+	 */
+	public int size(int destination) {
+		LinkedList<SimEvent> list = byDestination.get(destination);
+		return list == null ? 0 : list.size();
+	}
+
+	/**
+	 * Removes the first event in the queue having a given destination.
+	 *
+	 * @param destination the id of the destination entity
+	 * @return the event, or <tt>null</tt> if there are no events for the destination
+	 */
+	public SimEvent pollFirst(int destination) {
+		LinkedList<SimEvent> list = byDestination.get(destination);
+		if (list == null || list.isEmpty()) {
+			return null;
+		}
+		return list.removeFirst();
+	}
+
 	/**
 	 * Returns the size of this event queue.
-	 * 
+	 *
 	 * @return the number of events in the queue.
 	 */
 	public int size() {
-		return list.size();
+		int size = 0;
+		for (LinkedList<SimEvent> list : byDestination.values()) {
+			size += list.size();
+		}
+		return size;
 	}
 
 	/**
 	 * Clears the queue.
 	 */
 	public void clear() {
-		list.clear();
+		byDestination.clear();
 	}
 
-}
\ No newline at end of file
+}
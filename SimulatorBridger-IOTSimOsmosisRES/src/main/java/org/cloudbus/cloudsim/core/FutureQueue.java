@@ -8,92 +8,348 @@
 
 package org.cloudbus.cloudsim.core;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.List;
+import java.util.Map;
+
+import org.cloudbus.cloudsim.core.predicates.Predicate;
 
 /**
- * This class implements the future event queue used by {@link Simulation}. The event queue uses a
- * {@link TreeSet} in order to store the events.
- * 
+ * This class defines the future event queue used by {@link MainEventManager}. Events are kept
+ * ordered by their time and, for events sharing the same time, by their insertion serial. The
+ * actual storage is left to the subclasses: {@link TreeSetFutureQueue} is the original CloudSim
+ * implementation, while {@link CalendarFutureQueue} provides amortized constant time insertions
+ * and extractions for simulations keeping many events in flight.
+ * <p>
+ * The queue also indexes the events by their source entity, so that cancelling the events of an
+ * entity only visits the events that entity scheduled. The index is updated lazily: the events
+ * leaving the queue are only marked as such, and are purged from the index when it is visited or
+ * when it has grown twice since its last purge.
+ *
  * @author Marcos Dias de Assuncao
  * @since CloudSim Toolkit 1.0
- * @see Simulation
- * @see java.util.TreeSet
+ * @see MainEventManager
+ * @see TreeSetFutureQueue
+ * @see CalendarFutureQueue
  */
-public class FutureQueue {
-
-	/** The sorted set. */
-	private final SortedSet<SimEvent> sortedSet = new TreeSet<SimEvent>();
+public abstract class FutureQueue {
 
 	/** The serial. */
 	private long serial = 0;
 
+	/** The events scheduled by each source entity, possibly including the ones already removed. */
+	private final Map<Integer, SourceIndex> bySource = new HashMap<>();
+
 	/**
 	 * Add a new event to the queue. Adding a new event to the queue preserves the temporal order of
 	 * the events in the queue.
-	 * 
+	 *
 	 * @param newEvent The event to be put in the queue.
 	 */
 	public void addEvent(SimEvent newEvent) {
 		newEvent.setSerial(serial++);
-		sortedSet.add(newEvent);
+		enqueue(newEvent);
 	}
 
 	/**
 	 * Add a new event to the head of the queue.
-	 * 
+	 *
 	 * @param newEvent The event to be put in the queue.
 	 */
 	public void addEventFirst(SimEvent newEvent) {
 		newEvent.setSerial(0);
-		sortedSet.add(newEvent);
+		enqueue(newEvent);
+	}
+
+	private void enqueue(SimEvent newEvent) {
+		insert(newEvent);
+		newEvent.setQueued(true);
+		bySource.computeIfAbsent(newEvent.getSource(), k -> new SourceIndex()).add(newEvent);
 	}
 
 	/**
-	 * Returns an iterator to the queue.
-	 * 
+	 * Returns an iterator to the queue, visiting the events in their temporal order.
+	 *
 	 * @return the iterator
 	 */
 	public Iterator<SimEvent> iterator() {
-		return sortedSet.iterator();
+		Iterator<SimEvent> it = sortedIterator();
+		return new Iterator<SimEvent>() {
+			private SimEvent last;
+
+			@Override
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+
+			@Override
+			public SimEvent next() {
+				last = it.next();
+				return last;
+			}
+
+			@Override
+			public void remove() {
+				it.remove();
+				last.setQueued(false);
+			}
+		};
+	}
+
+	/**
+	 * Returns the first event of the queue without removing it.
+	 *
+	 * @return the first event, or <tt>null</tt> if the queue is empty
+	 */
+	public abstract SimEvent peek();
+
+	/**
+	 * Removes and returns the first event of the queue.
+	 *
+	 * @return the first event, or <tt>null</tt> if the queue is empty
+	 */
+	public SimEvent poll() {
+		SimEvent event = extractFirst();
+		if (event != null) {
+			event.setQueued(false);
+		}
+		return event;
+	}
+
+	/**
+	 * Removes all the events scheduled at the given time from the head of the queue, appending them
+	 * to the cohort in their temporal order. The events are expected to be at the head of the
+	 * queue, i.e. <tt>time</tt> should be the time of the first event.
+	 *
+	 * @param time the time of the cohort of events
+	 * @param cohort the list where the removed events are appended
+	 * @return the cohort
+	 */
+	public List<SimEvent> pollAllAt(double time, List<SimEvent> cohort) {
+		int from = cohort.size();
+		extractAllAt(time, cohort);
+		for (int i = from, n = cohort.size(); i < n; i++) {
+			cohort.get(i).setQueued(false);
+		}
+		return cohort;
+	}
+
+	/**
+	 * Removes all the events scheduled at the given time from the head of the queue.
+	 *
+	 * @param time the time of the cohort of events
+	 * @return the removed events, in their temporal order
+	 */
+	public List<SimEvent> pollAllAt(double time) {
+		return pollAllAt(time, new ArrayList<>());
 	}
 
 	/**
 	 * Returns the size of this event queue.
-	 * 
+	 *
 	 * @return the size
 	 */
-	public int size() {
-		return sortedSet.size();
-	}
+	public abstract int size();
 
 	/**
 	 * Removes the event from the queue.
-	 * 
+	 *
 	 * @param event the event
 	 * @return true, if successful
 	 */
 	public boolean remove(SimEvent event) {
-		return sortedSet.remove(event);
+		if (!event.isQueued() || !extract(event)) {
+			return false;
+		}
+		event.setQueued(false);
+		return true;
 	}
 
 	/**
 	 * Removes all the events from the queue.
-	 * 
+	 *
 	 * @param events the events
 	 * @return true, if successful
 	 */
 	public boolean removeAll(Collection<SimEvent> events) {
-		return sortedSet.removeAll(events);
+		boolean changed = false;
+		for (SimEvent event : events) {
+			changed |= remove(event);
+		}
+		return changed;
+	}
+
+	/**
+	 * Removes the first event scheduled by an entity and matching a predicate.
+	 *
+	 * @param src the id of the entity that scheduled the event
+	 * @param p the predicate
+	 * @return the removed event, or <tt>null</tt> if no event matches
+	 */
+	public SimEvent cancel(int src, Predicate p) {
+		SourceIndex index = bySource.get(src);
+		if (index == null) {
+			return null;
+		}
+		SimEvent first = null;
+		index.purge();
+		for (int i = 0; i < index.size; i++) {
+			SimEvent event = index.events[i];
+			if (p.match(event) && (first == null || event.compareTo(first) < 0)) {
+				first = event;
+			}
+		}
+		if (first != null) {
+			remove(first);
+		}
+		return first;
+	}
+
+	/**
+	 * Removes all the events scheduled by an entity and matching a predicate.
+	 *
+	 * @param src the id of the entity that scheduled the events
+	 * @param p the predicate
+	 * @return the number of removed events
+	 */
+	public int cancelAll(int src, Predicate p) {
+		SourceIndex index = bySource.get(src);
+		if (index == null) {
+			return 0;
+		}
+		int count = 0;
+		index.purge();
+		for (int i = 0; i < index.size; i++) {
+			SimEvent event = index.events[i];
+			if (p.match(event) && remove(event)) {
+				count++;
+			}
+		}
+		if (count > 0) {
+			index.purge();
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the events scheduled by an entity that are still in the queue, in insertion order.
+	 * Differently from {@link #cancel(int, Predicate)}, the index is not purged: the queue is left
+	 * untouched, so that the logical processes running in parallel can read it concurrently.
+	 *
+	 * @param src the id of the entity that scheduled the events
+	 * @return the queued events
+	 * @see LogicalProcessExecutor
+	 */
+	List<SimEvent> queuedBy(int src) {
+		List<SimEvent> result = new ArrayList<>();
+		SourceIndex index = bySource.get(src);
+		if (index != null) {
+			for (int i = 0; i < index.size; i++) {
+				if (index.events[i].isQueued()) {
+					result.add(index.events[i]);
+				}
+			}
+		}
+		return result;
 	}
 
 	/**
 	 * Clears the queue.
 	 */
 	public void clear() {
-		sortedSet.clear();
+		clearEvents();
+		bySource.clear();
+	}
+
+	// ------------------- STORAGE METHODS --------------------------
+
+	/**
+	 * Stores an event whose serial has already been set.
+	 *
+	 * @param newEvent The event to be put in the queue.
+	 */
+	protected abstract void insert(SimEvent newEvent);
+
+	/**
+	 * Returns an iterator visiting the stored events in their temporal order.
+	 *
+	 * @return the iterator
+	 */
+	protected abstract Iterator<SimEvent> sortedIterator();
+
+	/**
+	 * Removes and returns the first stored event.
+	 *
+	 * @return the first event, or <tt>null</tt> if the queue is empty
+	 */
+	protected abstract SimEvent extractFirst();
+
+	/**
+	 * Removes all the stored events scheduled at the given time from the head of the queue.
+	 *
+	 * @param time the time of the cohort of events
+	 * @param cohort the list where the removed events are appended
+	 */
+	protected void extractAllAt(double time, List<SimEvent> cohort) {
+		SimEvent first = peek();
+		while (first != null && first.eventTime() == time) {
+			cohort.add(extractFirst());
+			first = peek();
+		}
+	}
+
+	/**
+	 * Removes a stored event.
+	 *
+	 * @param event the event
+	 * @return true, if the event was stored
+	 */
+	protected abstract boolean extract(SimEvent event);
+
+	/**
+	 * Removes all the stored events.
+	 */
+	protected abstract void clearEvents();
+
+	/**
+	 * The events scheduled by one source entity, in insertion order.
+	 */
+	private static class SourceIndex {
+
+		private SimEvent[] events = new SimEvent[8];
+		private int size = 0;
+
+		/** The size beyond which the events no longer in the queue are purged. */
+		private int threshold = 8;
+
+		void add(SimEvent event) {
+			if (size >= threshold) {
+				purge();
+				threshold = Math.max(8, 2 * size);
+			}
+			if (size == events.length) {
+				events = Arrays.copyOf(events, Math.max(size * 2, threshold));
+			}
+			events[size++] = event;
+		}
+
+		/**
+		 * Removes the tombstones, i.e. the events that already left the queue.
+		 */
+		void purge() {
+			int w = 0;
+			for (int i = 0; i < size; i++) {
+				if (events[i].isQueued()) {
+					events[w++] = events[i];
+				}
+			}
+			Arrays.fill(events, w, size, null);
+			size = w;
+		}
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,203 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Compares the future event queue implementations by replaying the same event trace on each of
+ * them. The trace is either recorded from an actual simulation through {@link TracingFutureQueue}
+ * and passed as the first argument, or synthetically generated with the "hold" model: a steady
+ * number of events in flight, where each extraction schedules a new event either at the next
+ * simulation tick (as the IoT devices do) or after a short network delay.
+ * <p>
+ * Usage: <tt>FutureQueueBenchmark [trace.csv | eventsInFlight operations]</tt>
+ */
+public class FutureQueueBenchmark {
+
+	private static final byte ADD = 0;
+	private static final byte ADD_FIRST = 1;
+	private static final byte REMOVE = 2;
+	private static final byte CLEAR = 3;
+
+	private static final int ROUNDS = 5;
+
+	/** The recorded operations, as parallel arrays. */
+	private byte[] op = new byte[1024];
+	private int[] id = new int[1024];
+	private double[] time = new double[1024];
+	private int length = 0;
+	private int nEvents = 0;
+
+	private void record(byte o, int i, double t) {
+		if (length == op.length) {
+			op = Arrays.copyOf(op, length * 2);
+			id = Arrays.copyOf(id, length * 2);
+			time = Arrays.copyOf(time, length * 2);
+		}
+		op[length] = o;
+		id[length] = i;
+		time[length] = t;
+		length++;
+		nEvents = Math.max(nEvents, i + 1);
+	}
+
+	public static FutureQueueBenchmark fromTrace(File traceFile) throws IOException {
+		FutureQueueBenchmark result = new FutureQueueBenchmark();
+		try (BufferedReader reader = new BufferedReader(new FileReader(traceFile))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] args = line.split(",");
+				switch (args[0]) {
+					case "A" -> result.record(ADD, Integer.parseInt(args[1]), Double.parseDouble(args[2]));
+					case "F" -> result.record(ADD_FIRST, Integer.parseInt(args[1]), Double.parseDouble(args[2]));
+					case "R" -> result.record(REMOVE, Integer.parseInt(args[1]), 0);
+					case "C" -> result.record(CLEAR, 0, 0);
+					default -> throw new IOException("Unexpected trace line: " + line);
+				}
+			}
+		}
+		return result;
+	}
+
+	public static FutureQueueBenchmark holdModel(int eventsInFlight, int operations, long seed) {
+		FutureQueueBenchmark result = new FutureQueueBenchmark();
+		Random random = new Random(seed);
+		// The reference queue used for generating the trace: (time, id) pairs
+		PriorityQueue<double[]> reference = new PriorityQueue<>((a, b) -> a[0] != b[0] ? Double.compare(a[0], b[0]) : Double.compare(a[1], b[1]));
+		int nextId = 0;
+		double clock = 0;
+		for (int i = 0; i < eventsInFlight; i++) {
+			double t = nextTime(random, clock);
+			result.record(ADD, nextId, t);
+			reference.add(new double[]{t, nextId++});
+		}
+		for (int i = 0; i < operations; i++) {
+			double[] first = reference.poll();
+			clock = first[0];
+			result.record(REMOVE, (int) first[1], 0);
+			double t = nextTime(random, clock);
+			result.record(ADD, nextId, t);
+			reference.add(new double[]{t, nextId++});
+		}
+		return result;
+	}
+
+	private static double nextTime(Random random, double clock) {
+		if (random.nextBoolean()) {
+			// Granularity-aligned update, as the IoT devices' ticks
+			return Math.floor(clock) + 1 + random.nextInt(3);
+		} else {
+			// Network delay
+			return clock - Math.log(1 - random.nextDouble()) * 0.05;
+		}
+	}
+
+	/**
+	 * Replays the trace over a queue.
+	 *
+	 * @return the elapsed nanoseconds
+	 */
+	private long replay(FutureQueue queue) {
+		SimEvent[] events = new SimEvent[nEvents];
+		long start = System.nanoTime();
+		for (int i = 0; i < length; i++) {
+			switch (op[i]) {
+				case ADD -> {
+					SimEvent event = new SimEvent(SimEvent.SEND, time[i], 0, 0, 0, null);
+					events[id[i]] = event;
+					queue.addEvent(event);
+				}
+				case ADD_FIRST -> {
+					SimEvent event = new SimEvent(SimEvent.SEND, time[i], 0, 0, 0, null);
+					events[id[i]] = event;
+					queue.addEventFirst(event);
+				}
+				case REMOVE -> {
+					// The simulator always inspects the head before removing
+					queue.peek();
+					queue.remove(events[id[i]]);
+					events[id[i]] = null;
+				}
+				case CLEAR -> queue.clear();
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+		if (queue.size() != countPending(events)) {
+			throw new IllegalStateException(queue.getClass().getSimpleName() + " lost some events");
+		}
+		return elapsed;
+	}
+
+	private static int countPending(SimEvent[] events) {
+		int count = 0;
+		for (SimEvent event : events) {
+			if (event != null) count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Checks that the queue extracts the events in the same order of the reference one.
+	 */
+	private boolean sameOrder(Supplier<FutureQueue> reference, Supplier<FutureQueue> candidate) {
+		FutureQueue a = reference.get();
+		FutureQueue b = candidate.get();
+		for (int i = 0; i < length && op[i] != REMOVE && op[i] != CLEAR; i++) {
+			SimEvent event = new SimEvent(SimEvent.SEND, time[i], i, 0, 0, null);
+			SimEvent copy = new SimEvent(SimEvent.SEND, time[i], i, 0, 0, null);
+			if (op[i] == ADD_FIRST) {
+				a.addEventFirst(event);
+				b.addEventFirst(copy);
+			} else {
+				a.addEvent(event);
+				b.addEvent(copy);
+			}
+		}
+		while (a.size() > 0) {
+			if (b.size() == 0 || a.poll().getSource() != b.poll().getSource()) {
+				return false;
+			}
+		}
+		return b.size() == 0;
+	}
+
+	private void run(String name, Supplier<FutureQueue> generator) {
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < ROUNDS; i++) {
+			best = Math.min(best, replay(generator.get()));
+		}
+		System.out.printf("%-25s %12.1f ns/op %14.0f op/s%n", name, ((double) best) / length, length * 1e9 / best);
+	}
+
+	public static void main(String[] args) throws IOException {
+		FutureQueueBenchmark benchmark;
+		if (args.length == 1) {
+			benchmark = fromTrace(new File(args[0]));
+		} else {
+			int eventsInFlight = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+			int operations = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+			benchmark = holdModel(eventsInFlight, operations, 0);
+		}
+		System.out.println("Operations: " + benchmark.length + ", distinct events: " + benchmark.nEvents);
+		if (!benchmark.sameOrder(TreeSetFutureQueue::new, CalendarFutureQueue::new)) {
+			throw new IllegalStateException("The calendar queue does not preserve the (time, serial) ordering");
+		}
+		benchmark.run("TreeSetFutureQueue", TreeSetFutureQueue::new);
+		benchmark.run("CalendarFutureQueue", CalendarFutureQueue::new);
+	}
+
+}
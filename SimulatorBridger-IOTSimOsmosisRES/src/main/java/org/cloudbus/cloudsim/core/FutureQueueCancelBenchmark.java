@@ -0,0 +1,107 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import org.cloudbus.cloudsim.core.predicates.Predicate;
+import org.cloudbus.cloudsim.core.predicates.PredicateType;
+
+/**
+ * Measures the cost of cancelling the events of one entity, as the agents and the broker do when
+ * they re-schedule their own wake-ups. Each entity keeps some wake-up events and some other events
+ * in flight; at each round a random entity cancels its first wake-up (or all of them) and schedules
+ * a new one. The source-indexed cancellation of {@link FutureQueue} is compared with the full scan
+ * of the queue that {@link MainEventManager} used to perform.
+ * <p>
+ * Usage: <tt>FutureQueueCancelBenchmark [entities eventsPerEntity rounds]</tt>
+ */
+public class FutureQueueCancelBenchmark {
+
+	private static final int WAKE_UP = 1;
+	private static final int OTHER = 2;
+	private static final int ROUNDS = 5;
+
+	private final int entities;
+	private final int eventsPerEntity;
+	private final int rounds;
+
+	public FutureQueueCancelBenchmark(int entities, int eventsPerEntity, int rounds) {
+		this.entities = entities;
+		this.eventsPerEntity = eventsPerEntity;
+		this.rounds = rounds;
+	}
+
+	private interface Canceller {
+		void cancel(FutureQueue queue, int src, Predicate p, boolean all);
+	}
+
+	/** The cancellation as it was implemented before the source index. */
+	private static void scan(FutureQueue queue, int src, Predicate p, boolean all) {
+		Iterator<SimEvent> iter = queue.iterator();
+		while (iter.hasNext()) {
+			SimEvent ev = iter.next();
+			if (ev.getSource() == src && p.match(ev)) {
+				iter.remove();
+				if (!all) break;
+			}
+		}
+	}
+
+	private static void indexed(FutureQueue queue, int src, Predicate p, boolean all) {
+		if (all) {
+			queue.cancelAll(src, p);
+		} else {
+			queue.cancel(src, p);
+		}
+	}
+
+	private long run(FutureQueue queue, Canceller canceller, boolean all) {
+		Random random = new Random(0);
+		Predicate wakeUp = new PredicateType(WAKE_UP);
+		for (int src = 0; src < entities; src++) {
+			for (int i = 0; i < eventsPerEntity; i++) {
+				int tag = i % 4 == 0 ? WAKE_UP : OTHER;
+				queue.addEvent(new SimEvent(SimEvent.SEND, random.nextDouble() * 1000, src, 0, tag, null));
+			}
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < rounds; i++) {
+			int src = random.nextInt(entities);
+			canceller.cancel(queue, src, wakeUp, all);
+			queue.addEvent(new SimEvent(SimEvent.SEND, random.nextDouble() * 1000, src, 0, WAKE_UP, null));
+		}
+		return System.nanoTime() - start;
+	}
+
+	private void measure(String name, Supplier<FutureQueue> generator, Canceller canceller, boolean all) {
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < ROUNDS; i++) {
+			best = Math.min(best, run(generator.get(), canceller, all));
+		}
+		System.out.printf("%-45s %12.1f ns/cancellation%n", name, ((double) best) / rounds);
+	}
+
+	public static void main(String[] args) {
+		int entities = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int eventsPerEntity = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+		FutureQueueCancelBenchmark benchmark = new FutureQueueCancelBenchmark(entities, eventsPerEntity, rounds);
+		System.out.println("Events in flight: " + entities * eventsPerEntity + ", cancellations: " + rounds);
+		for (boolean all : new boolean[]{false, true}) {
+			String op = all ? "cancelAll" : "cancel";
+			benchmark.measure(op + " scan, TreeSetFutureQueue", TreeSetFutureQueue::new, FutureQueueCancelBenchmark::scan, all);
+			benchmark.measure(op + " indexed, TreeSetFutureQueue", TreeSetFutureQueue::new, FutureQueueCancelBenchmark::indexed, all);
+			benchmark.measure(op + " indexed, CalendarFutureQueue", CalendarFutureQueue::new, FutureQueueCancelBenchmark::indexed, all);
+		}
+	}
+
+}
@@ -0,0 +1,380 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cloudbus.cloudsim.core.predicates.Predicate;
+
+/**
+ * This class runs the entities of the simulation as conservative logical processes. Each entity can
+ * be assigned to a logical process (e.g. one per datacenter, together with its SDN controller,
+ * hosts and switches); the entities that are not assigned to any process are shared, and are run
+ * on the simulation thread as in the sequential case.
+ * <p>
+ * At each clock tick, the runnable entities belonging to different logical processes are run in
+ * parallel, each process running its own entities in their id order. As the processes only
+ * interact through events, the lookahead is given by the time at which those events are delivered:
+ * the network links of the topology do not carry any latency, so an event can reach another
+ * process at the very same time it was sent, and the processes are synchronised at each distinct
+ * event time. While running in parallel the entities do not change the event queues: the events
+ * they schedule, cancel or wait for are buffered in an outbox per entity, which is committed to
+ * the queues in entity id order once all the processes completed the tick. Therefore, the events
+ * get the same serials, and the simulation the same results, of the sequential run.
+ * <p>
+ * The entities of a logical process must not access the state of the entities of other processes
+ * (nor the state of the shared ones) other than through events, and cannot create new entities.
+ *
+ * @see MainEventManager#setLogicalProcessExecutor(LogicalProcessExecutor)
+ */
+public class LogicalProcessExecutor {
+
+	/** The id of the logical process of the shared entities. */
+	public static final int SHARED = -1;
+
+	/** Whether the logical processes are currently running in parallel. */
+	static boolean parallelPhase = false;
+
+	/** The outbox of the entity being run by the current thread. */
+	private static final ThreadLocal<Outbox> CURRENT = new ThreadLocal<>();
+
+	private final ExecutorService pool;
+
+	/** The logical process of each entity, indexed by entity id. */
+	private int[] processOf = new int[0];
+
+	/** The number of logical processes. */
+	private int processes = 0;
+
+	/** The outboxes, indexed by entity id. */
+	private Outbox[] outboxes = new Outbox[0];
+
+	/**
+	 * Creates an executor running the logical processes on a pool of threads.
+	 *
+	 * @param threads the number of threads
+	 */
+	public LogicalProcessExecutor(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("The number of threads should be positive, but is: " + threads);
+		}
+		AtomicInteger count = new AtomicInteger();
+		this.pool = Executors.newFixedThreadPool(threads, r -> {
+			Thread thread = new Thread(r, "logical-process-" + count.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Assigns an entity to a logical process.
+	 *
+	 * @param entity the entity, already added to the simulation
+	 * @param process the id of the logical process, or {@link #SHARED}
+	 */
+	public void assign(SimEntity entity, int process) {
+		int id = entity.getId();
+		if (id < 0) {
+			throw new IllegalArgumentException("The entity " + entity.getName() + " has not been added to the simulation");
+		}
+		if (id >= processOf.length) {
+			int from = processOf.length;
+			processOf = Arrays.copyOf(processOf, Math.max(id + 1, 2 * from));
+			Arrays.fill(processOf, from, processOf.length, SHARED);
+		}
+		processOf[id] = process;
+		processes = Math.max(processes, process + 1);
+	}
+
+	/**
+	 * Gets the logical process of an entity.
+	 *
+	 * @param id the entity id
+	 * @return the id of the logical process, or {@link #SHARED}
+	 */
+	public int getProcess(int id) {
+		return id < processOf.length ? processOf[id] : SHARED;
+	}
+
+	/**
+	 * Gets the number of logical processes.
+	 *
+	 * @return the number of logical processes
+	 */
+	public int getProcesses() {
+		return processes;
+	}
+
+	/**
+	 * Runs the runnable entities for the current clock tick. When less than two logical processes
+	 * have runnable entities, the entities are run sequentially.
+	 *
+	 * @param entities the entities of the simulation, indexed by id
+	 */
+	void runEntities(List<SimEntity> entities) {
+		List<List<SimEntity>> byProcess = new ArrayList<>(Collections.nCopies(processes, null));
+		List<SimEntity> runnable = new ArrayList<>();
+		int active = 0;
+		for (int i = 0, n = entities.size(); i < n; i++) {
+			SimEntity ent = entities.get(i);
+			if (ent.getState() != SimEntity.RUNNABLE) {
+				continue;
+			}
+			runnable.add(ent);
+			int process = getProcess(i);
+			if (process != SHARED) {
+				if (byProcess.get(process) == null) {
+					byProcess.set(process, new ArrayList<>());
+					active++;
+				}
+				byProcess.get(process).add(ent);
+			}
+		}
+
+		if (active < 2) {
+			runSequentially(entities);
+			return;
+		}
+
+		if (outboxes.length < entities.size()) {
+			outboxes = Arrays.copyOf(outboxes, entities.size());
+		}
+		List<Callable<Void>> tasks = new ArrayList<>(active);
+		for (List<SimEntity> process : byProcess) {
+			if (process == null) {
+				continue;
+			}
+			for (SimEntity ent : process) {
+				if (outboxes[ent.getId()] == null) {
+					outboxes[ent.getId()] = new Outbox(ent.getId());
+				}
+			}
+			tasks.add(() -> {
+				for (SimEntity ent : process) {
+					if (ent.getState() == SimEntity.RUNNABLE) {
+						CURRENT.set(outboxes[ent.getId()]);
+						try {
+							ent.run();
+						} finally {
+							CURRENT.remove();
+						}
+					}
+				}
+				return null;
+			});
+		}
+
+		parallelPhase = true;
+		List<Future<Void>> results;
+		try {
+			results = pool.invokeAll(tasks);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while running the logical processes", e);
+		} finally {
+			parallelPhase = false;
+		}
+		for (Future<Void> result : results) {
+			try {
+				result.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while running the logical processes", e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+
+		// Committing the outboxes and running the shared entities in the sequential order
+		for (SimEntity ent : runnable) {
+			if (getProcess(ent.getId()) != SHARED) {
+				outboxes[ent.getId()].commit();
+			} else if (ent.getState() == SimEntity.RUNNABLE) {
+				ent.run();
+			}
+		}
+	}
+
+	private static void runSequentially(List<SimEntity> entities) {
+		for (int i = 0, n = entities.size(); i < n; i++) {
+			SimEntity ent = entities.get(i);
+			if (ent.getState() == SimEntity.RUNNABLE) {
+				ent.run();
+			}
+		}
+	}
+
+	/**
+	 * Gets the outbox of the entity being run by the current thread.
+	 *
+	 * @return the outbox, or <tt>null</tt> if the logical processes are not running in parallel
+	 */
+	static Outbox currentOutbox() {
+		return parallelPhase ? CURRENT.get() : null;
+	}
+
+	/**
+	 * Stops the threads of the executor.
+	 */
+	public void shutdown() {
+		pool.shutdownNow();
+	}
+
+	/**
+	 * The operations on the event queues requested by one entity while running in parallel, in
+	 * the order they were requested. The outbox also keeps track of the effect of the operations on
+	 * the events scheduled by the entity, so that cancelling them returns what the sequential run
+	 * would have returned.
+	 */
+	static class Outbox {
+
+		private static final int ADD = 0;
+		private static final int ADD_FIRST = 1;
+		private static final int CANCEL = 2;
+		private static final int CANCEL_ALL = 3;
+		private static final int WAIT = 4;
+
+		private final int src;
+		private final List<Integer> kinds = new ArrayList<>();
+		private final List<Object> arguments = new ArrayList<>();
+
+		/** The events scheduled in this tick and not yet cancelled. */
+		private final List<SimEvent> pending = new ArrayList<>();
+
+		/** The events already in the future queue that were cancelled in this tick. */
+		private final Set<SimEvent> cancelled = Collections.newSetFromMap(new IdentityHashMap<>());
+
+		Outbox(int src) {
+			this.src = src;
+		}
+
+		private void record(int kind, Object argument) {
+			kinds.add(kind);
+			arguments.add(argument);
+		}
+
+		void addEvent(SimEvent event) {
+			record(ADD, event);
+			pending.add(event);
+		}
+
+		void addEventFirst(SimEvent event) {
+			record(ADD_FIRST, event);
+			pending.add(event);
+		}
+
+		void waitFor(Predicate p) {
+			record(WAIT, p);
+		}
+
+		SimEvent cancel(Predicate p) {
+			record(CANCEL, p);
+			SimEvent queued = null;
+			for (SimEvent event : MainEventManager.future.queuedBy(src)) {
+				if (!cancelled.contains(event) && p.match(event) && (queued == null || event.compareTo(queued) < 0)) {
+					queued = event;
+				}
+			}
+			SimEvent first = null;
+			for (int i = 0, n = pending.size(); i < n; i++) {
+				SimEvent event = pending.get(i);
+				if (p.match(event) && (first == null || precedes(event, first))) {
+					first = event;
+				}
+			}
+			if (first != null && (queued == null || precedes(first, queued))) {
+				pending.remove(first);
+				return first;
+			}
+			if (queued != null) {
+				cancelled.add(queued);
+			}
+			return queued;
+		}
+
+		boolean cancelAll(Predicate p) {
+			record(CANCEL_ALL, p);
+			boolean found = pending.removeIf(p::match);
+			for (SimEvent event : MainEventManager.future.queuedBy(src)) {
+				if (!cancelled.contains(event) && p.match(event)) {
+					cancelled.add(event);
+					found = true;
+				}
+			}
+			return found;
+		}
+
+		/**
+		 * Whether a pending event precedes another event in the future queue: the serial of the
+		 * pending events is assigned on commit, after the serials of the events already queued.
+		 */
+		private boolean precedes(SimEvent pendingEvent, SimEvent other) {
+			if (pendingEvent.eventTime() != other.eventTime()) {
+				return pendingEvent.eventTime() < other.eventTime();
+			}
+			return isFirst(pendingEvent) && (pending.contains(other) ? !isFirst(other) : other.getSerial() > 0);
+		}
+
+		private boolean isFirst(SimEvent event) {
+			for (int i = 0, n = kinds.size(); i < n; i++) {
+				if (arguments.get(i) == event) {
+					return kinds.get(i) == ADD_FIRST;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Applies the operations to the event queues, and clears the outbox.
+		 */
+		void commit() {
+			for (int i = 0, n = kinds.size(); i < n; i++) {
+				Object argument = arguments.get(i);
+				switch (kinds.get(i)) {
+					case ADD:
+						MainEventManager.future.addEvent((SimEvent) argument);
+						break;
+					case ADD_FIRST:
+						MainEventManager.future.addEventFirst((SimEvent) argument);
+						break;
+					case CANCEL:
+						MainEventManager.future.cancel(src, (Predicate) argument);
+						break;
+					case CANCEL_ALL:
+						MainEventManager.future.cancelAll(src, (Predicate) argument);
+						break;
+					case WAIT:
+						MainEventManager.setWaitPredicate(src, (Predicate) argument);
+						break;
+					default:
+						throw new IllegalStateException("Unknown operation " + kinds.get(i));
+				}
+			}
+			kinds.clear();
+			arguments.clear();
+			pending.clear();
+			cancelled.clear();
+		}
+	}
+
+}
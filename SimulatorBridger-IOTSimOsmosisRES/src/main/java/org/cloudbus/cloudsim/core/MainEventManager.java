@@ -47,7 +47,7 @@ public class MainEventManager {
 		return incrAppId.getAndIncrement();
 	}
 
-	public static int handling_event_number = 0;
+	public static long handling_event_number = 0;
 
 	/** The Constant CLOUDSIM_VERSION_STRING. */
 	private static final String CLOUDSIM_VERSION_STRING = "3.0";
@@ -144,6 +144,38 @@ public class MainEventManager {
 		}
 	}
 
+	/**
+	 * Initialises CloudSim parameters. This method should be called before creating any entities.
+	 * <p>
+	 * Inside this method, it will create the following CloudSim entities:
+	 * <ul>
+	 * <li>CloudInformationService.
+	 * <li>CloudSimShutdown
+	 * </ul>
+	 * <p>
+	 * 
+	 * @param numUser the number of User Entities created. This parameters indicates that
+	 *            {@link gridsim.CloudSimShutdown} first waits for all user entities's
+	 *            END_OF_SIMULATION signal before issuing terminate signal to other entities
+	 * @param cal starting time for this simulation. If it is <tt>null</tt>, then the time will be
+	 *            taken from <tt>Calendar.getInstance()</tt>
+	 * @param traceFlag <tt>true</tt> if CloudSim trace need to be written
+	 * @param futureQueue the implementation of the future event queue to be used, e.g.
+	 *            {@link TreeSetFutureQueue} or {@link CalendarFutureQueue}
+	 * @see gridsim.CloudSimShutdown
+	 * @see CloudInformationService.CloudInformationService
+	 * @pre numUser >= 0
+	 * @post $none
+	 */
+	public static void init(int numUser, Calendar cal, boolean traceFlag, FutureQueue futureQueue) {
+		if (futureQueue == null) {
+			throw new IllegalArgumentException("The future event queue should not be null");
+		}
+		// initialize() is going to clear the queue instead of allocating the default one
+		future = futureQueue;
+		init(numUser, cal, traceFlag);
+	}
+
 	/**
 	 * Initialises CloudSim parameters. This method should be called before creating any entities.
 	 * <p>
@@ -326,6 +358,15 @@ public class MainEventManager {
 	/** The deferred event queue. */
 	protected static DeferredQueue deferred;
 
+	/** The events extracted from the future queue at the current tick, reused across the ticks. */
+	private static final List<SimEvent> cohort = new ArrayList<>();
+
+	/** The executor running the logical processes in parallel, or <tt>null</tt> for sequential runs. */
+	private static LogicalProcessExecutor logicalProcesses = null;
+
+	/** The wall clock time (in nanoseconds) at which the simulation was started. */
+	private static long wallClockStart = -1;
+
 	/** The simulation clock. */
 	public static double clock;
 
@@ -364,9 +405,10 @@ public class MainEventManager {
 		logger.trace("Initialising...");
 		if (entities == null) entities = new ArrayList<>(); else entities.clear();
 		if (entitiesByName == null) entitiesByName = new LinkedHashMap<>(); else entitiesByName.clear();
-		if (future == null) future = new FutureQueue(); else future.clear();
+		if (future == null) future = new TreeSetFutureQueue(); else future.clear();
 		if (deferred == null) deferred = new DeferredQueue(); deferred.clear();
 		if (waitPredicates == null) waitPredicates = new HashMap<>(); else waitPredicates.clear();
+		setLogicalProcessExecutor(null);
 		clock = 0;
 		running = false;
 	}
@@ -381,6 +423,28 @@ public class MainEventManager {
 
 	// Public access methods
 
+	/**
+	 * Sets the executor running the entities as parallel logical processes. The executor previously
+	 * set, if any, is shut down.
+	 * 
+	 * @param executor the executor, or <tt>null</tt> to run the entities sequentially
+	 */
+	public static void setLogicalProcessExecutor(LogicalProcessExecutor executor) {
+		if (logicalProcesses != null && logicalProcesses != executor) {
+			logicalProcesses.shutdown();
+		}
+		logicalProcesses = executor;
+	}
+
+	/**
+	 * Gets the executor running the entities as parallel logical processes.
+	 * 
+	 * @return the executor, or <tt>null</tt> if the entities are run sequentially
+	 */
+	public static LogicalProcessExecutor getLogicalProcessExecutor() {
+		return logicalProcesses;
+	}
+
 	/**
 	 * Get the current simulation time.
 	 * 
@@ -490,6 +554,9 @@ public class MainEventManager {
 	 */
 	public static void addEntity(SimEntity e) {
 		SimEvent evt;
+		if (LogicalProcessExecutor.currentOutbox() != null) {
+			throw new IllegalStateException("Entities cannot be added while the logical processes are running in parallel");
+		}
 		if (running) {
 			// Post an event to make this entity
 			evt = new SimEvent(SimEvent.CREATE, clock, 1, 0, 0, e);
@@ -530,39 +597,27 @@ public class MainEventManager {
 		
 		int entities_size = entities.size();
 
-		for (int i = 0; i < entities_size; i++) {
-			ent = entities.get(i);
-			if (ent.getState() == SimEntity.RUNNABLE) {
-				ent.run();
+		if (logicalProcesses != null) {
+			logicalProcesses.runEntities(entities);
+		} else {
+			for (int i = 0; i < entities_size; i++) {
+				ent = entities.get(i);
+				if (ent.getState() == SimEntity.RUNNABLE) {
+					ent.run();
+				}
 			}
 		}
 				
 		// If there are more future events then deal with them
 		if (future.size() > 0) {
-			List<SimEvent> toRemove = new ArrayList<SimEvent>();
-			Iterator<SimEvent> fit = future.iterator();
 			queue_empty = false;
-			SimEvent first = fit.next();
-			processEvent(first);
-			future.remove(first);
-
-			fit = future.iterator();
-
-			// Check if next events are at same time...
-			boolean trymore = fit.hasNext();
-			while (trymore) {
-				SimEvent next = fit.next();
-				if (next.eventTime() == first.eventTime()) {
-					processEvent(next);
-					toRemove.add(next);
-					trymore = fit.hasNext();
-				} else {
-					trymore = false;
-				}
+			// Extracting all the events happening at the same time in one go
+			cohort.clear();
+			future.pollAllAt(future.peek().eventTime(), cohort);
+			for (int i = 0, n = cohort.size(); i < n; i++) {
+				processEvent(cohort.get(i));
 			}
-
-			future.removeAll(toRemove);
-
+			cohort.clear();
 		} else {
 			queue_empty = true;
 			running = false;
@@ -577,6 +632,23 @@ public class MainEventManager {
 	 */
 	public static void runStop() {
 		logger.trace("Simulation completed.");
+		if (wallClockStart >= 0) {
+			logger.info("Processed " + handling_event_number + " events at " + String.format("%.1f", getEventsPerSecond()) + " events per second");
+		}
+	}
+
+	/**
+	 * Returns the throughput of the simulation, as the number of events processed per wall clock
+	 * second since the simulation was started.
+	 *
+	 * @return the events per second, or 0 if the simulation has not been started
+	 */
+	public static double getEventsPerSecond() {
+		if (wallClockStart < 0) {
+			return 0.0;
+		}
+		double elapsed = (System.nanoTime() - wallClockStart) / 1e9;
+		return elapsed > 0 ? handling_event_number / elapsed : 0.0;
 	}
 
 	/**
@@ -587,7 +659,7 @@ public class MainEventManager {
 	 */
 	public static void hold(int src, double delay) {
 		SimEvent e = new SimEvent(SimEvent.HOLD_DONE, clock + delay, src);
-		future.addEvent(e);
+		schedule(e, false);
 		entities.get(src).setState(SimEntity.HOLDING);
 	}
 
@@ -599,7 +671,7 @@ public class MainEventManager {
 	 */
 	public static void pause(int src, double delay) {
 		SimEvent e = new SimEvent(SimEvent.HOLD_DONE, clock + delay, src);
-		future.addEvent(e);
+		schedule(e, false);
 		entities.get(src).setState(SimEntity.HOLDING);
 	}
 
@@ -618,7 +690,7 @@ public class MainEventManager {
 		}
 
 		SimEvent e = new SimEvent(SimEvent.SEND, clock + delay, src, dest, tag, data);
-		future.addEvent(e);
+		schedule(e, false);
 	}
 
 	/**
@@ -636,7 +708,29 @@ public class MainEventManager {
 		}
 
 		SimEvent e = new SimEvent(SimEvent.SEND, clock + delay, src, dest, tag, data);
-		future.addEventFirst(e);
+		schedule(e, true);
+	}
+
+	/**
+	 * Adds an event to the future queue or, while the logical processes are running in parallel,
+	 * to the outbox of the entity being run.
+	 * 
+	 * @param e the event
+	 * @param first whether the event has priority in the queue
+	 */
+	private static void schedule(SimEvent e, boolean first) {
+		LogicalProcessExecutor.Outbox outbox = LogicalProcessExecutor.currentOutbox();
+		if (outbox != null) {
+			if (first) {
+				outbox.addEventFirst(e);
+			} else {
+				outbox.addEvent(e);
+			}
+		} else if (first) {
+			future.addEventFirst(e);
+		} else {
+			future.addEvent(e);
+		}
 	}
 
 	/**
@@ -651,10 +745,25 @@ public class MainEventManager {
 		entities.get(src).setState(SimEntity.WAITING);
 		if (p != SIM_ANY) {
 			// If a predicate has been used store it in order to check it
-			waitPredicates.put(src, p);
+			LogicalProcessExecutor.Outbox outbox = LogicalProcessExecutor.currentOutbox();
+			if (outbox != null) {
+				outbox.waitFor(p);
+			} else {
+				setWaitPredicate(src, p);
+			}
 		}
 	}
 
+	/**
+	 * Stores the predicate used by an entity to wait for an event.
+	 * 
+	 * @param src the src
+	 * @param p the p
+	 */
+	static void setWaitPredicate(int src, Predicate p) {
+		waitPredicates.put(src, p);
+	}
+
 	/**
 	 * Checks if events for a specific entity are present in the deferred event queue.
 	 * 
@@ -663,12 +772,13 @@ public class MainEventManager {
 	 * @return the int
 	 */
 	public static int waiting(int d, Predicate p) {
+		if (p == SIM_ANY) {
+			return deferred.size(d);
+		}
 		int count = 0;
-		SimEvent event;
-		Iterator<SimEvent> iterator = deferred.iterator();
+		Iterator<SimEvent> iterator = deferred.iterator(d);
 		while (iterator.hasNext()) {
-			event = iterator.next();
-			if ((event.getDestination() == d) && (p.match(event))) {
+			if (p.match(iterator.next())) {
 				count++;
 			}
 		}
@@ -683,16 +793,18 @@ public class MainEventManager {
 	 * @return the sim event
 	 */
 	public static SimEvent select(int src, Predicate p) {
-		SimEvent ev = null;
-		Iterator<SimEvent> iterator = deferred.iterator();
+		if (p == SIM_ANY) {
+			return deferred.pollFirst(src);
+		}
+		Iterator<SimEvent> iterator = deferred.iterator(src);
 		while (iterator.hasNext()) {
-			ev = iterator.next();
-			if (ev.getDestination() == src && p.match(ev)) {
+			SimEvent ev = iterator.next();
+			if (p.match(ev)) {
 				iterator.remove();
-				break;
+				return ev;
 			}
 		}
-		return ev;
+		return null;
 	}
 
 	/**
@@ -703,15 +815,14 @@ public class MainEventManager {
 	 * @return the sim event
 	 */
 	public static SimEvent findFirstDeferred(int src, Predicate p) {
-		SimEvent ev = null;
-		Iterator<SimEvent> iterator = deferred.iterator();
+		Iterator<SimEvent> iterator = deferred.iterator(src);
 		while (iterator.hasNext()) {
-			ev = iterator.next();
-			if (ev.getDestination() == src && p.match(ev)) {
-				break;
+			SimEvent ev = iterator.next();
+			if (p.match(ev)) {
+				return ev;
 			}
 		}
-		return ev;
+		return null;
 	}
 
 	/**
@@ -722,17 +833,11 @@ public class MainEventManager {
 	 * @return the sim event
 	 */
 	public static SimEvent cancel(int src, Predicate p) {
-		SimEvent ev = null;
-		Iterator<SimEvent> iter = future.iterator();
-		while (iter.hasNext()) {
-			ev = iter.next();
-			if (ev.getSource() == src && p.match(ev)) {
-				iter.remove();
-				break;
-			}
+		LogicalProcessExecutor.Outbox outbox = LogicalProcessExecutor.currentOutbox();
+		if (outbox != null) {
+			return outbox.cancel(p);
 		}
-
-		return ev;
+		return future.cancel(src, p);
 	}
 
 	/**
@@ -744,16 +849,11 @@ public class MainEventManager {
 	 * @return true, if successful
 	 */
 	public static boolean cancelAll(int src, Predicate p) {
-		SimEvent ev = null;
-		int previousSize = future.size();
-		Iterator<SimEvent> iter = future.iterator();
-		while (iter.hasNext()) {
-			ev = iter.next();
-			if (ev.getSource() == src && p.match(ev)) {
-				iter.remove();
-			}
+		LogicalProcessExecutor.Outbox outbox = LogicalProcessExecutor.currentOutbox();
+		if (outbox != null) {
+			return outbox.cancelAll(p);
 		}
-		return previousSize < future.size();
+		return future.cancelAll(src, p) > 0;
 	}
 
 	//
@@ -833,6 +933,8 @@ public class MainEventManager {
 	 */
 	public static void runStart() {
 		running = true;
+		handling_event_number = 0;
+		wallClockStart = System.nanoTime();
 		// Start all the entities
 		for (SimEntity ent : entities) {
 			ent.startEntity();
@@ -909,7 +1011,7 @@ public class MainEventManager {
 
 			if (curr < Math.floor(clock())) {
 				curr = Math.floor(clock());
-				System.out.println(curr);
+				System.out.println(curr + " (" + String.format("%.1f", getEventsPerSecond()) + " events/s)");
 			}
 
 			// this block allows termination of simulation at a specific time
@@ -920,8 +1022,7 @@ public class MainEventManager {
 			}
 
 			if (pauseAt != -1
-					&& ((future.size() > 0 && clock <= pauseAt && pauseAt <= future.iterator().next()
-							.eventTime()) || future.size() == 0 && pauseAt <= clock)) {
+					&& ((future.size() > 0 && clock <= pauseAt && pauseAt <= future.peek().eventTime()) || future.size() == 0 && pauseAt <= clock)) {
 				pauseSimulation();
 				clock = pauseAt;
 			}
@@ -960,8 +1061,7 @@ public class MainEventManager {
 			}
 
 			if (pauseAt != -1
-					&& ((future.size() > 0 && clock <= pauseAt && pauseAt <= future.iterator().next()
-					.eventTime()) || future.size() == 0 && pauseAt <= clock)) {
+					&& ((future.size() > 0 && clock <= pauseAt && pauseAt <= future.peek().eventTime()) || future.size() == 0 && pauseAt <= clock)) {
 				pauseSimulation();
 				clock = pauseAt;
 			}
@@ -1013,6 +1113,7 @@ public class MainEventManager {
 		running = false;
 
 		waitPredicates = null;
+		setLogicalProcessExecutor(null);
 		paused = false;
 		pauseAt = -1;
 		abruptTerminate = false;
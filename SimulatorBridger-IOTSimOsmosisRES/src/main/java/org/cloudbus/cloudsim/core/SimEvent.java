@@ -44,6 +44,9 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 
 	private long serial = -1;
 
+	/** whether the event is currently stored in the future event queue **/
+	private boolean queued = false;
+
 	// Internal event types
 
 	public static final int ENULL = 0;
@@ -93,6 +96,18 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 		this.serial = serial;
 	}
 
+	long getSerial() {
+		return serial;
+	}
+
+	void setQueued(boolean queued) {
+		this.queued = queued;
+	}
+
+	boolean isQueued() {
+		return queued;
+	}
+
 	/**
 	 * Used to set the time at which this event finished waiting in the event
 	 * 
@@ -0,0 +1,148 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class decorates a future event queue by recording all the insertions and removals into a
+ * trace file, which can be later replayed by {@link FutureQueueBenchmark} to compare different
+ * queue implementations on the events of an actual simulation. Each line of the trace is either
+ * <tt>A,id,time</tt> (event added), <tt>F,id,time</tt> (event added first), <tt>R,id</tt> (event
+ * removed) or <tt>C</tt> (queue cleared). The trace is completed when the queue is closed.
+ *
+ * @see FutureQueueBenchmark
+ */
+public class TracingFutureQueue extends FutureQueue implements Closeable {
+
+	private final FutureQueue delegate;
+	private final PrintWriter trace;
+	private final Map<SimEvent, Long> ids = new IdentityHashMap<>();
+	private long nextId = 0;
+
+	public TracingFutureQueue(FutureQueue delegate, File traceFile) throws IOException {
+		this.delegate = delegate;
+		this.trace = new PrintWriter(new BufferedWriter(new FileWriter(traceFile)));
+	}
+
+	@Override
+	public void addEvent(SimEvent newEvent) {
+		super.addEvent(newEvent);
+		record('A', newEvent);
+	}
+
+	@Override
+	public void addEventFirst(SimEvent newEvent) {
+		super.addEventFirst(newEvent);
+		record('F', newEvent);
+	}
+
+	private void record(char op, SimEvent event) {
+		long id = nextId++;
+		ids.put(event, id);
+		trace.println(op + "," + id + "," + event.eventTime());
+	}
+
+	private void recordRemoval(SimEvent event) {
+		Long id = ids.remove(event);
+		if (id != null) {
+			trace.println("R," + id);
+		}
+	}
+
+	@Override
+	protected void insert(SimEvent newEvent) {
+		delegate.insert(newEvent);
+	}
+
+	@Override
+	protected Iterator<SimEvent> sortedIterator() {
+		Iterator<SimEvent> it = delegate.sortedIterator();
+		return new Iterator<SimEvent>() {
+			private SimEvent last;
+
+			@Override
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+
+			@Override
+			public SimEvent next() {
+				last = it.next();
+				return last;
+			}
+
+			@Override
+			public void remove() {
+				it.remove();
+				recordRemoval(last);
+			}
+		};
+	}
+
+	@Override
+	public SimEvent peek() {
+		return delegate.peek();
+	}
+
+	@Override
+	protected SimEvent extractFirst() {
+		SimEvent event = delegate.extractFirst();
+		if (event != null) {
+			recordRemoval(event);
+		}
+		return event;
+	}
+
+	@Override
+	protected void extractAllAt(double time, List<SimEvent> cohort) {
+		int from = cohort.size();
+		delegate.extractAllAt(time, cohort);
+		for (int i = from; i < cohort.size(); i++) {
+			recordRemoval(cohort.get(i));
+		}
+	}
+
+	@Override
+	public int size() {
+		return delegate.size();
+	}
+
+	@Override
+	protected boolean extract(SimEvent event) {
+		boolean removed = delegate.extract(event);
+		if (removed) {
+			recordRemoval(event);
+		}
+		return removed;
+	}
+
+	@Override
+	protected void clearEvents() {
+		delegate.clearEvents();
+		ids.clear();
+		trace.println("C");
+		trace.flush();
+	}
+
+	@Override
+	public void close() {
+		trace.close();
+	}
+
+}
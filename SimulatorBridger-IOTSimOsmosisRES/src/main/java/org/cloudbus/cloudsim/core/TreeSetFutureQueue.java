@@ -0,0 +1,82 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * This class implements the future event queue used by {@link MainEventManager}. The event queue
+ * uses a {@link TreeSet} in order to store the events. This is the default implementation.
+ *
+ * @author Marcos Dias de Assuncao
+ * @since CloudSim Toolkit 1.0
+ * @see MainEventManager
+ * @see java.util.TreeSet
+ */
+public class TreeSetFutureQueue extends FutureQueue {
+
+	/** The sorted set. */
+	private final NavigableSet<SimEvent> sortedSet = new TreeSet<SimEvent>();
+
+	@Override
+	protected void insert(SimEvent newEvent) {
+		sortedSet.add(newEvent);
+	}
+
+	@Override
+	protected Iterator<SimEvent> sortedIterator() {
+		return sortedSet.iterator();
+	}
+
+	@Override
+	public SimEvent peek() {
+		return sortedSet.isEmpty() ? null : sortedSet.first();
+	}
+
+	@Override
+	protected SimEvent extractFirst() {
+		return sortedSet.pollFirst();
+	}
+
+	@Override
+	public int size() {
+		return sortedSet.size();
+	}
+
+	@Override
+	protected boolean extract(SimEvent event) {
+		if (sortedSet.remove(event)) {
+			return true;
+		}
+		// The events added first share the serial 0, and are not consistently ordered among them:
+		// the lookup can miss them, so the events at the same time are scanned by identity
+		SimEvent probe = new SimEvent(SimEvent.ENULL, event.eventTime(), -1);
+		probe.setSerial(-1);
+		Iterator<SimEvent> it = sortedSet.tailSet(probe, false).iterator();
+		while (it.hasNext()) {
+			SimEvent current = it.next();
+			if (current.eventTime() != event.eventTime()) {
+				break;
+			}
+			if (current == event) {
+				it.remove();
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	protected void clearEvents() {
+		sortedSet.clear();
+	}
+
+}
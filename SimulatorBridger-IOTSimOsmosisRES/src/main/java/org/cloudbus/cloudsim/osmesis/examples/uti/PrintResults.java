@@ -25,7 +25,7 @@ import org.cloudbus.cloudsim.sdn.power.PowerUtilizationHistoryEntry;
 import org.cloudbus.cloudsim.sdn.power.PowerUtilizationInterface;
 import org.cloudbus.osmosis.core.OsmoticAppDescription;
 import org.cloudbus.osmosis.core.OsmoticBroker;
-import org.cloudbus.osmosis.core.WorkflowInfo;
+import org.cloudbus.osmosis.core.WorkflowSummary;
 import uk.ncl.giacomobergami.components.iot.IoTDevice;
 import uk.ncl.giacomobergami.utils.data.CSVMediator;
 
@@ -126,9 +126,10 @@ public class PrintResults {
 		osmoticAppsStats = new ArrayList<>();
 		overallAppResults = new ArrayList<>();
 		TreeMap<Double, HashMultimap<String, String>> tm = new TreeMap<>();
-		List<WorkflowInfo> tags = new ArrayList<>();
+		List<WorkflowSummary> workflows = OsmoticBroker.workflowSummaries();
+		List<WorkflowSummary> tags = new ArrayList<>();
 		for(OsmoticAppDescription app : appList){
-			for(WorkflowInfo workflowTag : OsmoticBroker.workflowTag){
+			for(WorkflowSummary workflowTag : workflows){
 				if(app.getAppID() == workflowTag.getAppId()){
 					tags.add(workflowTag);
 				}
@@ -153,7 +154,7 @@ public class PrintResults {
 				.collect(Collectors.toList());
 
 		for(OsmoticAppDescription app : appList){
-			for(WorkflowInfo workflowTag : OsmoticBroker.workflowTag){
+			for(WorkflowSummary workflowTag : workflows){
 				workflowTag.getAppId();
 				if(app.getAppID() == workflowTag.getAppId()){
 					tags.add(workflowTag);
@@ -212,7 +213,7 @@ public class PrintResults {
 	}
 
 	private void printAppStat(OsmoticAppDescription app,
-							  List<WorkflowInfo> tags,
+							  List<WorkflowSummary> tags,
 							  List<OsmesisOverallAppsResults> list) {
 		String appName = app.getAppName();
 		String isIoTDeviceDrained = app.getIoTDeviceBatteryStatus();
@@ -231,21 +232,21 @@ public class PrintResults {
 		double EndTime = tmp.getFinishTime();
 		double SimluationTime = EndTime - StartTime;
 		
-		WorkflowInfo firstWorkflow = tags.get(0);
-		WorkflowInfo secondWorkflow = tags.size() > 1 ? tags.get(1) : null;
+		WorkflowSummary firstWorkflow = tags.get(0);
+		WorkflowSummary secondWorkflow = tags.size() > 1 ? tags.get(1) : null;
 		
-		if((secondWorkflow != null) && (firstWorkflow.getFinishTime() > secondWorkflow.getSartTime())) {
+		if((secondWorkflow != null) && (firstWorkflow.getFinishTime() > secondWorkflow.getStartTime())) {
 			appTotalRunningTmie = EndTime - StartTime;			
 		} else {
-			for(WorkflowInfo workflowTag : tags){
-				appTotalRunningTmie += workflowTag.getFinishTime() - workflowTag.getSartTime(); 
+			for(WorkflowSummary workflowTag : tags){
+				appTotalRunningTmie += workflowTag.getFinishTime() - workflowTag.getStartTime(); 
 			}
 		}
 		if (StartTime < 0.0) {
 			StartTime = EndTime - appTotalRunningTmie;
 		}
 		
-		for(WorkflowInfo workflowTag : tags){
+		for(WorkflowSummary workflowTag : tags){
 			TotalIoTGeneratedData += workflowTag.getIotDeviceFlow().getSize(); 
 			TotalEdgeLetSizes += workflowTag.getEdgeLet().getCloudletLength(); 
 			TotalMELGeneratedData += workflowTag.getEdgeToCloudFlow().getSize();
@@ -293,7 +294,7 @@ public class PrintResults {
 		public int flowIoTMelAppId;
 	}
 
-	public void generateAppTag(WorkflowInfo workflowTag,
+	public void generateAppTag(WorkflowSummary workflowTag,
 							   List<PrintOsmosisAppFromTags> list,
 							   OsmoticBroker MELResolverToHostingHost,
 							   TreeMap<Double, HashMultimap<String, String>> countingMapPerSimTime) {
@@ -312,7 +313,7 @@ public class PrintResults {
 			fromTag.APP_ID = workflowTag.getAppId();
 			fromTag.AppName = workflowTag.getAppName();
 			fromTag.Transaction = workflowTag.getWorkflowId();
-			fromTag.StartTime = workflowTag.getSartTime();
+			fromTag.StartTime = workflowTag.getStartTime();
 		countingMapPerSimTime.putIfAbsent(fromTag.StartTime, HashMultimap.create());
 			fromTag.FinishTime = workflowTag.getFinishTime();
 			fromTag.IoTDeviceName = workflowTag.getIotDeviceFlow().getAppNameSrc();
@@ -333,8 +334,8 @@ public class PrintResults {
 			var dstHost = MELResolverToHostingHost.resolveHostFromMELId(workflowTag.getEdgeToCloudFlow().getAppNameDest());
 			fromTag.path_dst = "Host#"+dstHost.getId()+"@"+workflowTag.getDestinationDCName();
 			fromTag.DataSizeMELToVM_Mb = workflowTag.getEdgeToCloudFlow().getSize();
-			fromTag.flowMELCloudAppId = workflowTag.getEdgeToCloudFlow().getApp().getAppID();
-			fromTag.flowIoTMelAppId = workflowTag.getIotDeviceFlow().getApp().getAppID();
+			fromTag.flowMELCloudAppId = workflowTag.getEdgeToCloudFlow().getAppId();
+			fromTag.flowIoTMelAppId = workflowTag.getIotDeviceFlow().getAppId();
 			fromTag.MelStartTransmissionTime =  workflowTag.getEdgeToCloudFlow().getStartTime();
 			fromTag.TransmissionTimeMELToVM = workflowTag.getEdgeToCloudFlow().getTransmissionTime();
 			fromTag.MelEndTransmissionTime = fromTag.TransmissionTimeMELToVM + fromTag.MelStartTransmissionTime;
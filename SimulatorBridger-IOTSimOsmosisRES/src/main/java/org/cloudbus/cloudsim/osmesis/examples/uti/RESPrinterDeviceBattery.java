@@ -4,7 +4,7 @@ import org.cloudbus.cloudsim.Log;
 import org.cloudbus.osmosis.core.OsmoticAppDescription;
 import org.cloudbus.osmosis.core.OsmoticAppsParser;
 import org.cloudbus.osmosis.core.OsmoticBroker;
-import org.cloudbus.osmosis.core.WorkflowInfo;
+import org.cloudbus.osmosis.core.WorkflowSummary;
 import org.cloudbus.res.EnergyController;
 import org.cloudbus.res.config.AppConfig;
 import org.cloudbus.res.model.RenewableEnergySource;
@@ -73,9 +73,10 @@ public class RESPrinterDeviceBattery {
         });
 
         //collect all osmotic flows
-        List<WorkflowInfo> tags = new ArrayList<>();
+        List<WorkflowSummary> workflows = OsmoticBroker.workflowSummaries();
+        List<WorkflowSummary> tags = new ArrayList<>();
         for (OsmoticAppDescription app : appList) {
-            for (WorkflowInfo workflowTag : OsmoticBroker.workflowTag) {
+            for (WorkflowSummary workflowTag : workflows) {
                 workflowTag.getAppId();
                 if (app.getAppID() == workflowTag.getAppId()) {
                     tags.add(workflowTag);
@@ -86,7 +87,7 @@ public class RESPrinterDeviceBattery {
         }
     }
 
-    private void AnalyseFlowsRES(List<WorkflowInfo> tags) {
+    private void AnalyseFlowsRES(List<WorkflowSummary> tags) {
         System.out.println();
         System.out.println("=========================== Osmosis App Results RES (START = "+timeStartRES+") (step = "+print_step+")========================");
         System.out.println(String.format("%1s\t%11s\t%18s\t%13s\t%19s\t%22s\t%15s\t%22s\t%23s\t%22s\t%22s"
@@ -112,7 +113,7 @@ public class RESPrinterDeviceBattery {
         double transaction_CPU_lowEmission_utilization = 0;
 
 
-        for(WorkflowInfo workflowTag : tags){
+        for(WorkflowSummary workflowTag : tags){
             transactionTotalTime =  workflowTag.getIotDeviceFlow().getTransmissionTime() + workflowTag.getEdgeLet().getActualCPUTime()
                     + workflowTag.getEdgeToCloudFlow().getTransmissionTime() + workflowTag.getCloudLet().getActualCPUTime();
             transactionTotalCpuTime = workflowTag.getEdgeLet().getActualCPUTime() + workflowTag.getCloudLet().getActualCPUTime();
@@ -11,6 +11,7 @@ package org.cloudbus.cloudsim.sdn;
 import java.util.*;
 
 import org.cloudbus.osmosis.core.Flow;
+import org.cloudbus.osmosis.core.HistorySink;
 import org.cloudbus.cloudsim.core.MainEventManager;
 
 /** 
@@ -111,7 +112,11 @@ public class Channel {
 		this.allocatedBandwidth = newBandwidth;
 		 
 		if(this.inTransmission.size() != 0){
-			this.bwChangesLogMap.put(MainEventManager.clock(), newBandwidth);
+			HistorySink history = HistorySink.current();
+			if (history.isRetainingHistory()) {
+				this.bwChangesLogMap.put(MainEventManager.clock(), newBandwidth);
+			}
+			history.bandwidthChanged(this, MainEventManager.clock(), newBandwidth);
 		}
 
 		return isChanged;
@@ -132,6 +137,10 @@ public class Channel {
 		return inTransmission.size();
 	}	
 
+	public List<Link> getLinks() {
+		return links;
+	}
+
 	public boolean updateFlowProcessing(){
 		double currentTime = MainEventManager.clock();
 		double timeSpent = NetworkOperatingSystem.round(currentTime - this.previousTime);
@@ -244,7 +253,9 @@ public class Channel {
 	private List<Flow> flowsList = new ArrayList<>();
 	
 	public void addFlowToList(Flow pkt){
-		this.flowsList.add(pkt);
+		if (HistorySink.current().isRetainingHistory()) {
+			this.flowsList.add(pkt);
+		}
 	}
 	
 	public List<Flow> getFlowList(){
@@ -9,6 +9,7 @@
 package org.cloudbus.cloudsim.sdn;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
@@ -94,6 +95,13 @@ public class Link {
 		boolean ret = this.allChannels.remove(ch);
 		return ret;
 	}
+
+	/**
+	 * Channels currently sharing this link, whose bandwidth depends on each other.
+	 */
+	public List<Channel> getChannels() {
+		return Collections.unmodifiableList(this.allChannels);
+	}
 	
 	public double getFreeBandwidth() {
 		double freeBw = this.availableBW/getChannelCount();		
@@ -9,8 +9,6 @@
 package org.cloudbus.cloudsim.sdn;
 
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.HashMap;
 
@@ -75,9 +73,7 @@ public abstract class NetworkOperatingSystem extends SimEntity {
 
 		if(timeUnit >= 1000) value = Math.floor(value*timeUnit);
 		
-	    BigDecimal bd = new BigDecimal(value);
-	    bd = bd.setScale(places, RoundingMode.CEILING);
-	    return bd.doubleValue();
+	    return SimulationTime.ceil(value, places);
 	}
 		
 	@Override
@@ -0,0 +1,64 @@
+/*
+ * Title:        CloudSimSDN
+ * Description:  SDN extension for CloudSim
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2015, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.sdn;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point rounding of the simulation times, with primitive arithmetic only.
+ * The results are the same of <code>new BigDecimal(value).setScale(places, RoundingMode.CEILING).doubleValue()</code>,
+ * which is only used for the values whose scaled magnitude cannot be represented exactly.
+ */
+public final class SimulationTime {
+
+	private static final double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	/* Integers up to this magnitude are exact, as well as their neighbours */
+	private static final double EXACT_INTEGERS = 0x1p52;
+
+	private SimulationTime() {}
+
+	/**
+	 * Rounds the value towards positive infinity, to the given number of decimal places.
+	 */
+	public static double ceil(double value, int places) {
+		if (places < 0) throw new IllegalArgumentException();
+		if (places >= POWERS_OF_TEN.length || Double.isNaN(value) || Double.isInfinite(value)) {
+			return ceilExactly(value, places);
+		}
+		double scale = POWERS_OF_TEN[places];
+		double scaled = value * scale;
+		if (!(Math.abs(scaled) < EXACT_INTEGERS)) {
+			return ceilExactly(value, places);
+		}
+		double c = Math.ceil(scaled);
+		double fraction = scaled - (c - 1);
+		if (fraction <= Math.ulp(scaled) || fraction >= 1 - Math.ulp(scaled)) {
+			// The product was rounded close to an integer, so the ceiling is checked on the exact one
+			if (Math.fma(value, scale, -c) > 0) {
+				c += 1;
+			} else if (Math.fma(value, scale, -(c - 1)) <= 0) {
+				c -= 1;
+			}
+		}
+		// The quotient of exact operands is correctly rounded, as the BigDecimal conversion.
+		// Adding zero turns -0.0 into 0.0, as BigDecimal has no negative zero.
+		return c / scale + 0.0;
+	}
+
+	private static double ceilExactly(double value, int places) {
+		BigDecimal bd = new BigDecimal(value);
+		bd = bd.setScale(places, RoundingMode.CEILING);
+		return bd.doubleValue();
+	}
+}
@@ -11,6 +11,7 @@ import org.cloudbus.cloudsim.core.MainEventManager;
 import org.cloudbus.cloudsim.core.SimEntity;
 import org.cloudbus.cloudsim.core.SimEvent;
 import org.cloudbus.osmosis.core.Flow;
+import org.cloudbus.osmosis.core.HistorySink;
 
 import java.util.ArrayList;
 import java.util.Hashtable;
@@ -77,6 +78,11 @@ public class Switch extends SimEntity implements NetworkNIC{
 	 ************************************************/
 	private List<HistoryEntry> utilizationHistories = null;
 	private static double powerOffDuration = 0; //if switch was idle for 1 hours, it's turned off.
+	// The energy is accumulated as the entries are added, so that the history needs not to be retained
+	private boolean hasUtilizationEntries = false;
+	private double lastUtilizationTime = 0;
+	private int lastActivePorts = 0;
+	private double totalEnergyConsumption = 0;
 
 	// HistoryEntry is a nested class (class within another class) 
 	public class HistoryEntry {
@@ -89,48 +95,47 @@ public class Switch extends SimEntity implements NetworkNIC{
 	}
 	
 	public double getUtilizationEnergyConsumption() {
-		double total=0;
-		double lastTime=0;
-		int lastPort=0;
-		if(this.utilizationHistories == null)
-			return 0;
+		return totalEnergyConsumption/3600.0;	// transform to Whatt*hour from What*seconds
+	}
+
+	private void addHistoryEntry(double startTime, int numActivePorts) {
+		double duration = startTime - lastUtilizationTime;
+		double power = calculatePower(lastActivePorts);
+		double energyConsumption = power * duration;
 		
-		for(HistoryEntry h:this.utilizationHistories) {
-			double duration = h.startTime - lastTime;
-			double power = calculatePower(lastPort);
-			double energyConsumption = power * duration;
-			
-			// Assume that the host is turned off when duration is long enough
-			if(duration > powerOffDuration && lastPort == 0)
-				energyConsumption = 0;
-			
-			total += energyConsumption;
-			lastTime = h.startTime;
-			lastPort = h.numActivePorts;
+		// Assume that the host is turned off when duration is long enough
+		if(duration > powerOffDuration && lastActivePorts == 0)
+			energyConsumption = 0;
+		
+		totalEnergyConsumption += energyConsumption;
+		lastUtilizationTime = startTime;
+		lastActivePorts = numActivePorts;
+		hasUtilizationEntries = true;
+
+		HistorySink history = HistorySink.current();
+		if (history.isRetainingHistory()) {
+			if(utilizationHistories == null)
+				utilizationHistories = new ArrayList<HistoryEntry>();
+			this.utilizationHistories.add(new HistoryEntry(startTime, numActivePorts));
 		}
-		return total/3600.0;	// transform to Whatt*hour from What*seconds
+		history.switchUtilizationChanged(this, startTime, numActivePorts);
 	}
 	public void updateNetworkUtilization() {
 		this.addUtilizationEntry();
 	}
 
 	public void addUtilizationEntryTermination(double finishTime) {
-		if(this.utilizationHistories != null)
-			this.utilizationHistories.add(new HistoryEntry(finishTime, 0));		
+		if(this.hasUtilizationEntries)
+			addHistoryEntry(finishTime, 0);		
 	}
 
 	private void addUtilizationEntry() {
 		double time = MainEventManager.clock();
 		int totalActivePorts = getTotalActivePorts();
-		if(utilizationHistories == null)
-			utilizationHistories = new ArrayList<HistoryEntry>();
-		else {
-			HistoryEntry hist = this.utilizationHistories.get(this.utilizationHistories.size()-1);
-			if(hist.numActivePorts == totalActivePorts) {
-				return;
-			}
+		if(this.hasUtilizationEntries && lastActivePorts == totalActivePorts) {
+			return;
 		}		
-		this.utilizationHistories.add(new HistoryEntry(time, totalActivePorts));
+		addHistoryEntry(time, totalActivePorts);
 	}
 	private double calculatePower(int numActivePort) {
 		return POWER_CONSUMPTION_IDLE + POWER_CONSUMPTION_PER_ACTIVE_PORT * numActivePort;
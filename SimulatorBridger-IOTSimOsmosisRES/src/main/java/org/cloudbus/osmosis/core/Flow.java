@@ -11,14 +11,13 @@
 
 package org.cloudbus.osmosis.core;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.List;
 import org.cloudbus.cloudsim.core.MainEventManager;
 import org.cloudbus.cloudsim.sdn.Channel;
 import org.cloudbus.cloudsim.sdn.Link;
 import org.cloudbus.cloudsim.sdn.NetworkNIC;
+import org.cloudbus.cloudsim.sdn.SimulationTime;
 import org.cloudbus.cloudsim.sdwan.NetworkMeasurement;
 import org.cloudbus.cloudsim.sdwan.TCP;
 import org.cloudbus.cloudsim.sdwan.UDP;
@@ -447,9 +446,7 @@ public class Flow {
 
 		if(timeUnit >= 1000) value = Math.floor(value * timeUnit);
 		
-	    BigDecimal bd = new BigDecimal(value);
-	    bd = bd.setScale(places, RoundingMode.CEILING);
-	    return bd.doubleValue();
+	    return SimulationTime.ceil(value, places);
 	}
 
 	public void setLabelPlace(String label) {
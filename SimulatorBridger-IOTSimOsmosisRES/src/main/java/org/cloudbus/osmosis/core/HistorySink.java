@@ -0,0 +1,247 @@
+package org.cloudbus.osmosis.core;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.cloudbus.cloudsim.edge.utils.LogUtil;
+import org.cloudbus.cloudsim.sdn.Channel;
+import org.cloudbus.cloudsim.sdn.Switch;
+
+/**
+ * Receives the history of the network (the channels being opened, their bandwidth changes and the
+ * utilisation of the switches) while the simulation runs. Only the in-memory sink lets the channels,
+ * the orchestrator, the broker and the switches retain such history until the end of the simulation;
+ * otherwise, the finished objects are not referenced anymore, and the memory no longer grows with the
+ * simulated time. Likewise, the workflows are then reported only once completed, through their
+ * {@link WorkflowSummary}.
+ * <p>
+ * The switch energy consumption is always computed while the simulation runs, so that it is available
+ * regardless of the sink being used.
+ */
+public abstract class HistorySink {
+
+	private static HistorySink current = new InMemory();
+
+	public static HistorySink current() {
+		return current;
+	}
+
+	public static void setCurrent(HistorySink sink) {
+		current.close();
+		current = sink == null ? new InMemory() : sink;
+	}
+
+	/**
+	 * @param kind		Either "memory" (default), "stream" or "aggregate"
+	 * @param folder	Folder where the streamed or aggregated history is written
+	 */
+	public static HistorySink generate(String kind, File folder) {
+		if (kind == null) return new InMemory();
+		if (folder == null) folder = new File("history");
+		switch (kind.trim().toLowerCase()) {
+			case "stream":
+				return new Streaming(folder);
+			case "aggregate":
+				return new Aggregating(folder);
+			case "memory":
+				return new InMemory();
+			default:
+				LogUtil.logger.warn("Unknown history sink '"+kind+"': keeping the history in memory");
+				return new InMemory();
+		}
+	}
+
+	/**
+	 * @return Whether the simulated objects shall keep their own history, which is read by PrintResults
+	 */
+	public abstract boolean isRetainingHistory();
+
+	public abstract void channelOpened(Channel channel, Flow flow, double time);
+
+	public abstract void bandwidthChanged(Channel channel, double time, double bandwidth);
+
+	public abstract void switchUtilizationChanged(Switch sw, double time, int numActivePorts);
+
+	/**
+	 * Flushes the history: further events are ignored
+	 */
+	public void close() {}
+
+	/**
+	 * Keeps the whole history in the simulated objects, as required by PrintResults
+	 */
+	public static class InMemory extends HistorySink {
+		@Override
+		public boolean isRetainingHistory() {
+			return true;
+		}
+
+		@Override
+		public void channelOpened(Channel channel, Flow flow, double time) {}
+
+		@Override
+		public void bandwidthChanged(Channel channel, double time, double bandwidth) {}
+
+		@Override
+		public void switchUtilizationChanged(Switch sw, double time, int numActivePorts) {}
+	}
+
+	/**
+	 * Appends the history to CSV files as it happens
+	 */
+	public static class Streaming extends HistorySink {
+		private BufferedWriter channels, bandwidths, switches;
+
+		public Streaming(File folder) {
+			if (!folder.exists()) {
+				folder.mkdirs();
+			}
+			try {
+				channels = new BufferedWriter(new FileWriter(new File(folder, "channels.csv")));
+				channels.write("time,channel,src,dst,flow,appSrc,appDst,size\n");
+				bandwidths = new BufferedWriter(new FileWriter(new File(folder, "bandwidthChanges.csv")));
+				bandwidths.write("time,channel,src,dst,bandwidth\n");
+				switches = new BufferedWriter(new FileWriter(new File(folder, "switchUtilisation.csv")));
+				switches.write("name,startTime,numActivePorts\n");
+			} catch (IOException e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+		}
+
+		@Override
+		public boolean isRetainingHistory() {
+			return false;
+		}
+
+		private void write(BufferedWriter writer, String row) {
+			if (writer == null) return;
+			try {
+				writer.write(row);
+				writer.write('\n');
+			} catch (IOException e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+		}
+
+		@Override
+		public void channelOpened(Channel channel, Flow flow, double time) {
+			write(channels, time+","+channel.getChId()+","+channel.getSrcId()+","+channel.getDstId()+","
+					+flow.getFlowId()+","+flow.getAppNameSrc()+","+flow.getAppNameDest()+","+flow.getSize());
+		}
+
+		@Override
+		public void bandwidthChanged(Channel channel, double time, double bandwidth) {
+			write(bandwidths, time+","+channel.getChId()+","+channel.getSrcId()+","+channel.getDstId()+","+bandwidth);
+		}
+
+		@Override
+		public void switchUtilizationChanged(Switch sw, double time, int numActivePorts) {
+			write(switches, sw.getName()+","+time+","+numActivePorts);
+		}
+
+		@Override
+		public void close() {
+			try {
+				for (BufferedWriter writer : new BufferedWriter[]{channels, bandwidths, switches}) {
+					if (writer != null) writer.close();
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			channels = bandwidths = switches = null;
+		}
+	}
+
+	/**
+	 * Only keeps running sums of the history, which are written to CSV files once closed
+	 */
+	public static class Aggregating extends HistorySink {
+		private final File folder;
+		private long channels, bandwidthChanges;
+		private long transmittedData;
+		/* For each switch, the time spent with a given number of active ports */
+		private final Map<String, TreeMap<Integer, Double>> portsOccupancy = new HashMap<>();
+		private final Map<String, double[]> lastUtilization = new HashMap<>();
+		private boolean closed = false;
+
+		public Aggregating(File folder) {
+			this.folder = folder;
+		}
+
+		@Override
+		public boolean isRetainingHistory() {
+			return false;
+		}
+
+		@Override
+		public void channelOpened(Channel channel, Flow flow, double time) {
+			channels++;
+			transmittedData += flow.getSize();
+		}
+
+		@Override
+		public void bandwidthChanged(Channel channel, double time, double bandwidth) {
+			bandwidthChanges++;
+		}
+
+		@Override
+		public void switchUtilizationChanged(Switch sw, double time, int numActivePorts) {
+			double[] last = lastUtilization.get(sw.getName());
+			if (last != null) {
+				portsOccupancy.computeIfAbsent(sw.getName(), k -> new TreeMap<>())
+						.merge((int) last[1], time - last[0], Double::sum);
+			}
+			lastUtilization.put(sw.getName(), new double[]{time, numActivePorts});
+		}
+
+		public long getChannels() {
+			return channels;
+		}
+
+		public long getBandwidthChanges() {
+			return bandwidthChanges;
+		}
+
+		public long getTransmittedData() {
+			return transmittedData;
+		}
+
+		/**
+		 * @return For each switch, the time spent with each number of active ports
+		 */
+		public Map<String, TreeMap<Integer, Double>> getPortsOccupancy() {
+			return portsOccupancy;
+		}
+
+		@Override
+		public void close() {
+			if (closed) return;
+			closed = true;
+			LogUtil.logger.info("Channels: "+channels+", transmitted data: "+transmittedData+", bandwidth changes: "+bandwidthChanges);
+			if (!folder.exists()) {
+				folder.mkdirs();
+			}
+			try (BufferedWriter aggregates = new BufferedWriter(new FileWriter(new File(folder, "aggregates.csv")));
+				 BufferedWriter switches = new BufferedWriter(new FileWriter(new File(folder, "switchPortsOccupancy.csv")))) {
+				aggregates.write("channels,transmittedData,bandwidthChanges\n");
+				aggregates.write(channels+","+transmittedData+","+bandwidthChanges+"\n");
+				switches.write("name,numActivePorts,time\n");
+				for (Map.Entry<String, TreeMap<Integer, Double>> occupancy : portsOccupancy.entrySet()) {
+					for (Map.Entry<Integer, Double> ports : occupancy.getValue().entrySet()) {
+						switches.write(occupancy.getKey()+","+ports.getKey()+","+ports.getValue()+"\n");
+					}
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+		}
+	}
+}
@@ -13,8 +13,10 @@ package org.cloudbus.osmosis.core;
 
 import java.util.ArrayList;
 import java.util.Hashtable;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 import org.cloudbus.cloudsim.core.MainEventManager;
 import org.cloudbus.cloudsim.core.SimEntity;
@@ -100,7 +102,10 @@ public class OsmosisOrchestrator extends SimEntity {
 	}
 	
 	protected void createChannel(Flow flow) { 	
-		flowList.add(flow);
+		HistorySink history = HistorySink.current();
+		if (history.isRetainingHistory()) {
+			flowList.add(flow);
+		}
 		flow.setStartTime(MainEventManager.clock());
 		int flowId = flow.getFlowId();			
 		updateFlowProcessing();		
@@ -116,9 +121,12 @@ public class OsmosisOrchestrator extends SimEntity {
 				
 		this.channelTable.put(getKey(src, dst, flowId), channel);		
 		channel.initialize();
-		adjustAllChannels(); // all channel get an equal among of BW   		
+		adjustChannelsSharingLinks(channel, true); // all channel get an equal among of BW   		
 		
-		this.channelsHistory.add(channel);
+		if (history.isRetainingHistory()) {
+			this.channelsHistory.add(channel);
+		}
+		history.channelOpened(channel, flow, MainEventManager.clock());
 		channel.addFlowToList(flow);			
 		channel.addTransmission(flow);
 
@@ -165,13 +173,29 @@ public class OsmosisOrchestrator extends SimEntity {
 	private Channel removeChannel(String key) {
 		Channel ch = this.channelTable.remove(key);		
 		ch.terminate();
-		adjustAllChannels();	
+		adjustChannelsSharingLinks(ch, false);	
 		return ch;
 	}
 		
-	protected void adjustAllChannels() {
-		for(Channel ch:this.channelTable.values()) {
-			ch.adjustSharedBandwidthAlongLink();				
+	/**
+	 * Adjusts the bandwidth of the channels sharing a link with the one being created or removed,
+	 * as only the share of such links changes.
+	 */
+	protected void adjustChannelsSharingLinks(Channel changed, boolean isActive) {
+		Set<Channel> affected = new LinkedHashSet<>();
+		if (isActive) {
+			affected.add(changed);
+		}
+		for (Link link : changed.getLinks()) {
+			if (link != null) {
+				affected.addAll(link.getChannels());
+			}
+		}
+		for (Channel ch : affected) {
+			// Skipping the channels no longer in the table
+			if (this.channelTable.get(getKey(ch.getSrcId(), ch.getDstId(), ch.getChId())) == ch) {
+				ch.adjustSharedBandwidthAlongLink();
+			}
 		}
 	}
 		
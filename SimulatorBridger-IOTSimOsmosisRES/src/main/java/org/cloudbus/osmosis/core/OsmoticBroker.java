@@ -51,6 +51,7 @@ public class OsmoticBroker extends DatacenterBroker {
 	public static int brokerID;
 	public Map<String, Integer> iotVmIdByName = new HashMap<>();
 	public static List<WorkflowInfo> workflowTag = new ArrayList<>();
+	private static List<WorkflowSummary> completedWorkflows = new ArrayList<>();
 	public List<OsmoticDatacenter> datacenters = new ArrayList<>();
 	private final AtomicInteger edgeLetId;
 	public boolean isWakeupStartSet;
@@ -59,6 +60,21 @@ public class OsmoticBroker extends DatacenterBroker {
 		return iotDeviceNameToObject;
 	}
 
+	/**
+	 * Workflows to be reported at the end of the simulation: all the started ones when the history
+	 * is kept in memory, and only the completed ones otherwise.
+	 */
+	public static List<WorkflowSummary> workflowSummaries() {
+		if (HistorySink.current().isRetainingHistory())
+			return workflowTag.stream().map(WorkflowSummary::new).collect(Collectors.toList());
+		return completedWorkflows;
+	}
+
+	public static void clearWorkflows() {
+		workflowTag.clear();
+		completedWorkflows.clear();
+	}
+
 	//private Map<String, Integer> roundRobinMelMap = new HashMap<>();
 
 	public CentralAgent osmoticCentralAgent;
@@ -103,10 +119,8 @@ public class OsmoticBroker extends DatacenterBroker {
 			logger.trace("WakeUp Call @"+chron);
 		}
 
-		// Updates the IoT Device with the geo-location information
-		iotDeviceNameToObject.forEach((id, obj) -> {
-			ioTEntityGenerator.updateIoTDevice(obj, chron, chron+deltaVehUpdate);
-		});
+		// Updates the IoT Device with the geo-location information, if it changed since the last event
+		ioTEntityGenerator.updateIoTDevices(iotDeviceNameToObject.values(), chron, deltaVehUpdate);
 
 		//Update simulation time in the AgentBroker
 		ab.updateTime(chron);
@@ -229,13 +243,16 @@ public class OsmoticBroker extends DatacenterBroker {
 	protected void processCloudletReturn(SimEvent ev)
 	{
 		Cloudlet cloudlet = (Cloudlet) ev.getData();						
-		getCloudletReceivedList().add(cloudlet);
+		if (HistorySink.current().isRetainingHistory())
+			getCloudletReceivedList().add(cloudlet);
 		EdgeLet edgeLet = (EdgeLet) ev.getData();	
 		if(!edgeLet.getIsFinal()){	
 			askMelToSendDataToCloud(ev);			
 			return;
 		}	
 		edgeLet.getWorkflowTag().setFinishTime(MainEventManager.clock());
+		if (!HistorySink.current().isRetainingHistory())
+			completedWorkflows.add(new WorkflowSummary(edgeLet.getWorkflowTag()));
 	}
 	
 	private void askMelToProccessData(SimEvent ev) {
@@ -244,7 +261,9 @@ public class OsmoticBroker extends DatacenterBroker {
 		edgeLet.setVmId(flow.getDestination());
 		edgeLet.setCloudletLength(flow.getOsmesisEdgeletSize());
 		edgeLet.isFinal(false);
-		edgeletList.add(edgeLet);
+		if (HistorySink.current().isRetainingHistory()) {
+			edgeletList.add(edgeLet);
+		}
 		int appId = flow.getOsmesisAppId();
 		edgeLet.setOsmesisAppId(appId);
 		edgeLet.setWorkflowTag(flow.getWorkflowTag());
@@ -272,7 +291,9 @@ public class OsmoticBroker extends DatacenterBroker {
 		EdgeLet cloudLet =	generateEdgeLet(length);							
 		cloudLet.setVmId(dest);
 		cloudLet.isFinal(true);			
-		edgeletList.add(cloudLet);		
+		if (HistorySink.current().isRetainingHistory()) {
+			edgeletList.add(cloudLet);
+		}
 		cloudLet.setOsmesisAppId(appId);
 		cloudLet.setWorkflowTag(flow.getWorkflowTag());
 		cloudLet.getWorkflowTag().setCloudLet(cloudLet);		
@@ -302,76 +323,123 @@ public class OsmoticBroker extends DatacenterBroker {
 	}	
 
 	private OsmoticAppDescription getAppById(int osmesisAppId) {
-		OsmoticAppDescription osmesis = null;
-		for(OsmoticAppDescription app : this.appList){
-			if(app.getAppID() == osmesisAppId){
-				osmesis = app;
-			}
+		refreshAppIndex();
+		return appById.get(osmesisAppId);
+	}
+
+	/*
+	 * Indexes over the apps, the VMs and the datacenters, so that each flow is routed without scanning
+	 * them. They are refreshed whenever the indexed collections are changed (apps being added
+	 * dynamically, VMs being submitted or created), as the previous linear scans did see such changes.
+	 */
+	private final Map<Integer, OsmoticAppDescription> appById = new HashMap<>();
+	private List<OsmoticAppDescription> indexedAppList = null;
+	private int indexedApps = 0;
+	private final Map<String, Vm> vmByName = new HashMap<>();
+	private final Map<String, EdgeDevice> edgeDeviceByName = new HashMap<>();
+	private int indexedVmSubmissions = -1, indexedVmCreations = -1;
+	private int vmIndexVersion = 0;
+	private final Map<Integer, Integer> datacenterIdByVmId = new HashMap<>();
+	private final Map<Integer, String> datacenterNameById = new HashMap<>();
+	private List<OsmoticDatacenter> indexedDatacenters = null;
+	private int[] indexedDatacenterVms = new int[0];
+
+	private void refreshAppIndex() {
+		if ((indexedAppList != appList) || (indexedApps > appList.size())) {
+			appById.clear();
+			indexedApps = 0;
+			indexedAppList = appList;
 		}
-		return osmesis;
+		// As in the scan, the last app with the same id prevails
+		for (int i = indexedApps, N = appList.size(); i < N; i++) {
+			OsmoticAppDescription app = appList.get(i);
+			appById.put(app.getAppID(), app);
+		}
+		indexedApps = appList.size();
 	}
 
-	HashMultimap<String, String> map = null;
-	public Set<String> selectVMFromHostPredicate(String melId) {
+	private void refreshVmIndex() {
+		int creations = getVmsCreatedList().size();
+		if ((indexedVmSubmissions == mapVmsToDatacenter.size()) && (indexedVmCreations == creations))
+			return;
+		indexedVmSubmissions = mapVmsToDatacenter.size();
+		indexedVmCreations = creations;
+		vmIndexVersion++;
+		vmByName.clear();
+		edgeDeviceByName.clear();
 		if (map == null) {
 			map = HashMultimap.create();
 		}
 		for (var cp : mapVmsToDatacenter.entrySet()) {
 			for (var vmOrMel : cp.getValue()) {
+				vmByName.putIfAbsent(vmOrMel.getVmName(), vmOrMel);
 				var host = vmOrMel.getHost();
 				if (host instanceof EdgeDevice) {
+					edgeDeviceByName.putIfAbsent(((EdgeDevice) host).getDeviceName(), (EdgeDevice) host);
 					String toStartRegex = vmOrMel.getVmName();
 					toStartRegex = toStartRegex.substring(0, toStartRegex.lastIndexOf('.'))+".*";
 					map.put(toStartRegex, ((EdgeDevice) host).getDeviceName());
 				}
 			}
 		}
-		return map.get(melId);
 	}
-	public Collection<String> selectVMFromHostPredicate() {
-		if (map == null) {
-			map = HashMultimap.create();
+
+	private void refreshDatacenterIndex() {
+		boolean changed = (indexedDatacenters != datacenters) || (indexedDatacenterVms.length != datacenters.size());
+		for (int i = 0; (!changed) && (i < indexedDatacenterVms.length); i++) {
+			changed = indexedDatacenterVms[i] != datacenters.get(i).getVmList().size();
 		}
-		for (var cp : mapVmsToDatacenter.entrySet()) {
-			for (var vmOrMel : cp.getValue()) {
-				var host = vmOrMel.getHost();
-				if (host instanceof EdgeDevice) {
-					String toStartRegex = vmOrMel.getVmName();
-					toStartRegex = toStartRegex.substring(0, toStartRegex.lastIndexOf('.'))+".*";
-					map.put(toStartRegex, ((EdgeDevice) host).getDeviceName());
-				}
+		if (!changed)
+			return;
+		indexedDatacenters = datacenters;
+		indexedDatacenterVms = new int[datacenters.size()];
+		datacenterIdByVmId.clear();
+		datacenterNameById.clear();
+		// As in the scan, the last datacenter prevails
+		for (int i = 0; i < indexedDatacenterVms.length; i++) {
+			OsmoticDatacenter dc = datacenters.get(i);
+			indexedDatacenterVms[i] = dc.getVmList().size();
+			datacenterNameById.put(dc.getId(), dc.getName());
+			for (Vm vm : dc.getVmList()) {
+				datacenterIdByVmId.put(vm.getId(), dc.getId());
 			}
 		}
+	}
+
+	/**
+	 * @return A value changing whenever the VMs are indexed again, and so the hosts returned by
+	 * selectVMFromHostPredicate and resolveEdgeDeviceFromId might have changed
+	 */
+	public int getVmIndexVersion() {
+		refreshVmIndex();
+		return vmIndexVersion;
+	}
+
+	HashMultimap<String, String> map = null;
+	public Set<String> selectVMFromHostPredicate(String melId) {
+		refreshVmIndex();
+		return map.get(melId);
+	}
+	public Collection<String> selectVMFromHostPredicate() {
+		refreshVmIndex();
 		return map.values();
 	}
 
 	public Host resolveHostFromMELId(String melId) {
-		for (var cp : mapVmsToDatacenter.entrySet()) {
-			for (var vmOrMel : cp.getValue()) {
-				if (vmOrMel.getVmName().equals(melId)) {
-					return vmOrMel.getHost();
-				}
-			}
-		}
-		return null;
+		refreshVmIndex();
+		Vm vmOrMel = vmByName.get(melId);
+		return vmOrMel == null ? null : vmOrMel.getHost();
 	}
 
 	public EdgeDevice resolveEdgeDeviceFromId(String hostId) {
-		for (var cp : mapVmsToDatacenter.entrySet()) {
-			for (var vmOrMel : cp.getValue()) {
-				var host = vmOrMel.getHost();
-				if (host instanceof EdgeDevice) {
-					if (((EdgeDevice)host).getDeviceName().equals(hostId))
-						return (EdgeDevice) host;
-				}
-			}
-		}
-		return null;
+		refreshVmIndex();
+		return edgeDeviceByName.get(hostId);
 	}
 
 	public void submitVmList(List<? extends Vm> list, int datacenterId) {		
 		mapVmsToDatacenter.put(datacenterId, list);
 		getVmList().addAll(list);
+		indexedVmSubmissions = -1;
 	}
 	
 	protected void createVmsInDatacenter(int datacenterId) {		
@@ -470,25 +538,13 @@ public class OsmoticBroker extends DatacenterBroker {
 	}
 	
 	private int getDatacenterIdByVmId(int vmId){
-		int dcId = 0;
-		for(OsmoticDatacenter dc :datacenters){
-			for(Vm vm : dc.getVmList()){
-				if(vm.getId() == vmId){
-					dcId = dc.getId();					
-				}
-			}
-		}
-		return dcId;
+		refreshDatacenterIndex();
+		return datacenterIdByVmId.getOrDefault(vmId, 0);
 	}
 	
 	private String getDatacenterNameById(int id){
-		String name = "";
-		for(OsmoticDatacenter dc :datacenters){
-			if(dc.getId() == id){
-				name = dc.getName();
-			}
-		}
-		return name;
+		refreshDatacenterIndex();
+		return datacenterNameById.getOrDefault(id, "");
 	}
 
 	public void addIoTDevice(IoTDevice device) {
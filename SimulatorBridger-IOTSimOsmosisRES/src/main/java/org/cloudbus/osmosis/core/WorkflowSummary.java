@@ -0,0 +1,170 @@
+/*
+ * Title:        IoTSim-Osmosis 1.0
+ * Description:  IoTSim-Osmosis enables the testing and validation of osmotic computing applications
+ * 			     over heterogeneous edge-cloud SDN-aware environments.
+ *
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2020, Newcastle University (UK) and Saudi Electronic University (Saudi Arabia)
+ *
+ */
+
+package org.cloudbus.osmosis.core;
+
+import org.cloudbus.cloudsim.edge.core.edge.EdgeLet;
+
+/**
+ * Values of a {@link WorkflowInfo} being reported by the printers. Differently from the former, it
+ * does not reference the flows and the edgelets of the transaction, so that it can be kept until the
+ * end of the simulation while these are not referenced anymore.
+ * A missing flow or edgelet of the transaction is also missing from its summary.
+ */
+public class WorkflowSummary {
+	private final int workflowId;
+	private final int appId;
+	private final String appName;
+	private final FlowSummary iotDeviceFlow;
+	private final FlowSummary edgeToCloudFlow;
+	private final TaskSummary edgeLet;
+	private final TaskSummary cloudLet;
+	private final String sourceDatacenterName;
+	private final String destinationDatacenterName;
+	private final double startTime;
+	private final double finishTime;
+
+	public WorkflowSummary(WorkflowInfo workflow) {
+		this.workflowId = workflow.getWorkflowId();
+		this.appId = workflow.getAppId();
+		this.appName = workflow.getAppName();
+		this.iotDeviceFlow = FlowSummary.of(workflow.getIotDeviceFlow());
+		this.edgeToCloudFlow = FlowSummary.of(workflow.getEdgeToCloudFlow());
+		this.edgeLet = TaskSummary.of(workflow.getEdgeLet());
+		this.cloudLet = TaskSummary.of(workflow.getCloudLet());
+		this.sourceDatacenterName = workflow.getSourceDCName();
+		this.destinationDatacenterName = workflow.getDestinationDCName();
+		this.startTime = workflow.getSartTime();
+		this.finishTime = workflow.getFinishTime();
+	}
+
+	public int getWorkflowId() {
+		return workflowId;
+	}
+
+	public int getAppId() {
+		return appId;
+	}
+
+	public String getAppName() {
+		return appName;
+	}
+
+	public FlowSummary getIotDeviceFlow() {
+		return iotDeviceFlow;
+	}
+
+	public FlowSummary getEdgeToCloudFlow() {
+		return edgeToCloudFlow;
+	}
+
+	public TaskSummary getEdgeLet() {
+		return edgeLet;
+	}
+
+	public TaskSummary getCloudLet() {
+		return cloudLet;
+	}
+
+	public String getSourceDCName() {
+		return sourceDatacenterName;
+	}
+
+	public String getDestinationDCName() {
+		return destinationDatacenterName;
+	}
+
+	public double getStartTime() {
+		return startTime;
+	}
+
+	public double getFinishTime() {
+		return finishTime;
+	}
+
+	public static class FlowSummary {
+		private final String appNameSrc;
+		private final String appNameDest;
+		private final int appId;
+		private final long size;
+		private final double startTime;
+		private final double transmissionTime;
+
+		private FlowSummary(Flow flow) {
+			this.appNameSrc = flow.getAppNameSrc();
+			this.appNameDest = flow.getAppNameDest();
+			this.appId = flow.getApp().getAppID();
+			this.size = flow.getSize();
+			this.startTime = flow.getStartTime();
+			this.transmissionTime = flow.getTransmissionTime();
+		}
+
+		static FlowSummary of(Flow flow) {
+			return flow == null ? null : new FlowSummary(flow);
+		}
+
+		public String getAppNameSrc() {
+			return appNameSrc;
+		}
+
+		public String getAppNameDest() {
+			return appNameDest;
+		}
+
+		public int getAppId() {
+			return appId;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		public double getStartTime() {
+			return startTime;
+		}
+
+		public double getTransmissionTime() {
+			return transmissionTime;
+		}
+	}
+
+	public static class TaskSummary {
+		private final double cloudletLength;
+		private final double execStartTime;
+		private final double finishTime;
+
+		private TaskSummary(EdgeLet task) {
+			this.cloudletLength = task.getCloudletLength();
+			this.execStartTime = task.getExecStartTime();
+			this.finishTime = task.getFinishTime();
+		}
+
+		static TaskSummary of(EdgeLet task) {
+			return task == null ? null : new TaskSummary(task);
+		}
+
+		public double getCloudletLength() {
+			return cloudletLength;
+		}
+
+		public double getExecStartTime() {
+			return execStartTime;
+		}
+
+		public double getFinishTime() {
+			return finishTime;
+		}
+
+		public double getActualCPUTime() {
+			return getFinishTime() - getExecStartTime();
+		}
+	}
+}
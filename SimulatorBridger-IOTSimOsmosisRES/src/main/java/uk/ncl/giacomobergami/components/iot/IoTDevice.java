@@ -204,7 +204,8 @@ public abstract class IoTDevice extends SimEntity implements CartesianPoint {
 		workflowTag.setSourceDCName(app.getEdgeDatacenterName());
 		workflowTag.setDestinationDCName(app.getCloudDatacenterName());
 		flow.setWorkflowTag(workflowTag);
-		OsmoticBroker.workflowTag.add(workflowTag);
+		if (HistorySink.current().isRetainingHistory())
+			OsmoticBroker.workflowTag.add(workflowTag);
 		flow.addPacketSize(app.getIoTDeviceOutputSize());			
 		updateBandwidth();
 
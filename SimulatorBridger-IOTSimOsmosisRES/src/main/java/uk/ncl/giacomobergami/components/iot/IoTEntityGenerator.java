@@ -8,6 +8,7 @@ import uk.ncl.giacomobergami.utils.asthmatic.WorkloadCSV;
 import uk.ncl.giacomobergami.utils.asthmatic.WorkloadFromVehicularProgram;
 import uk.ncl.giacomobergami.utils.data.YAML;
 import uk.ncl.giacomobergami.utils.shared_data.iot.IoT;
+import uk.ncl.giacomobergami.utils.shared_data.iot.TimedIoT;
 
 import java.io.*;
 import java.lang.reflect.Type;
@@ -18,6 +19,71 @@ import java.util.stream.Collectors;
 public class IoTEntityGenerator {
     final TreeMap<String, IoT> timed_iots;
     final IoTGlobalConfiguration conf;
+    /** The trajectory of each entry, compiled once when loaded */
+    private final IdentityHashMap<IoT, Trajectory> trajectories;
+    /** The trajectory of each device being updated, together with its position in time */
+    private final IdentityHashMap<IoTDevice, TrajectoryCursor> cursors;
+    /** The devices to be updated, by the earliest time at which their update might change */
+    private final PriorityQueue<ScheduledUpdate> scheduledUpdates;
+    private double scheduledDelta;
+
+    /**
+     * Positions of an entry sorted by time, as primitive arrays
+     */
+    private static class Trajectory {
+        final double start;
+        final double[] times, x, y;
+
+        Trajectory(IoT iot) {
+            start = iot.program.startCommunicatingAtSimulationTime;
+            times = iot.dynamicInformation.keySet().stream().mapToDouble(Double::doubleValue).sorted().toArray();
+            x = new double[times.length];
+            y = new double[times.length];
+            for (int i = 0; i < times.length; i++) {
+                var obj = iot.dynamicInformation.get(times[i]);
+                x[i] = obj.x;
+                y[i] = obj.y;
+            }
+        }
+    }
+
+    /**
+     * Position of a device in its trajectory: as the clock never goes back, the times before the
+     * last update are never looked up again
+     */
+    private static class TrajectoryCursor {
+        final Trajectory trajectory;
+        int low, up;
+
+        TrajectoryCursor(Trajectory trajectory) {
+            this.trajectory = trajectory;
+            low = up = -1;
+        }
+
+        /**
+         * @return  The index of the greatest time not after t, or -1 if none, moving from the given one
+         */
+        int floor(int from, double t) {
+            var times = trajectory.times;
+            if ((from >= 0) && (times[from] > t)) {
+                // The clock went back, so restarting the search
+                int i = Arrays.binarySearch(times, t);
+                return i >= 0 ? i : -i - 2;
+            }
+            while ((from + 1 < times.length) && (times[from + 1] <= t)) from++;
+            return from;
+        }
+    }
+
+    private static class ScheduledUpdate {
+        final double time;
+        final IoTDevice device;
+
+        ScheduledUpdate(double time, IoTDevice device) {
+            this.time = time;
+            this.device = device;
+        }
+    }
 
 
     public static class IoTGlobalConfiguration {
@@ -35,6 +101,10 @@ public class IoTEntityGenerator {
                               IoTGlobalConfiguration conf) {
         this.timed_iots = timed_scc;
         this.conf = conf;
+        trajectories = new IdentityHashMap<>();
+        cursors = new IdentityHashMap<>();
+        scheduledUpdates = new PriorityQueue<>(Comparator.comparingDouble(x -> x.time));
+        compileTrajectories();
     }
 
     public IoTEntityGenerator(File iotFiles,
@@ -59,6 +129,15 @@ public class IoTEntityGenerator {
             e.printStackTrace();
             System.exit(1);
         }
+        trajectories = new IdentityHashMap<>();
+        cursors = new IdentityHashMap<>();
+        scheduledUpdates = new PriorityQueue<>(Comparator.comparingDouble(x -> x.time));
+        compileTrajectories();
+    }
+
+    private void compileTrajectories() {
+        for (var x : timed_iots.values()) trajectories.put(x, new Trajectory(x));
+        scheduledDelta = Double.NaN;
     }
 
     public Collection<Double> collectionOfWakeUpTimes() {
@@ -73,39 +152,93 @@ public class IoTEntityGenerator {
     public void updateIoTDevice(@Input @Output IoTDevice toUpdateWithTime,
                                 @Input double simTimeLow,
                                 @Input double simTimeUp) {
-        var ls = timed_iots.get(toUpdateWithTime.getName());
-        if ((simTimeLow >= ls.program.startCommunicatingAtSimulationTime)) {
-            var times = new TreeSet<>(ls.dynamicInformation.keySet());
-            if (simTimeUp > times.last())  {
-                toUpdateWithTime.transmit = false;
-            } else {
-                Double expectedLow = times.contains(simTimeLow) ? ((Double) simTimeLow) : times.lower(simTimeLow);
-                var dist = simTimeUp - simTimeLow;
-                if ((expectedLow != null) && (expectedLow <= simTimeUp)) {
-                    toUpdateWithTime.transmit = true;
-//                System.out.println(toUpdateWithTime.getName()+" Transmitting at "+expectedLow);
-                    var expObj = ls.dynamicInformation.get(expectedLow);
-                    toUpdateWithTime.mobility.range.beginX = (int) (toUpdateWithTime.mobility.location.x = expObj.x);
-                    toUpdateWithTime.mobility.range.beginY = (int) (toUpdateWithTime.mobility.location.y = expObj.y);
-                    toUpdateWithTime.mobility.location.y = ls.dynamicInformation.get(expectedLow).y;
-                    toUpdateWithTime.mobility.location.x = ls.dynamicInformation.get(expectedLow).x;
-                    if (toUpdateWithTime.getName().equals("0") && ((simTimeLow - Math.floor(simTimeLow) <= 0.1))) {
-                        System.out.println(simTimeLow+" time: " +toUpdateWithTime.mobility.range.beginX+"->"+toUpdateWithTime.mobility.location.x+", "+toUpdateWithTime.mobility.range.beginY+"->"+toUpdateWithTime.mobility.location.y);
-                    }
-                    Double expectedUp = simTimeUp + dist;
-                    expectedUp = times.contains(expectedUp) ? expectedUp : times.lower(expectedUp);
-                    if (expectedUp != null) {
-                        expObj = ls.dynamicInformation.get(expectedUp);
-                        toUpdateWithTime.mobility.range.endX = (int) expObj.x;
-                        toUpdateWithTime.mobility.range.endY = (int) expObj.y;
-                    }
-                } else {
-                    toUpdateWithTime.transmit = false;
-                }
+        update(toUpdateWithTime, simTimeLow, simTimeUp);
+    }
+
+    /**
+     * Updates all the devices at the current time, as {@link #updateIoTDevice(IoTDevice, double, double)}
+     * with an upper bound of simTimeLow+delta. Only the devices whose update might change since the
+     * previous one are updated, so that the cost is proportional to the devices moving at this time.
+     * The devices not given before are updated straight away.
+     */
+    public void updateIoTDevices(@Input @Output Collection<IoTDevice> devices,
+                                 @Input double simTimeLow,
+                                 @Input double delta) {
+        if (delta != scheduledDelta) {
+            // The changes were expected with a different delta
+            scheduledUpdates.clear();
+            cursors.clear();
+            scheduledDelta = delta;
+        }
+        if (cursors.size() != devices.size()) {
+            for (var device : devices) {
+                if (!cursors.containsKey(device))
+                    scheduledUpdates.add(new ScheduledUpdate(-Double.MAX_VALUE, device));
             }
+        }
+        while ((!scheduledUpdates.isEmpty()) && (scheduledUpdates.peek().time <= simTimeLow)) {
+            var device = scheduledUpdates.poll().device;
+            double next = update(device, simTimeLow, simTimeLow + delta);
+            if (next < Double.MAX_VALUE)
+                scheduledUpdates.add(new ScheduledUpdate(next, device));
+        }
+    }
+
+    private TrajectoryCursor cursor(IoTDevice device) {
+        var cursor = cursors.get(device);
+        if (cursor == null) {
+            cursor = new TrajectoryCursor(trajectories.get(timed_iots.get(device.getName())));
+            cursors.put(device, cursor);
+        }
+        return cursor;
+    }
+
+    /**
+     * A threshold depending on the delta between the bounds, which is crossed by some time after
+     * simTimeLow: it is anticipated, so not to miss the change because of the rounding
+     */
+    private static double anticipate(double threshold, double simTimeLow) {
+        return Math.max(threshold - 1e-9 * Math.max(1.0, Math.abs(threshold)), Math.nextUp(simTimeLow));
+    }
+
+    /**
+     * @return  The earliest time after simTimeLow at which the update of the device might change, for the
+     *          same distance between the bounds, or Double.MAX_VALUE if it never changes again
+     */
+    private double update(IoTDevice toUpdateWithTime,
+                          double simTimeLow,
+                          double simTimeUp) {
+        var cursor = cursor(toUpdateWithTime);
+        var ls = cursor.trajectory;
+        var times = ls.times;
+        if (simTimeLow < ls.start) {
+            toUpdateWithTime.transmit = false;
+            return ls.start;
+        }
+        if ((times.length == 0) || (simTimeUp > times[times.length - 1])) {
+            toUpdateWithTime.transmit = false;
+            return Double.MAX_VALUE;
+        }
+        var dist = simTimeUp - simTimeLow;
+        double next = anticipate(times[times.length - 1] - dist, simTimeLow);
+        int expectedLow = cursor.low = cursor.floor(cursor.low, simTimeLow);
+        if (expectedLow + 1 < times.length) next = Math.min(next, times[expectedLow + 1]);
+        if ((expectedLow >= 0) && (times[expectedLow] <= simTimeUp)) {
+            toUpdateWithTime.transmit = true;
+            toUpdateWithTime.mobility.range.beginX = (int) (toUpdateWithTime.mobility.location.x = ls.x[expectedLow]);
+            toUpdateWithTime.mobility.range.beginY = (int) (toUpdateWithTime.mobility.location.y = ls.y[expectedLow]);
+            double expectedUpTime = simTimeUp + dist;
+            int expectedUp = cursor.up = cursor.floor(cursor.up, expectedUpTime);
+            if (expectedUp >= 0) {
+                toUpdateWithTime.mobility.range.endX = (int) ls.x[expectedUp];
+                toUpdateWithTime.mobility.range.endY = (int) ls.y[expectedUp];
+            }
+            if (expectedUp + 1 < times.length)
+                next = Math.min(next, anticipate(times[expectedUp + 1] - 2 * dist, simTimeLow));
         } else {
             toUpdateWithTime.transmit = false;
         }
+        return next;
     }
 
     public List<WorkloadCSV> generateAppSetUp(double simulation_step,
@@ -135,30 +268,33 @@ public class IoTEntityGenerator {
                     var firstTime = ls.first();
                     ls.remove(firstTime);
                     var min = x.dynamicInformation.get(firstTime);
-                    var iot = new IoTDeviceTabularConfiguration();
-                    iot.beginX = (int) min.x;
-                    iot.beginY = (int) min.y;
-                    iot.movable = ls.size() > 0;
-                    if (iot.movable) {
-                        iot.hasMovingRange = true;
-                        var nextTime = ls.first();
-                        var minNext = x.dynamicInformation.get(nextTime);
-                        iot.endX = (int) minNext.x;
-                        iot.endY = (int) minNext.y;
-                    }
-                    iot.signalRange = conf.signalRange;
-                    iot.associatedEdge = null;
-                    iot.networkType = conf.networkType;
-                    iot.velocity = min.speed;
-                    iot.name = min.id;
-                    iot.communicationProtocol = conf.communicationProtocol;
-                    iot.bw = conf.bw;
-                    iot.max_battery_capacity = conf.max_battery_capacity;
-                    iot.battery_sensing_rate = conf.battery_sensing_rate;
-                    iot.battery_sending_rate = conf.battery_sending_rate;
-                    iot.ioTClassName = conf.ioTClassName;
-                    return iot;
+                    var minNext = ls.isEmpty() ? null : x.dynamicInformation.get(ls.first());
+                    return asIoTJSONConfiguration(min.id, min, minNext);
                 }).collect(Collectors.toList());
     }
 
+    private IoTDeviceTabularConfiguration asIoTJSONConfiguration(String name, TimedIoT min, TimedIoT minNext) {
+        var iot = new IoTDeviceTabularConfiguration();
+        iot.beginX = (int) min.x;
+        iot.beginY = (int) min.y;
+        iot.movable = minNext != null;
+        if (iot.movable) {
+            iot.hasMovingRange = true;
+            iot.endX = (int) minNext.x;
+            iot.endY = (int) minNext.y;
+        }
+        iot.signalRange = conf.signalRange;
+        iot.associatedEdge = null;
+        iot.networkType = conf.networkType;
+        iot.velocity = min.speed;
+        iot.name = name;
+        iot.communicationProtocol = conf.communicationProtocol;
+        iot.bw = conf.bw;
+        iot.max_battery_capacity = conf.max_battery_capacity;
+        iot.battery_sensing_rate = conf.battery_sensing_rate;
+        iot.battery_sending_rate = conf.battery_sending_rate;
+        iot.ioTClassName = conf.ioTClassName;
+        return iot;
+    }
+
 }
@@ -40,6 +40,10 @@ public class GlobalConfigurationSettings {
     public String OsmesisBroker;
     public int num_user;
     public String mel_switch_policy;
+    public String future_queue;
+    public String future_queue_trace;
+    public int logical_process_threads;
+    public String history_sink;
     public double terminate_simulation_at;
     public String simulationStartTime;
     public String RES_CONFIG_FILE;
@@ -54,6 +58,12 @@ public class GlobalConfigurationSettings {
         conf.simulationStartTime = simulationStartTime;
         conf.terminate_simulation_at = terminate_simulation_at;
         conf.mel_switch_policy = mel_switch_policy;
+        conf.future_queue = future_queue;
+        conf.future_queue_trace = future_queue_trace;
+        conf.logical_process_threads = logical_process_threads;
+        conf.history_sink = history_sink;
+        if (output_simulation_file != null)
+            conf.history_folder = new File(output_simulation_file, "history").getPath();
         conf.num_user = num_user;
         conf.OsmesisBroker = OsmesisBroker;
         conf.osmesisAppFile = apps_file;
@@ -583,6 +593,38 @@ public class GlobalConfigurationSettings {
         this.mel_switch_policy = mel_switch_policy;
     }
 
+    public String getFuture_queue() {
+        return future_queue;
+    }
+
+    public void setFuture_queue(String future_queue) {
+        this.future_queue = future_queue;
+    }
+
+    public String getFuture_queue_trace() {
+        return future_queue_trace;
+    }
+
+    public void setFuture_queue_trace(String future_queue_trace) {
+        this.future_queue_trace = future_queue_trace;
+    }
+
+    public int getLogical_process_threads() {
+        return logical_process_threads;
+    }
+
+    public void setLogical_process_threads(int logical_process_threads) {
+        this.logical_process_threads = logical_process_threads;
+    }
+
+    public String getHistory_sink() {
+        return history_sink;
+    }
+
+    public void setHistory_sink(String history_sink) {
+        this.history_sink = history_sink;
+    }
+
     public double getTerminate_simulation_at() {
         return terminate_simulation_at;
     }
@@ -0,0 +1,32 @@
+package uk.ncl.giacomobergami.components.simulator;
+
+import org.cloudbus.cloudsim.core.FutureQueue;
+import org.cloudbus.cloudsim.core.TracingFutureQueue;
+import org.cloudbus.cloudsim.core.TreeSetFutureQueue;
+import uk.ncl.giacomobergami.utils.design_patterns.ReflectiveFactoryMethod;
+
+import java.io.File;
+import java.io.IOException;
+
+public class FutureQueueGeneratorFacade {
+    public static FutureQueue generateFacade(String clazzPath) {
+        return ReflectiveFactoryMethod
+                .getInstance(FutureQueue.class)
+                .generateFacade(clazzPath, TreeSetFutureQueue::new);
+    }
+
+    /**
+     * @param tracePath If not null, the file where all the operations over the generated queue are recorded
+     */
+    public static FutureQueue generateFacade(String clazzPath, String tracePath) {
+        FutureQueue queue = generateFacade(clazzPath);
+        if (tracePath == null) return queue;
+        try {
+            return new TracingFutureQueue(queue, new File(tracePath));
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+            return queue;
+        }
+    }
+}
@@ -31,6 +31,11 @@ public class OsmoticConfiguration {
     public String   OsmesisBroker;
     public double   terminate_simulation_at;
     public String   mel_switch_policy;
+    public String   future_queue;
+    public String   future_queue_trace;
+    public int      logical_process_threads;
+    public String   history_sink;
+    public String   history_folder;
 
     public String getMel_switch_policy() {
         return mel_switch_policy;
@@ -38,6 +43,36 @@ public class OsmoticConfiguration {
     public void setMel_switch_policy(String mel_switch_policy) {
         this.mel_switch_policy = mel_switch_policy;
     }
+    public String getFuture_queue() {
+        return future_queue;
+    }
+    public void setFuture_queue(String future_queue) {
+        this.future_queue = future_queue;
+    }
+    public String getFuture_queue_trace() {
+        return future_queue_trace;
+    }
+    public void setFuture_queue_trace(String future_queue_trace) {
+        this.future_queue_trace = future_queue_trace;
+    }
+    public int getLogical_process_threads() {
+        return logical_process_threads;
+    }
+    public void setLogical_process_threads(int logical_process_threads) {
+        this.logical_process_threads = logical_process_threads;
+    }
+    public String getHistory_sink() {
+        return history_sink;
+    }
+    public void setHistory_sink(String history_sink) {
+        this.history_sink = history_sink;
+    }
+    public String getHistory_folder() {
+        return history_folder;
+    }
+    public void setHistory_folder(String history_folder) {
+        this.history_folder = history_folder;
+    }
     public double getTerminate_simulation_at() {
         return terminate_simulation_at;
     }
@@ -24,7 +24,10 @@ import org.cloudbus.agent.AgentBroker;
 import org.cloudbus.agent.config.AgentConfigLoader;
 import org.cloudbus.agent.config.AgentConfigProvider;
 import org.cloudbus.agent.config.TopologyLink;
+import org.cloudbus.cloudsim.core.FutureQueue;
+import org.cloudbus.cloudsim.core.LogicalProcessExecutor;
 import org.cloudbus.cloudsim.core.MainEventManager;
+import org.cloudbus.cloudsim.core.TracingFutureQueue;
 import org.cloudbus.cloudsim.edge.core.edge.LegacyConfiguration;
 import org.cloudbus.cloudsim.edge.utils.LogUtil;
 import org.cloudbus.cloudsim.osmesis.examples.uti.PrintResults;
@@ -61,6 +64,7 @@ public class OsmoticWrapper {
     private boolean started;
     private boolean finished;
     private double runTime;
+    private FutureQueue futureQueue;
     List<OsmoticAppDescription> appList;
 
 
@@ -92,7 +96,8 @@ public class OsmoticWrapper {
         if (started) {
             MainEventManager.novel_stop();
 //            OsmoticAppsParser.appList.clear();
-            OsmoticBroker.workflowTag.clear();
+            OsmoticBroker.clearWorkflows();
+            HistorySink.setCurrent(null);
 //            osmoticBroker = null;
             topologyBuilder = null;
             agentBroker = null;
@@ -161,13 +166,42 @@ public class OsmoticWrapper {
         conductor.setSdnControllers(controllers);
         osmoticBroker.submitOsmesisApps(appList);
         osmoticBroker.setDatacenters(topologyBuilder.getOsmesisDatacentres());
+        if (conf.logical_process_threads > 1) {
+            MainEventManager.setLogicalProcessExecutor(partitionIntoLogicalProcesses(topologyBuilder.getOsmesisDatacentres(), conf.logical_process_threads));
+        }
 
         init = true;
         return init;
     }
 
+    /**
+     * Each datacenter, together with its SDN controller, hosts and switches, becomes a logical
+     * process. The broker, the orchestrator, the SD-WAN and the IoT devices are shared entities.
+     */
+    private static LogicalProcessExecutor partitionIntoLogicalProcesses(List<? extends OsmoticDatacenter> datacentres, int threads) {
+        LogicalProcessExecutor executor = new LogicalProcessExecutor(threads);
+        int process = 0;
+        for (OsmoticDatacenter osmesisDC : datacentres) {
+            executor.assign(osmesisDC, process);
+            SDNController controller = osmesisDC.getSdnController();
+            if (controller != null) {
+                executor.assign(controller, process);
+                for (var switch_ : controller.getSwitchList())
+                    executor.assign(switch_, process);
+            }
+            if (osmesisDC.getSdnhosts() != null) {
+                for (var host : osmesisDC.getSdnhosts())
+                    executor.assign(host, process);
+            }
+            process++;
+        }
+        return executor;
+    }
+
     private void allocateOrClearDataStructures(Calendar calendar) {
-        MainEventManager.init(conf.num_user, calendar, conf.trace_flag);
+        futureQueue = FutureQueueGeneratorFacade.generateFacade(conf.future_queue, conf.future_queue_trace);
+        MainEventManager.init(conf.num_user, calendar, conf.trace_flag, futureQueue);
+        HistorySink.setCurrent(HistorySink.generate(conf.history_sink, conf.history_folder == null ? null : new File(conf.history_folder)));
         if (conf.terminate_simulation_at > 0)
             MainEventManager.terminateSimulation(conf.terminate_simulation_at);
     }
@@ -238,6 +272,10 @@ public class OsmoticWrapper {
     private void start() {
         init(); // Ensuring that the simulation is started
         runTime = MainEventManager.startSimulation();
+        if (futureQueue instanceof TracingFutureQueue) {
+            // Completing the trace of the queue operations
+            ((TracingFutureQueue) futureQueue).close();
+        }
         finished = true;
     }
 
@@ -256,6 +294,7 @@ public class OsmoticWrapper {
             }
 
             pr.collectDataCenterData(topologyBuilder.getSdWanController().getName(), null, topologyBuilder.getSdWanController().getSwitchList(), runTime);
+            HistorySink.current().close();
 
             if (energyControllers != null) {
                 RESPrinter res_printer = new RESPrinter();
@@ -286,6 +325,7 @@ public class OsmoticWrapper {
             }
 
             pr.collectDataCenterData(conf.sdWanController.getName(), null, conf.sdWanController.getSwitchList(), runTime);
+            HistorySink.current().close();
 
             if (energyControllers != null) {
                 RESPrinter res_printer = new RESPrinter();
@@ -337,6 +377,9 @@ public class OsmoticWrapper {
         osmoticBroker.setDatacenters(conf.conf.osmesisDatacentres);
         osmoticBroker.setDeltaVehUpdate(conf.simulation_step);
         osmoticBroker.setIoTTraces(new IoTEntityGenerator(new File(conf.iot_traces), null));
+        if (conf.logical_process_threads > 1) {
+            MainEventManager.setLogicalProcessExecutor(partitionIntoLogicalProcesses(conf.conf.osmesisDatacentres, conf.logical_process_threads));
+        }
 
         init = true;
         return init;
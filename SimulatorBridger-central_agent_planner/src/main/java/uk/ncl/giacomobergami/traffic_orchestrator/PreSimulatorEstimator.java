@@ -21,7 +21,6 @@
 
 package uk.ncl.giacomobergami.traffic_orchestrator;
 
-import com.google.common.collect.Multimaps;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
@@ -38,6 +37,8 @@ import uk.ncl.giacomobergami.utils.asthmatic.WorkloadCSV;
 import uk.ncl.giacomobergami.utils.asthmatic.WorkloadCSVMediator;
 import uk.ncl.giacomobergami.utils.asthmatic.WorkloadFromVehicularProgram;
 import uk.ncl.giacomobergami.utils.data.CSVMediator;
+import uk.ncl.giacomobergami.utils.data.ColumnarTraceMediator;
+import uk.ncl.giacomobergami.utils.data.TimedNetworkTrace;
 import uk.ncl.giacomobergami.utils.gir.SquaredCartesianDistanceFunction;
 import uk.ncl.giacomobergami.utils.pipeline_confs.OrchestratorConfiguration;
 import uk.ncl.giacomobergami.utils.pipeline_confs.TrafficConfiguration;
@@ -57,6 +58,7 @@ import java.lang.reflect.Type;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
@@ -118,14 +120,34 @@ public class PreSimulatorEstimator {
     }
 
     protected ReconstructNetworkInformation readEdges() {
+        File rsuCsvFile = new File(conf2.RSUCsvFile);
+        if (TimedNetworkTrace.hasTrace(rsuCsvFile))
+            return ReconstructNetworkInformation.fromTrace(TimedNetworkTrace.traceOf(rsuCsvFile).getAbsoluteFile(), new File(conf.RSUCsvFile));
+        // Falling back to the JSON files written by the previous versions of the converter
         return ReconstructNetworkInformation.fromFiles(new File(conf2.RSUCsvFile+"_timed_scc.json").getAbsoluteFile(),
                 new File(conf2.RSUCsvFile+"_neighboursChange.json").getAbsoluteFile(),
                 new File(conf.RSUCsvFile) );
     }
 
     protected TreeMap<Double, List<TimedIoT>> readIoT() {
-        var reader = vehm.beginCSVRead(new File(conf.vehicleCSVFile));
+        File vehicleCSVFile = new File(conf.vehicleCSVFile);
         TreeMap<Double, List<TimedIoT>> map = new TreeMap<>();
+        if (ColumnarTraceMediator.hasTrace(vehicleCSVFile)) {
+            // The binary trace is already grouped by tick: no parsing is required
+            var trace = TimedIoTMediator.trace().beginRead(ColumnarTraceMediator.traceOf(vehicleCSVFile));
+            if (trace != null) {
+                for (double tick : trace.getTicks()) {
+                    map.put(tick, trace.readTick(tick));
+                }
+                try {
+                    trace.close();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+                return map;
+            }
+        }
+        var reader = vehm.beginCSVRead(vehicleCSVFile);
         while (reader.hasNext()) {
             var curr = reader.next();
             if (!map.containsKey(curr.simtime))
@@ -140,6 +162,66 @@ public class PreSimulatorEstimator {
         return map;
     }
 
+    /**
+     * Solves the problem for a single tick, only depending on the vehicles and the network at that tick
+     * @return  The solving time and the solutions, or null if no vehicle could communicate with the network
+     */
+    private ImmutablePair<Long, ArrayList<LocalTimeOptimizationProblem.Solution>> solveTick(List<TimedIoT> vehs2, ReconstructNetworkInformation.TimedNetwork current) {
+        LocalTimeOptimizationProblem solver = new LocalTimeOptimizationProblem(vehs2, current);
+        if (!solver.init()) return null;
+        if (conf.do_thresholding) {
+            if (conf.use_nearest_MEL_to_IoT) {
+                solver.setNearestFirstMileMELForIoT();
+            } else {
+                solver.setAllPossibleFirstMileMELForIoT();
+            }
+
+            if (conf.use_greedy_algorithm) {
+                solver.setGreedyPossibleTargetsForIoT(conf.use_local_demand_forecast);
+            } else if (conf.use_top_k_nearest_targets > 0) {
+                solver.setAllPossibleNearestKTargetsForLastMileCommunication(conf.use_top_k_nearest_targets, conf.use_top_k_nearest_targets_randomOne);
+            } else {
+                solver.setAllPossibleTargetsForLastMileCommunication();
+            }
+        } else {
+            solver.alwaysCommunicateWithTheNearestMel();
+        }
+
+        ArrayList<LocalTimeOptimizationProblem.Solution> sol =
+                solver.multi_objective_pareto(conf.k1, conf.k2, conf.ignore_cubic, comparator, conf.reduce_to_one, conf.update_after_flow, conf.use_scc_neighbours, conf.parallelism);
+        return new ImmutablePair<>(solver.getRunTime(), sol);
+    }
+
+    private void collectSolution(Double currTime,
+                                 ImmutablePair<Long, ArrayList<LocalTimeOptimizationProblem.Solution>> solved,
+                                 HashMap<Double, ArrayList<LocalTimeOptimizationProblem.Solution>> simulationSolutions,
+                                 List<Double> temporalOrdering) {
+        if (solved == null) return;
+        problemSolvingTime.put(currTime, solved.getKey());
+        simulationSolutions.put(currTime, solved.getValue());
+        temporalOrdering.add(currTime);
+    }
+
+    /**
+     * Collects the solved ticks in tick order, so to preserve the temporal ordering
+     * @param maxPending    Maximum number of ticks that can be left pending: the oldest ones are waited for
+     *                      until this bound is met, while the following ones are only collected if
+     *                      already solved and not preceded by an unsolved one
+     */
+    private void collectSolutions(Deque<ImmutablePair<Double, Future<ImmutablePair<Long, ArrayList<LocalTimeOptimizationProblem.Solution>>>>> pending,
+                                  int maxPending,
+                                  HashMap<Double, ArrayList<LocalTimeOptimizationProblem.Solution>> simulationSolutions,
+                                  List<Double> temporalOrdering) {
+        while ((!pending.isEmpty()) && (pending.size() > maxPending || pending.peekFirst().getValue().isDone())) {
+            var tick = pending.pollFirst();
+            try {
+                collectSolution(tick.getKey(), tick.getValue().get(), simulationSolutions, temporalOrdering);
+            } catch (InterruptedException | ExecutionException e) {
+                throw new RuntimeException("ERROR: unable to solve the problem at time " + tick.getKey(), e);
+            }
+        }
+    }
+
     public void run() {
         logger.trace("CENTRAL AGENT PLANNER: running");
         candidate = null;
@@ -156,60 +238,56 @@ public class PreSimulatorEstimator {
             logger.warn("WARNING: vechicles are empty!");
             return;
         }
-        for (var simTimeToVehicles : vehSet) {
-            logger.info(simTimeToVehicles.getKey());
-            if (!timeEvolvingEdges.hasNext()) {
-                throw new RuntimeException("ERROR: the TLS should have the same timing of the Vehicles");
-            }
-            var current = timeEvolvingEdges.next();
-            {
-                var tmpMap = Multimaps.asMap(current.edgeToSCC);
-                HashMap<String, Integer> bmT = new HashMap<>();
-                belongingMap.put(simTimeToVehicles.getKey(), bmT);
-                for (var set : tmpMap.values()) {
-                    var sS = new HashSet<String>();
-                    for (var x : set)
-                        sS.add(x.getId());
-                    Integer sccId = distinct_scc_mapping.computeIfAbsent(sS, strings -> distinct_scc_mapping.size());
-                    for (var x : sS)
-                        bmT.put(x, sccId);
+        // While the network is reconstructed in the current thread, the ticks can be solved by a pool
+        ExecutorService pool = null;
+        Deque<ImmutablePair<Double, Future<ImmutablePair<Long, ArrayList<LocalTimeOptimizationProblem.Solution>>>>> pending = new ArrayDeque<>();
+        int maxPending = 0;
+        if (conf.tick_parallelism != 1) {
+            int threads = conf.tick_parallelism <= 0 ? Runtime.getRuntime().availableProcessors() : conf.tick_parallelism;
+            pool = Executors.newFixedThreadPool(threads);
+            // Bounding the ticks in flight, so that the reconstructed network does not outpace the solvers
+            maxPending = 2 * threads;
+        }
+        try {
+            for (var simTimeToVehicles : vehSet) {
+                logger.info(simTimeToVehicles.getKey());
+                if (!timeEvolvingEdges.hasNext()) {
+                    throw new RuntimeException("ERROR: the TLS should have the same timing of the Vehicles");
                 }
-            }
-            simTimeToVehicles.getValue().forEach(x -> vehId.add(x.id));
-            var currTime = simTimeToVehicles.getKey();
-            List<TimedIoT> vehs2 = simTimeToVehicles.getValue();
-           for (var tv : vehs2) {
-               if (!reconstructVehicles.containsKey(tv.id)) {
-                   reconstructVehicles.put(tv.id, new IoT());
-               }
-               reconstructVehicles.get(tv.id).dynamicInformation.put(currTime, tv);
-           }
-            LocalTimeOptimizationProblem solver = new LocalTimeOptimizationProblem(vehs2, current);
-            if (solver.init()) {
-                if (conf.do_thresholding) {
-                    if (conf.use_nearest_MEL_to_IoT) {
-                        solver.setNearestFirstMileMELForIoT();
-                    } else {
-                        solver.setAllPossibleFirstMileMELForIoT();
-                    }
-
-                    if (conf.use_greedy_algorithm) {
-                        solver.setGreedyPossibleTargetsForIoT(conf.use_local_demand_forecast);
-                    } else if (conf.use_top_k_nearest_targets > 0) {
-                        solver.setAllPossibleNearestKTargetsForLastMileCommunication(conf.use_top_k_nearest_targets, conf.use_top_k_nearest_targets_randomOne);
-                    } else {
-                        solver.setAllPossibleTargetsForLastMileCommunication();
+                var current = timeEvolvingEdges.next();
+                {
+                    HashMap<String, Integer> bmT = new HashMap<>();
+                    belongingMap.put(simTimeToVehicles.getKey(), bmT);
+                    for (var set : current.sccs) {
+                        var sS = new HashSet<String>();
+                        for (var x : set)
+                            sS.add(x.getId());
+                        Integer sccId = distinct_scc_mapping.computeIfAbsent(sS, strings -> distinct_scc_mapping.size());
+                        for (var x : sS)
+                            bmT.put(x, sccId);
                     }
+                }
+                var currTime = simTimeToVehicles.getKey();
+                // The cohorts are expanded one tick at a time, as the solver needs the individual devices
+                List<TimedIoT> vehs2 = TimedIoT.expand(simTimeToVehicles.getValue());
+                vehs2.forEach(x -> vehId.add(x.id));
+               for (var tv : vehs2) {
+                   if (!reconstructVehicles.containsKey(tv.id)) {
+                       reconstructVehicles.put(tv.id, new IoT());
+                   }
+                   reconstructVehicles.get(tv.id).dynamicInformation.put(currTime, tv);
+               }
+                if (pool == null) {
+                    collectSolution(currTime, solveTick(vehs2, current), simulationSolutions, temporalOrdering);
                 } else {
-                    solver.alwaysCommunicateWithTheNearestMel();
+                    pending.add(new ImmutablePair<>(currTime, pool.submit(() -> solveTick(vehs2, current))));
+                    collectSolutions(pending, maxPending, simulationSolutions, temporalOrdering);
                 }
-
-                ArrayList<LocalTimeOptimizationProblem.Solution> sol =
-                        solver.multi_objective_pareto(conf.k1, conf.k2, conf.ignore_cubic, comparator, conf.reduce_to_one, conf.update_after_flow, conf.use_scc_neighbours);
-
-                problemSolvingTime.put(currTime, solver.getRunTime());
-                simulationSolutions.put(currTime, sol);
-                temporalOrdering.add(currTime);
+            }
+            collectSolutions(pending, 0, simulationSolutions, temporalOrdering);
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
             }
         }
 
@@ -224,12 +302,17 @@ public class PreSimulatorEstimator {
             Double bestResultScore = Double.MAX_VALUE;
 
             candidate = new CandidateSolutionParameters();
-            var multiplicity = simulationSolutions.values().stream().mapToInt(ArrayList::size).reduce((a, b) -> a * b)
+            var multiplicity = simulationSolutions.values().stream().mapToDouble(ArrayList::size).reduce((a, b) -> a * b)
                     .orElse(0);
             logger.info("Multiplicity: " + multiplicity);
             long timedBegin = System.currentTimeMillis();
             if (conf.clairvoyance) {
-                TemporalNetworkingRanking.oracularBestNetworking(simulationSolutions, temporalOrdering, veh_s, bestResultScore, candidate, conf.removal, conf.addition, comparator);
+                switch (conf.clairvoyance_strategy) {
+                    case "viterbi" -> TemporalNetworkingRanking.viterbiBestNetworking(simulationSolutions, temporalOrdering, veh_s, bestResultScore, candidate, conf.removal, conf.addition, 0);
+                    case "beam" -> TemporalNetworkingRanking.viterbiBestNetworking(simulationSolutions, temporalOrdering, veh_s, bestResultScore, candidate, conf.removal, conf.addition, conf.beam_width);
+                    case "cartesian" -> TemporalNetworkingRanking.oracularBestNetworking(simulationSolutions, temporalOrdering, veh_s, bestResultScore, candidate, conf.removal, conf.addition, comparator);
+                    default -> throw new RuntimeException("ERROR: unknown clairvoyance strategy " + conf.clairvoyance_strategy);
+                }
             } else {
                 TemporalNetworkingRanking.nonclairvoyantBestNetworking(simulationSolutions, temporalOrdering, veh_s, bestResultScore, candidate, conf.removal, conf.addition, comparator);
             }
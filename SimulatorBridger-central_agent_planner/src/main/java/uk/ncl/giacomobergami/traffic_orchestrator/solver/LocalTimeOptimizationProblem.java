@@ -20,11 +20,10 @@
 
 package uk.ncl.giacomobergami.traffic_orchestrator.solver;
 
-import com.eatthepath.jvptree.VPTree;
 import io.jenetics.ext.moea.ParetoFront;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import uk.ncl.giacomobergami.utils.algorithms.CartesianProduct;
+import uk.ncl.giacomobergami.utils.algorithms.CartesianProductEnumerator;
 import uk.ncl.giacomobergami.utils.gir.SquaredCartesianDistanceFunction;
 import uk.ncl.giacomobergami.utils.shared_data.edge.TimedEdge;
 import uk.ncl.giacomobergami.utils.shared_data.iot.TimedIoT;
@@ -34,17 +33,20 @@ import uk.ncl.giacomobergami.utils.structures.StraightforwardAdjacencyList;
 import uk.ncl.giacomobergami.utils.structures.Union2;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class LocalTimeOptimizationProblem {
     public List<TimedIoT> vehicles;
     private final ReconstructNetworkInformation.TimedNetwork tInfo;
     SquaredCartesianDistanceFunction f;
-    List<Map<TimedIoT, TimedEdge>> firstMileCommunication;
-    List<Map<TimedIoT, TimedEdge>> targetCommunication;
-    MinCostMaxFlow flow;
+    CartesianProductEnumerator<TimedIoT, TimedEdge> firstMileCommunication;
+    CartesianProductEnumerator<TimedIoT, TimedEdge> targetCommunication;
     Map<TimedIoT, ArrayList<TimedEdge>> vehicles_communicating_with_nearest_RSUs;
     Random rd;
     long run_time;
@@ -56,9 +58,8 @@ public class LocalTimeOptimizationProblem {
         this.vehicles = vehicles;
         this.tInfo = tInfo;
         f = SquaredCartesianDistanceFunction.getInstance();
-        firstMileCommunication = Collections.emptyList();
-        targetCommunication = Collections.emptyList();
-        flow = new MinCostMaxFlow();
+        firstMileCommunication = new CartesianProductEnumerator<>(Collections.emptyMap());
+        targetCommunication = new CartesianProductEnumerator<>(Collections.emptyMap());
         rd = new Random();
     }
 
@@ -153,6 +154,8 @@ public class LocalTimeOptimizationProblem {
 
     /**
      * Returning all of the candidate belonging to the pareto solution
+     * @param parallelism   Number of threads ranking the candidates concurrently: 1 ranks them in the
+     *                      current thread, while 0 or less uses all the available processors
      * @return
      */
     public ArrayList<Solution> multi_objective_pareto(double k1,
@@ -161,49 +164,40 @@ public class LocalTimeOptimizationProblem {
                                                       Comparator<double[]> dominance,
                                                       boolean reduceToOne,
                                                       boolean updateAfterFlow,
-                                                      boolean use_scc_neighbours) {
+                                                      boolean use_scc_neighbours,
+                                                      int parallelism) {
         long startTime = System.currentTimeMillis();
         final ArrayList<Solution> solutionList = new ArrayList<>();
-        final ArrayList<IntermediateSolution> all = new ArrayList<>();
-        final ArrayList<ImmutablePair<Map<TimedIoT, TimedEdge>, Map<TimedIoT, TimedEdge>>> allPossiblePairs = new ArrayList<>();
-
-        for (Map<TimedIoT, TimedEdge> firstCommunication : this.firstMileCommunication) {
-            if (firstCommunication.isEmpty()) continue;
-            for (Map<TimedIoT, TimedEdge> alpha : this.targetCommunication) {
-                if (alpha.isEmpty()) continue;
-                if (use_scc_neighbours) { // Checking that all of the nodes that are associated to nodes belonging to the given cluster
-                    // This should reduce the overall computational time while paretoing and serching,
-                    // by reduing the search space.
-                    boolean noMatch = false;
-                    if ((!firstCommunication.keySet().containsAll(alpha.keySet())) ||
-                            (!alpha.keySet().containsAll(firstCommunication.keySet())))
-                        continue;
-                    for (var key : firstCommunication.entrySet()) {
-                        var lhs = tInfo.edgeToSCC.get(key.getValue());
-                        var rhs = tInfo.edgeToSCC.get(alpha.get(key.getKey()));
-                        if (!lhs.equals(rhs)) {
-                            noMatch = true;
-                            break;
-                        }
-                    }
-                    if (noMatch) continue;
-                }
-                allPossiblePairs.add(new ImmutablePair<>(firstCommunication, alpha));
+        final List<ImmutablePair<ImmutablePair<Map<TimedIoT, TimedEdge>, Map<TimedIoT, TimedEdge>>, IntermediateSolution>> all;
+        final ParetoFront<double[]> front;
+
+        if (parallelism <= 0) parallelism = Runtime.getRuntime().availableProcessors();
+        if (parallelism == 1) {
+            all = rankAll(k1, k2, ignoreCubic, updateAfterFlow, use_scc_neighbours, false);
+            front = new ParetoFront<>(dominance);
+            logger.info("\nParetoing...");
+            all.forEach(x -> front.add(x.getValue().objectives));
+        } else {
+            // Each ranking builds its own flow graph, so the candidates can be evaluated in a
+            // dedicated pool, where each thread also collects its partial Pareto front
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                all = pool.submit(() -> rankAll(k1, k2, ignoreCubic, updateAfterFlow, use_scc_neighbours, true)).get();
+                logger.info("\nParetoing...");
+                front = pool.submit(() -> all.parallelStream()
+                        .map(x -> x.getValue().objectives)
+                        .collect(() -> new ParetoFront<double[]>(dominance), ParetoFront::add, ParetoFront::addAll)).get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new RuntimeException(e);
+            } finally {
+                pool.shutdown();
             }
         }
-
-        for (int i = 0; i < allPossiblePairs.size(); i++) {
-            if (i % 1000 == 0) logger.info(i+"... ");
-            all.add(computeRanking(k1, k2, ignoreCubic, allPossiblePairs.get(i), updateAfterFlow));
-        }
-        final ParetoFront<double[]> front = new ParetoFront<>(dominance);
-        logger.info("\nParetoing...");
-        all.forEach(x -> front.add(x.objectives));
         double[] prev = new double[]{Double.MAX_VALUE,Double.MAX_VALUE,Double.MAX_VALUE};
         for (int i = 0, N = all.size(); i<N; i++) {
-            var v = all.get(i);
+            var v = all.get(i).getValue();
             if (front.contains(v.objectives)) {
-                var cp = allPossiblePairs.get(i);
+                var cp = all.get(i).getKey();
                 if (solutionList.isEmpty() || (!reduceToOne))
                     solutionList.add(new Solution(v, cp));
                 else if (dominance.compare(prev, v.objectives) >= 0) {
@@ -226,6 +220,80 @@ public class LocalTimeOptimizationProblem {
         return solutionList;
     }
 
+    /**
+     * Ranks all the pairs of first mile and target communications, in their enumeration order
+     */
+    private List<ImmutablePair<ImmutablePair<Map<TimedIoT, TimedEdge>, Map<TimedIoT, TimedEdge>>, IntermediateSolution>> rankAll(double k1,
+                                                                                                                              double k2,
+                                                                                                                              boolean ignoreCubic,
+                                                                                                                              boolean updateAfterFlow,
+                                                                                                                              boolean use_scc_neighbours,
+                                                                                                                              boolean parallel) {
+        AtomicLong counter = new AtomicLong(0);
+        return pairsOfCommunications(use_scc_neighbours, parallel).map(pair -> {
+            long i = counter.getAndIncrement();
+            if (i % 1000 == 0) logger.info(i+"... ");
+            return new ImmutablePair<>(pair, computeRanking(k1, k2, ignoreCubic, pair, updateAfterFlow));
+        }).collect(Collectors.toList());
+    }
+
+    /**
+     * Enumerates the pairs of first mile and target communications as a single cartesian product,
+     * where the first mile RSU of each vehicle is immediately followed by its target one. So, the
+     * pairs where a vehicle is associated to RSUs belonging to different SCCs are pruned as soon as
+     * such vehicle is assigned, without materialising any of their completions.
+     */
+    private Stream<ImmutablePair<Map<TimedIoT, TimedEdge>, Map<TimedIoT, TimedEdge>>> pairsOfCommunications(boolean use_scc_neighbours, boolean parallel) {
+        int nFirst = firstMileCommunication.arity(), nTarget = targetCommunication.arity();
+        if ((nFirst == 0) || (nTarget == 0)) return Stream.empty();
+        Map<ImmutablePair<TimedIoT, Boolean>, List<TimedEdge>> candidates = new HashMap<>();
+        List<ImmutablePair<TimedIoT, Boolean>> order = new ArrayList<>(nFirst + nTarget);
+        Set<TimedIoT> vehs = new LinkedHashSet<>();
+        for (int i = 0; i < nFirst; i++) vehs.add(firstMileCommunication.key(i));
+        for (int i = 0; i < nTarget; i++) vehs.add(targetCommunication.key(i));
+        if (use_scc_neighbours && (vehs.size() != nFirst || vehs.size() != nTarget))
+            return Stream.empty(); // The communications should involve the same vehicles
+        Map<TimedIoT, Integer> firstDepth = new HashMap<>(), targetDepth = new HashMap<>();
+        for (int i = 0; i < nFirst; i++) firstDepth.put(firstMileCommunication.key(i), i);
+        for (int i = 0; i < nTarget; i++) targetDepth.put(targetCommunication.key(i), i);
+        for (var veh : vehs) {
+            var i = firstDepth.get(veh);
+            if (i != null) {
+                var key = new ImmutablePair<>(veh, true);
+                candidates.put(key, firstMileCommunication.values(i));
+                order.add(key);
+            }
+            var j = targetDepth.get(veh);
+            if (j != null) {
+                var key = new ImmutablePair<>(veh, false);
+                candidates.put(key, targetCommunication.values(j));
+                order.add(key);
+            }
+        }
+        var product = new CartesianProductEnumerator<ImmutablePair<TimedIoT, Boolean>, TimedEdge>(candidates, order);
+        if (use_scc_neighbours) { // Checking that all of the nodes that are associated to nodes belonging to the given cluster
+            // This should reduce the overall computational time while paretoing and serching,
+            // by reduing the search space.
+            // Comparing the SCC labels of the candidates, resolved once per candidate
+            int[][] labels = new int[product.arity()][];
+            for (int depth = 0; depth < labels.length; depth++) {
+                labels[depth] = product.values(depth).stream().mapToInt(tInfo::sccLabel).toArray();
+            }
+            product.withPruning((depth, choice) -> {
+                if (product.key(depth).getValue()) return true; // the target RSU is not assigned yet
+                return labels[depth-1][choice[depth-1]] == labels[depth][choice[depth]];
+            });
+        }
+        return product.indexStream(parallel).map(choice -> {
+            Map<TimedIoT, TimedEdge> firstCommunication = new HashMap<>(), alpha = new HashMap<>();
+            for (int i = 0; i < choice.length; i++) {
+                var key = product.key(i);
+                (key.getValue() ? firstCommunication : alpha).put(key.getKey(), product.value(i, choice[i]));
+            }
+            return new ImmutablePair<>(firstCommunication, alpha);
+        });
+    }
+
     private class IntermediateSolution {
         private final double[] objectives;
         private final Map<TimedIoT, List<Union2<TimedIoT, TimedEdge>>> communicationPaths;
@@ -285,8 +353,7 @@ public class LocalTimeOptimizationProblem {
         }
 
         int vertexSize = counter.get();
-        int[][] capacity = new int[vertexSize][vertexSize];
-        int[][] cost = new int[vertexSize][vertexSize];
+        var graph = SparseMinCostMaxFlow.builder(vertexSize);
         for (var rsu1 : this.tInfo.tls) {
             var sq1 = rsu1.communication_radius * rsu1.communication_radius;
             var r1 = rsus.get(rsu1);
@@ -298,12 +365,12 @@ public class LocalTimeOptimizationProblem {
                     // we can establish a link if and only if they are respectively within their communication radius
                     if (tInfo.network.hasEdge(rsu1, rsu2)) {
                         // The communication capacity is capped at the minimum communicative threshold being shared
-                        capacity[r1][r2] = capacity[r2][r1] = (int) Math.min(rsu1.max_vehicle_communication, rsu2.max_vehicle_communication);
+                        var capacity = (int) Math.min(rsu1.max_vehicle_communication, rsu2.max_vehicle_communication);
                         // The communication cost is directly proportional to the nodes' distance
-                        cost[r1][r2] = cost[r2][r1] = (int) Math.round(k1 *  f.getDistance(rsu1, rsu2) + k2);
+                        var cost = (int) Math.round(k1 *  f.getDistance(rsu1, rsu2) + k2);
+                        graph.setArc(r1, r2, capacity, cost).setArc(r2, r1, capacity, cost);
                     } else {
-                        capacity[r1][r2] = capacity[r2][r1] = 0;
-                        cost[r1][r2] = cost[r2][r1] = 0;
+                        graph.clearArc(r1, r2).clearArc(r2, r1);
                     }
 
                 }
@@ -325,15 +392,11 @@ public class LocalTimeOptimizationProblem {
             var vehId = vehs.get(assoc.getKey());
             var rsuId = rsus.get(assoc.getValue());
 
-            // The capacity from vehicle and rsu is just unitary
-            capacity[vehId][rsuId] = 1;
-            // The capacity from bogus source and vehicle id is also unitary
-            capacity[initialSource][vehId] = 1;
-
-            // The communication cost is proportional to the distance of the two nodes
-            cost[vehId][rsuId] = (int)Math.round(k1 * f.getDistance(assoc.getKey(), assoc.getValue()) + k2);
-            // Negligible cost for starting from the bogus node
-            cost[initialSource][vehId] = 1;
+            // The capacity from vehicle and rsu is just unitary, and the communication cost is
+            // proportional to the distance of the two nodes
+            graph.setArc(vehId, rsuId, 1, (int)Math.round(k1 * f.getDistance(assoc.getKey(), assoc.getValue()) + k2));
+            // The capacity from bogus source and vehicle id is also unitary, with a negligible cost
+            graph.setArc(initialSource, vehId, 1, 1);
         }
 
         // Calculating for each RSU device the minimization of the occupancy
@@ -345,12 +408,14 @@ public class LocalTimeOptimizationProblem {
 
             // The capacity associated for reaching the final target shall be equal to how many nodes want to communicate with it
             var id = rsus.get(inv_assoc.getKey());
-            capacity[id][finalTarget] = inv_assoc.getValue();
             // Negligible cost for reaching the target bogus node
-            cost[id][finalTarget] = 1;
+            graph.setArc(id, finalTarget, inv_assoc.getValue(), 1);
         }
 
-        var result = flow.getMaxFlow(capacity, cost, initialSource, finalTarget);
+        var flow = graph.build();
+        var result = flow.solve(initialSource, finalTarget);
+        // Shortest paths from each vehicle, computed at most once per vehicle
+        Map<Integer, HashMap<Integer, List<Integer>>> shortestPaths = new HashMap<>();
         for (var p : result.minedPaths) {
             var pp = p.stream().map(vehOrRSUPath::get).collect(Collectors.toList());
             var v = pp.get(0).getVal1();
@@ -361,11 +426,10 @@ public class LocalTimeOptimizationProblem {
                     pair.getRight().put(v, returned);
                 } else {
                     // Forcibly running shortest path, so to reconstruct the expected path.
-                    flow.bellman_ford_moore(vehs.get(v));
-                    var cp = new ImmutablePair<>(vehs.get(v), rsus.get(returned));
-                    p = flow.map.get(cp);
+                    var fromVehicle = shortestPaths.computeIfAbsent(vehs.get(v), flow::shortestPaths);
+                    p = fromVehicle.get(rsus.get(returned));
                     if (p == null) {
-                        p = updatePathWithFeasibleOne(vehs, vehOrRSUPath, v, returned, p);
+                        p = updatePathWithFeasibleOne(fromVehicle, vehOrRSUPath, returned, p);
                     }
                     pp = p.stream().map(vehOrRSUPath::get).collect(Collectors.toList());
                 }
@@ -378,10 +442,10 @@ public class LocalTimeOptimizationProblem {
             }
             for (var v : pair.getKey().entrySet()) {
                 if (paths.containsKey(v.getKey())) continue; // I am not re-computing the paths that were computed before
-                flow.bellman_ford_moore(vehs.get(v.getKey()));
-                var p = flow.map.get(new ImmutablePair<>(vehs.get(v.getKey()), rsus.get(v.getValue())));
+                var fromVehicle = shortestPaths.computeIfAbsent(vehs.get(v.getKey()), flow::shortestPaths);
+                var p = fromVehicle.get(rsus.get(v.getValue()));
                 if (p == null) {
-                    p = updatePathWithFeasibleOne(vehs, vehOrRSUPath, v.getKey(), v.getValue(), p);
+                    p = updatePathWithFeasibleOne(fromVehicle, vehOrRSUPath, v.getValue(), p);
                 }
                 var pp = p.stream().map(vehOrRSUPath::get).collect(Collectors.toList());
                 paths.put(v.getKey(), pp);
@@ -397,9 +461,8 @@ public class LocalTimeOptimizationProblem {
                                         tInfo.network);
     }
 
-    private List<Integer> updatePathWithFeasibleOne(Map<TimedIoT, Integer> vehs,
+    private List<Integer> updatePathWithFeasibleOne(Map<Integer, List<Integer>> fromCurrentVehicle,
                                                     Map<Integer, Union2<TimedIoT, TimedEdge>> vehOrRSUPath,
-                                                    TimedIoT currentVehicle,
                                                     TimedEdge expectedTimedEdge,
                                                     List<Integer> p) {
         // If the path is null, it means that despite the algorithm determined one node to be
@@ -408,10 +471,10 @@ public class LocalTimeOptimizationProblem {
         // is nearer to the expected node
         double candidateSize = Double.MAX_VALUE;
         double countCandidates = 0;
-        for (var candidatePath : flow.map.entrySet()) {
-
-            if (!candidatePath.getKey().getKey().equals(vehs.get(currentVehicle))) continue;
-            double d = f.getDistance(vehOrRSUPath.get(candidatePath.getKey().getValue()).getVal2(), expectedTimedEdge);
+        for (var candidatePath : fromCurrentVehicle.entrySet()) {
+            var target = vehOrRSUPath.get(candidatePath.getKey());
+            if ((target == null) || (target.getVal2() == null)) continue; // Only the RSUs are candidate targets
+            double d = f.getDistance(target.getVal2(), expectedTimedEdge);
             if (d < candidateSize) {
                 candidateSize = d;
                 p = candidatePath.getValue();
@@ -438,18 +501,17 @@ public class LocalTimeOptimizationProblem {
         }
         if (vehicles.isEmpty()) return false;
         boolean hasSomeResult = false;
-        var tree = new VPTree<>(f, vehicles);
-        var visitedVehicles = new HashSet<>();
-        for (TimedEdge x : tInfo.tls) {
-            var distanceQueryResult = tree.getAllWithinDistance(x, x.communication_radius * x.communication_radius);
-            if (!distanceQueryResult.isEmpty()) {
-                hasSomeResult = true;
-                for (var veh : distanceQueryResult) {
+        // Querying the RSUs' grid shared by the ticks, as the RSUs do not move
+        var coverage = tInfo.coveringRSUs(vehicles);
+        for (TimedIoT veh : vehicles) {
+            var nearRSUs = coverage.get(veh);
+            if (nearRSUs.isEmpty()) continue;
+            hasSomeResult = true;
+            if (logger.isDebugEnabled()) {
+                for (var x : nearRSUs)
                     logger.debug("d("+veh.id+","+x.id+")="+f.getDistance(veh,x)+" ["+veh.x+","+veh.y+"]--["+x.x+","+x.y+"]");
-                    vehicles_communicating_with_nearest_RSUs.get(veh).add(x);
-                    visitedVehicles.add(veh.id);
-                }
             }
+            vehicles_communicating_with_nearest_RSUs.get(veh).addAll(nearRSUs);
         }
         long endTime = System.currentTimeMillis();
         run_time += (endTime-startTime);
@@ -461,22 +523,22 @@ public class LocalTimeOptimizationProblem {
      */
     public void setNearestFirstMileMELForIoT() {
          long startTime = System.currentTimeMillis();
-         firstMileCommunication = CartesianProduct.mapCartesianProduct(vehicles_communicating_with_nearest_RSUs.entrySet().stream().filter(e ->!e.getValue().isEmpty()).collect(Collectors.toMap(Map.Entry::getKey, x -> x.getValue().stream().min(Comparator.comparingDouble(o -> f.getDistance(x.getKey(), o))).stream().toList()))).stream().toList();
+         firstMileCommunication = new CartesianProductEnumerator<>(vehicles_communicating_with_nearest_RSUs.entrySet().stream().filter(e ->!e.getValue().isEmpty()).collect(Collectors.toMap(Map.Entry::getKey, x -> x.getValue().stream().min(Comparator.comparingDouble(o -> f.getDistance(x.getKey(), o))).stream().toList())));
          run_time += (System.currentTimeMillis() - startTime);
     }
 
     public void alwaysCommunicateWithTheNearestMel() {
         long startTime = System.currentTimeMillis();
-        firstMileCommunication = CartesianProduct.mapCartesianProduct(vehicles_communicating_with_nearest_RSUs.entrySet().stream().filter(e ->!e.getValue().isEmpty()).collect(Collectors.toMap(Map.Entry::getKey, x -> x.getValue().stream().min(Comparator.comparingDouble(o -> f.getDistance(x.getKey(), o))).stream().toList()))).stream().toList();
-        targetCommunication = new ArrayList<>(firstMileCommunication);
+        firstMileCommunication = new CartesianProductEnumerator<>(vehicles_communicating_with_nearest_RSUs.entrySet().stream().filter(e ->!e.getValue().isEmpty()).collect(Collectors.toMap(Map.Entry::getKey, x -> x.getValue().stream().min(Comparator.comparingDouble(o -> f.getDistance(x.getKey(), o))).stream().toList())));
+        targetCommunication = firstMileCommunication;
         run_time += (System.currentTimeMillis() - startTime);
     }
 
     public void nearestFurthestRandomMELForIoT() {
         long startTime = System.currentTimeMillis();
-        firstMileCommunication = CartesianProduct.mapCartesianProduct(vehicles_communicating_with_nearest_RSUs.entrySet().stream().filter(e ->!e.getValue().isEmpty()).collect(Collectors.toMap(Map.Entry::getKey, x -> rd.nextBoolean() ?
+        firstMileCommunication = new CartesianProductEnumerator<>(vehicles_communicating_with_nearest_RSUs.entrySet().stream().filter(e ->!e.getValue().isEmpty()).collect(Collectors.toMap(Map.Entry::getKey, x -> rd.nextBoolean() ?
                 x.getValue().stream().min(Comparator.comparingDouble(o -> f.getDistance(x.getKey(), o))).stream().toList():
-                x.getValue().stream().max(Comparator.comparingDouble(o -> f.getDistance(x.getKey(), o))).stream().toList()))).stream().toList();
+                x.getValue().stream().max(Comparator.comparingDouble(o -> f.getDistance(x.getKey(), o))).stream().toList())));
         run_time += (System.currentTimeMillis() - startTime);
     }
 
@@ -485,9 +547,9 @@ public class LocalTimeOptimizationProblem {
      */
     public void setAllPossibleFirstMileMELForIoT() {
         long startTime = System.currentTimeMillis();
-        firstMileCommunication = CartesianProduct.mapCartesianProduct(vehicles_communicating_with_nearest_RSUs.entrySet().stream()
+        firstMileCommunication = new CartesianProductEnumerator<>(vehicles_communicating_with_nearest_RSUs.entrySet().stream()
                 .filter(e ->!e.getValue().isEmpty())
-                .collect(Collectors.<Map.Entry<TimedIoT, ArrayList<TimedEdge>>, TimedIoT,List<TimedEdge>>toMap(Map.Entry::getKey, e -> List.copyOf(e.getValue())))).stream().toList();
+                .collect(Collectors.<Map.Entry<TimedIoT, ArrayList<TimedEdge>>, TimedIoT,List<TimedEdge>>toMap(Map.Entry::getKey, e -> List.copyOf(e.getValue()))));
         run_time += (System.currentTimeMillis() - startTime);
     }
 
@@ -508,7 +570,7 @@ public class LocalTimeOptimizationProblem {
             }
             trafficGreedyHeuristic(stringListHashMap, tInfo.tls, result, useLocalDemandForecast);
         }
-        targetCommunication = CartesianProduct.mapCartesianProduct(result).stream().toList();
+        targetCommunication = new CartesianProductEnumerator<>(result);
         run_time += (System.currentTimeMillis() - startTime);
     }
 
@@ -566,7 +628,7 @@ public class LocalTimeOptimizationProblem {
         if (!vehsWithBusyRSUs.isEmpty()) {
             // Determining which RSUs will be affected by over-demands by busy semaphores
             for (TimedEdge busyTimedEdge : busyRSUs.keySet()) {
-                var localSCC = tInfo.edgeToSCC.get(busyTimedEdge);
+                var localSCC = tInfo.scc(busyTimedEdge);
                 // A valid distributor for a busyRSU is a semaphore which is not currently full
                 List<TimedEdge> distributor = localSCC.stream()
                         .filter(x -> {
@@ -718,25 +780,25 @@ public class LocalTimeOptimizationProblem {
      */
     public void setAllPossibleTargetsForLastMileCommunication() {
         long start = System.currentTimeMillis();
-        targetCommunication = CartesianProduct.mapCartesianProduct(vehicles_communicating_with_nearest_RSUs.keySet().stream().filter(e -> !vehicles_communicating_with_nearest_RSUs.get(e).isEmpty()).collect(Collectors.<TimedIoT, TimedIoT, List<TimedEdge>>toMap(e->e, e->List.copyOf(tInfo.tls)))).stream().toList();
+        targetCommunication = new CartesianProductEnumerator<>(vehicles_communicating_with_nearest_RSUs.keySet().stream().filter(e -> !vehicles_communicating_with_nearest_RSUs.get(e).isEmpty()).collect(Collectors.<TimedIoT, TimedIoT, List<TimedEdge>>toMap(e->e, e->List.copyOf(tInfo.tls))));
         run_time += (System.currentTimeMillis() - start);
     }
 
     public void setAllPossibleNearestKTargetsForLastMileCommunication(int k, boolean randomOne) {
         long start = System.currentTimeMillis();
-        targetCommunication = CartesianProduct.mapCartesianProduct(vehicles_communicating_with_nearest_RSUs.keySet().stream().filter(e -> !vehicles_communicating_with_nearest_RSUs.get(e).isEmpty()).collect(Collectors.<TimedIoT, TimedIoT, List<TimedEdge>>toMap(e->e, e-> {
+        targetCommunication = new CartesianProductEnumerator<>(vehicles_communicating_with_nearest_RSUs.keySet().stream().filter(e -> !vehicles_communicating_with_nearest_RSUs.get(e).isEmpty()).collect(Collectors.<TimedIoT, TimedIoT, List<TimedEdge>>toMap(e->e, e-> {
             Function<TimedEdge, Double> fun = o -> f.getDistance(o, e);
             Comparator<TimedEdge> comparator = Comparator.comparingDouble(fun::apply);
             PriorityQueue<TimedEdge> pq = new PriorityQueue<>(k, comparator);
             int added = 0;
-            for (int i = 0; i < tInfo.tls.size(); i++) {
-                if (fun.apply(tInfo.tls.get(i)) > tInfo.tls.get(i).communication_radius * tInfo.tls.get(i).communication_radius) continue;
+            // The RSUs in range were already found by init, in the order of their interned ids
+            for (var rsu : vehicles_communicating_with_nearest_RSUs.get(e)) {
                 if (added < k) // add until heap is filled with k elements.
-                { pq.add(tInfo.tls.get(i)); added++; }
-                else if (comparator.compare(pq.peek(), tInfo.tls.get(i)) < 0) { // check if it's bigger than the
+                { pq.add(rsu); added++; }
+                else if (comparator.compare(pq.peek(), rsu) < 0) { // check if it's bigger than the
                     // smallest element in the heap.
                     pq.poll();
-                    pq.add(tInfo.tls.get(i));
+                    pq.add(rsu);
                 }
             }
             if (randomOne) {
@@ -758,7 +820,7 @@ public class LocalTimeOptimizationProblem {
                 }
                 return new ArrayList<>(pq);
             }
-        }))).stream().toList();
+        })));
         run_time += (System.currentTimeMillis() - start);
     }
 
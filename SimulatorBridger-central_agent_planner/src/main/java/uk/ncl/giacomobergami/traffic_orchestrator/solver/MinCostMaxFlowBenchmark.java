@@ -0,0 +1,110 @@
+/*
+ * MinCostMaxFlowBenchmark.java
+ * This file is part of SimulatorBridger-central_agent_planner
+ *
+ * Copyright (C) 2022 - Giacomo Bergami
+ *
+ * SimulatorBridger-central_agent_planner is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * SimulatorBridger-central_agent_planner is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SimulatorBridger-central_agent_planner. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ncl.giacomobergami.traffic_orchestrator.solver;
+
+import java.util.Random;
+
+/**
+ * Compares {@link SparseMinCostMaxFlow} with the dense {@link MinCostMaxFlow#getMaxFlow} over the
+ * graphs built by the planners: a bogus source reaching each vehicle, each vehicle reaching a few
+ * nearby RSUs, the RSUs being connected to their neighbours, and all of them reaching a bogus sink.
+ * Both solvers are checked to return the same total flow and cost.
+ * <p>
+ * Usage: <tt>MinCostMaxFlowBenchmark [vehicles rsus candidatesPerVehicle]</tt>
+ */
+public class MinCostMaxFlowBenchmark {
+
+	private static final int ROUNDS = 5;
+
+	private final int[][] cap, cost;
+
+	public MinCostMaxFlowBenchmark(int vehicles, int rsus, int candidates) {
+		int n = 2 + rsus + vehicles;
+		cap = new int[n][n];
+		cost = new int[n][n];
+		Random random = new Random(0);
+		for (int r = 0; r < rsus; r++) {
+			int u = 2 + r;
+			for (int k = 1; k <= 3; k++) {
+				int v = 2 + (r + k) % rsus;
+				if (v == u) continue;
+				cap[u][v] = cap[v][u] = 1 + random.nextInt(10);
+				cost[u][v] = cost[v][u] = 1 + random.nextInt(100);
+			}
+			cap[u][1] = 1 + random.nextInt(vehicles / rsus + 2);
+			cost[u][1] = 1;
+		}
+		for (int i = 0; i < vehicles; i++) {
+			int u = 2 + rsus + i;
+			cap[0][u] = 1;
+			cost[0][u] = 1;
+			for (int k = 0; k < candidates; k++) {
+				int v = 2 + random.nextInt(rsus);
+				cap[u][v] = 1;
+				cost[u][v] = 1 + random.nextInt(1000);
+			}
+		}
+	}
+
+	private MinCostMaxFlow.Result dense() {
+		return new MinCostMaxFlow().getMaxFlow(cap, cost, 0, 1);
+	}
+
+	private MinCostMaxFlow.Result sparse() {
+		var builder = SparseMinCostMaxFlow.builder(cap.length);
+		for (int u = 0; u < cap.length; u++) {
+			for (int v = 0; v < cap.length; v++) {
+				if (cap[u][v] != 0 || cost[u][v] != 0) builder.setArc(u, v, cap[u][v], cost[u][v]);
+			}
+		}
+		return builder.build().solve(0, 1);
+	}
+
+	private interface Solver {
+		MinCostMaxFlow.Result solve();
+	}
+
+	private MinCostMaxFlow.Result measure(String name, Solver solver) {
+		long best = Long.MAX_VALUE;
+		MinCostMaxFlow.Result result = null;
+		for (int i = 0; i < ROUNDS; i++) {
+			long start = System.nanoTime();
+			result = solver.solve();
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		System.out.printf("%-10s %12.3f ms  %s%n", name, best / 1e6, result);
+		return result;
+	}
+
+	public static void main(String[] args) {
+		int vehicles = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int rsus = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		int candidates = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+		MinCostMaxFlowBenchmark benchmark = new MinCostMaxFlowBenchmark(vehicles, rsus, candidates);
+		System.out.println("Vehicles: " + vehicles + ", RSUs: " + rsus + ", candidates per vehicle: " + candidates);
+		var dense = benchmark.measure("dense", benchmark::dense);
+		var sparse = benchmark.measure("sparse", benchmark::sparse);
+		if (!dense.equals(sparse)) {
+			throw new IllegalStateException("The solvers disagree: " + dense + " vs " + sparse);
+		}
+	}
+
+}
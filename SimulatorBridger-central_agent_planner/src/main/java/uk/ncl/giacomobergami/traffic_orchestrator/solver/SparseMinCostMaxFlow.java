@@ -0,0 +1,337 @@
+/*
+ * SparseMinCostMaxFlow.java
+ * This file is part of SimulatorBridger-central_agent_planner
+ *
+ * Copyright (C) 2022 - Giacomo Bergami
+ *
+ * SimulatorBridger-central_agent_planner is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * SimulatorBridger-central_agent_planner is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SimulatorBridger-central_agent_planner. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ncl.giacomobergami.traffic_orchestrator.solver;
+
+import java.util.*;
+
+/**
+ * Minimum cost maximum flow over a sparse graph. Differently from {@link MinCostMaxFlow#getMaxFlow},
+ * which requires dense capacity and cost matrices, the arcs are given through a {@link Builder} and
+ * stored as adjacency arrays (CSR), together with their residual arcs. The successive shortest
+ * paths are found by a Dijkstra visit using a binary heap over the reduced costs, so that each
+ * augmentation costs O(E log V) rather than O(V^2).
+ */
+public class SparseMinCostMaxFlow {
+
+	/**
+	 * Collects the arcs of the graph. As for assigning the cells of the capacity and cost
+	 * matrices, setting the same arc twice overrides its previous capacity and cost.
+	 */
+	public static class Builder {
+		private final int n;
+		private final HashMap<Long, Integer> arcIndex = new HashMap<>();
+		private int[] from = new int[16], to = new int[16], cap = new int[16], cost = new int[16];
+		private int m = 0;
+
+		Builder(int n) {
+			this.n = n;
+		}
+
+		public Builder setArc(int src, int dst, int capacity, int arcCost) {
+			Objects.checkIndex(src, n);
+			Objects.checkIndex(dst, n);
+			int i = arcIndex.computeIfAbsent(((long) src) * n + dst, k -> {
+				if (m == from.length) {
+					from = Arrays.copyOf(from, 2 * m);
+					to = Arrays.copyOf(to, 2 * m);
+					cap = Arrays.copyOf(cap, 2 * m);
+					cost = Arrays.copyOf(cost, 2 * m);
+				}
+				from[m] = src;
+				to[m] = dst;
+				return m++;
+			});
+			cap[i] = capacity;
+			cost[i] = arcCost;
+			return this;
+		}
+
+		/**
+		 * Sets the capacity and cost of an arc to zero, as if it was never set
+		 */
+		public Builder clearArc(int src, int dst) {
+			Integer i = arcIndex.get(((long) src) * n + dst);
+			if (i != null) {
+				cap[i] = 0;
+				cost[i] = 0;
+			}
+			return this;
+		}
+
+		public SparseMinCostMaxFlow build() {
+			return new SparseMinCostMaxFlow(this);
+		}
+	}
+
+	public static Builder builder(int nodes) {
+		return new Builder(nodes);
+	}
+
+	private final int n;
+	/** The arcs outgoing from node u are the ones in [head[u], head[u+1]) */
+	private final int[] head;
+	private final int[] to, cost, rev;
+	/** The original capacity of each arc, being 0 for the residual ones */
+	private final int[] capacity;
+	/** Whether the arc was given to the builder, rather than being a residual one */
+	private final boolean[] forward;
+	private final int[] residual;
+
+	private SparseMinCostMaxFlow(Builder b) {
+		n = b.n;
+		head = new int[n + 1];
+		int arcs = 0;
+		for (int i = 0; i < b.m; i++) {
+			if (b.cap[i] == 0 && b.cost[i] == 0) continue;
+			head[b.from[i] + 1]++;
+			head[b.to[i] + 1]++;
+			arcs++;
+		}
+		for (int u = 0; u < n; u++) head[u + 1] += head[u];
+		int size = 2 * arcs;
+		to = new int[size];
+		cost = new int[size];
+		rev = new int[size];
+		capacity = new int[size];
+		forward = new boolean[size];
+		residual = new int[size];
+		int[] next = Arrays.copyOf(head, n);
+		for (int i = 0; i < b.m; i++) {
+			if (b.cap[i] == 0 && b.cost[i] == 0) continue;
+			int u = b.from[i], v = b.to[i];
+			int a = next[u]++, r = next[v]++;
+			to[a] = v; cost[a] = b.cost[i]; capacity[a] = b.cap[i]; forward[a] = true; rev[a] = r;
+			to[r] = u; cost[r] = -b.cost[i]; capacity[r] = 0; forward[r] = false; rev[r] = a;
+		}
+	}
+
+	public int size() {
+		return n;
+	}
+
+	/**
+	 * Computes the maximum flow of minimum cost from the source to the sink. The graph can be
+	 * solved more than once, as each run starts from the empty flow.
+	 *
+	 * @param src	Source node
+	 * @param sink	Sink node
+	 * @return	The total flow and cost, as well as the augmenting paths: as in {@link MinCostMaxFlow},
+	 * each path lists the nodes visited from the source to the sink, both excluded.
+	 */
+	public MinCostMaxFlow.Result solve(int src, int sink) {
+		System.arraycopy(capacity, 0, residual, 0, capacity.length);
+		long[] pi = initialPotentials(src);
+		long[] dist = new long[n];
+		int[] parentArc = new int[n];
+		IndexedHeap heap = new IndexedHeap(n);
+		Set<List<Integer>> hsl = new HashSet<>();
+		long totflow = 0, totcost = 0;
+
+		while (dijkstra(src, sink, pi, dist, parentArc, heap)) {
+			for (int u = 0; u < n; u++) {
+				if (dist[u] < Long.MAX_VALUE) pi[u] += dist[u];
+			}
+			int amt = Integer.MAX_VALUE;
+			for (int x = sink; x != src; x = to[rev[parentArc[x]]]) {
+				amt = Math.min(amt, residual[parentArc[x]]);
+			}
+			List<Integer> path = new ArrayList<>();
+			for (int x = sink; x != src; x = to[rev[parentArc[x]]]) {
+				if (x != sink) path.add(x);
+				int a = parentArc[x];
+				residual[a] -= amt;
+				residual[rev[a]] += amt;
+				totcost += ((long) amt) * cost[a];
+			}
+			Collections.reverse(path);
+			hsl.add(path);
+			totflow += amt;
+		}
+		return new MinCostMaxFlow.Result(totflow, totcost, hsl);
+	}
+
+	/**
+	 * With non-negative costs the potentials can start from zero; otherwise, they are initialised
+	 * with the Bellman-Ford distances from the source.
+	 */
+	private long[] initialPotentials(int src) {
+		long[] pi = new long[n];
+		boolean negative = false;
+		for (int a = 0; a < to.length && !negative; a++) {
+			negative = forward[a] && capacity[a] > 0 && cost[a] < 0;
+		}
+		if (!negative) return pi;
+		Arrays.fill(pi, Long.MAX_VALUE);
+		pi[src] = 0;
+		for (int round = 0; round < n; round++) {
+			boolean changed = false;
+			for (int u = 0; u < n; u++) {
+				if (pi[u] == Long.MAX_VALUE) continue;
+				for (int a = head[u]; a < head[u + 1]; a++) {
+					if (residual[a] > 0 && pi[u] + cost[a] < pi[to[a]]) {
+						pi[to[a]] = pi[u] + cost[a];
+						changed = true;
+					}
+				}
+			}
+			if (!changed) break;
+		}
+		for (int u = 0; u < n; u++) {
+			if (pi[u] == Long.MAX_VALUE) pi[u] = 0;
+		}
+		return pi;
+	}
+
+	private boolean dijkstra(int src, int sink, long[] pi, long[] dist, int[] parentArc, IndexedHeap heap) {
+		Arrays.fill(dist, Long.MAX_VALUE);
+		dist[src] = 0;
+		heap.clear();
+		heap.push(src, 0);
+		while (!heap.isEmpty()) {
+			int u = heap.pop();
+			long du = dist[u];
+			for (int a = head[u]; a < head[u + 1]; a++) {
+				if (residual[a] <= 0) continue;
+				int v = to[a];
+				long dv = du + cost[a] + pi[u] - pi[v];
+				if (dv < dist[v]) {
+					dist[v] = dv;
+					parentArc[v] = a;
+					heap.push(v, dv);
+				}
+			}
+		}
+		return dist[sink] < Long.MAX_VALUE;
+	}
+
+	/**
+	 * Computes the shortest paths from the root following the arcs given to the builder with a
+	 * positive cost, regardless of their capacity. This provides the same paths of
+	 * {@link MinCostMaxFlow#bellman_ford_moore(int)}.
+	 *
+	 * @param root	Source of the paths
+	 * @return	For each node reachable from the root, the path from the root to it (both included)
+	 */
+	public HashMap<Integer, List<Integer>> shortestPaths(int root) {
+		long[] d = new long[n];
+		int[] parent = new int[n];
+		Arrays.fill(d, Long.MAX_VALUE);
+		Arrays.fill(parent, -1);
+		d[root] = 0;
+		IndexedHeap heap = new IndexedHeap(n);
+		heap.push(root, 0);
+		while (!heap.isEmpty()) {
+			int u = heap.pop();
+			for (int a = head[u]; a < head[u + 1]; a++) {
+				if (!forward[a] || cost[a] <= 0) continue;
+				int v = to[a];
+				if (d[u] + cost[a] < d[v]) {
+					d[v] = d[u] + cost[a];
+					parent[v] = u;
+					heap.push(v, d[v]);
+				}
+			}
+		}
+		HashMap<Integer, List<Integer>> result = new HashMap<>();
+		for (int target = 0; target < n; target++) {
+			if (parent[target] == -1) continue;
+			List<Integer> path = new ArrayList<>();
+			for (int x = target; x != -1; x = parent[x]) path.add(x);
+			Collections.reverse(path);
+			result.put(target, path);
+		}
+		return result;
+	}
+
+	/**
+	 * Binary min-heap of nodes supporting the decrease of their key
+	 */
+	private static class IndexedHeap {
+		private final int[] heap, pos;
+		private final long[] key;
+		private int size;
+
+		IndexedHeap(int n) {
+			heap = new int[n];
+			pos = new int[n];
+			key = new long[n];
+			Arrays.fill(pos, -1);
+			size = 0;
+		}
+
+		void clear() {
+			for (int i = 0; i < size; i++) pos[heap[i]] = -1;
+			size = 0;
+		}
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		void push(int u, long k) {
+			if (pos[u] == -1) {
+				heap[size] = u;
+				pos[u] = size++;
+			}
+			key[u] = k;
+			up(pos[u]);
+		}
+
+		int pop() {
+			int top = heap[0];
+			pos[top] = -1;
+			if (--size > 0) {
+				heap[0] = heap[size];
+				pos[heap[0]] = 0;
+				down(0);
+			}
+			return top;
+		}
+
+		private void up(int i) {
+			int u = heap[i];
+			while (i > 0) {
+				int p = (i - 1) >>> 1;
+				if (key[heap[p]] <= key[u]) break;
+				heap[i] = heap[p];
+				pos[heap[i]] = i;
+				i = p;
+			}
+			heap[i] = u;
+			pos[u] = i;
+		}
+
+		private void down(int i) {
+			int u = heap[i];
+			while (true) {
+				int c = 2 * i + 1;
+				if (c >= size) break;
+				if (c + 1 < size && key[heap[c + 1]] < key[heap[c]]) c++;
+				if (key[heap[c]] >= key[u]) break;
+				heap[i] = heap[c];
+				pos[heap[i]] = i;
+				i = c;
+			}
+			heap[i] = u;
+			pos[u] = i;
+		}
+	}
+}
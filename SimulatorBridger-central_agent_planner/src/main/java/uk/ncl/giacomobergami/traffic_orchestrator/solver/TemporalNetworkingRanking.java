@@ -23,7 +23,8 @@ package uk.ncl.giacomobergami.traffic_orchestrator.solver;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import uk.ncl.giacomobergami.utils.algorithms.CartesianProduct;
+import uk.ncl.giacomobergami.utils.algorithms.AssociationDelta;
+import uk.ncl.giacomobergami.utils.algorithms.CartesianProductEnumerator;
 import uk.ncl.giacomobergami.utils.algorithms.ClusterDifference;
 import uk.ncl.giacomobergami.utils.algorithms.StringComparator;
 import uk.ncl.giacomobergami.utils.shared_data.edge.TimedEdge;
@@ -56,22 +57,119 @@ public class TemporalNetworkingRanking {
                                               double removal,
                                               double addition,
                                               Comparator<double[]> dominance) {
-        // Geneating all of the possible combinations of network configurations
-        var allThePossibleSolutions = CartesianProduct.mapCartesianProductWithSortedKeySequence(simulationSolutions, timeArrow, 0);
+        // Lazily enumerating all of the possible combinations of network configurations, following the time arrow
+        var allThePossibleSolutions = new CartesianProductEnumerator<Double, LocalTimeOptimizationProblem.Solution>(simulationSolutions, timeArrow);
         simulationSolutions = null;
 
         logger.trace("Valuating oracular candidate solutions for ranking: ");
+        // Each solution is encoded once, so that a candidate is fully assessed only if it improves the score
+        var delta = new AssociationDelta(veh_s);
+        long[][][] encoded = new long[allThePossibleSolutions.arity()][][];
+        for (int t = 0; t < encoded.length; t++) {
+            encoded[t] = allThePossibleSolutions.values(t).stream().map(x -> delta.encode(associations(x))).toArray(long[][]::new);
+        }
         int i = 0;
-        for (Map<Double, LocalTimeOptimizationProblem.Solution> candidateSolution : allThePossibleSolutions) {
+        var it = allThePossibleSolutions.indexStream(false).iterator();
+        while (it.hasNext()) {
+            var choice = it.next();
             if ((i % 1000) == 0) {
                 System.out.print(i+"... ");
                 System.out.flush();
             }
-            bestResultScore = assessingCandidate(veh_s, bestResultScore, candidate, removal, addition, i, candidateSolution);
+            double score = 0.0;
+            for (int t = 1; t < choice.length; t++) {
+                score += AssociationDelta.cost(encoded[t-1][choice[t-1]], encoded[t][choice[t]], removal, addition);
+            }
+            if (score < bestResultScore) {
+                bestResultScore = assessingCandidate(veh_s, bestResultScore, candidate, removal, addition, i, allThePossibleSolutions.asMap(choice));
+            }
             i++;
         }
     }
 
+    /**
+     * Provides the same result of {@link #oracularBestNetworking}, without enumerating all of the possible
+     * combinations of network configurations. As the score of a combination is the sum of the changes
+     * between the configurations at consecutive times, the best combination is a shortest path over the
+     * graph having one layer of configurations per time, which is found by dynamic programming (Viterbi)
+     * with O(T·S^2) comparisons between consecutive configurations.
+     *
+     * @param beamWidth If positive, only the beamWidth best partial combinations are extended at each
+     *                  time (beam search): this bounds the comparisons to O(T·beamWidth·S), but the
+     *                  result is no more guaranteed to be the best one.
+     */
+    public static void viterbiBestNetworking(Map<Double, ArrayList<LocalTimeOptimizationProblem.Solution>> simulationSolutions,
+                                             List<Double> timeArrow,
+                                             List<String> veh_s,
+                                             Double bestResultScore,
+                                             CandidateSolutionParameters candidate,
+                                             double removal,
+                                             double addition,
+                                             int beamWidth) {
+        Map<Double, LocalTimeOptimizationProblem.Solution> resultMap = new TreeMap<>();
+        List<Double> times = new ArrayList<>();
+        for (var time : timeArrow) {
+            var x = simulationSolutions.get(time);
+            if ((x != null) && (!x.isEmpty())) times.add(time);
+        }
+        if (!times.isEmpty()) {
+            var delta = new AssociationDelta(veh_s);
+            List<int[]> backPointers = new ArrayList<>(times.size());
+            var prevLayer = simulationSolutions.get(times.get(0));
+            var prevAssociations = prevLayer.stream().map(x -> delta.encode(associations(x))).toList();
+            double[] prevScore = new double[prevLayer.size()];
+            for (int t = 1, T = times.size(); t < T; t++) {
+                logger.trace("Viterbi: time " + times.get(t));
+                var currLayer = simulationSolutions.get(times.get(t));
+                var currAssociations = currLayer.stream().map(x -> delta.encode(associations(x))).toList();
+                double[] currScore = new double[currLayer.size()];
+                int[] back = new int[currLayer.size()];
+                Arrays.fill(currScore, Double.MAX_VALUE);
+                var beam = beam(prevScore, beamWidth);
+                for (int s = 0; s < currLayer.size(); s++) {
+                    for (int p : beam) {
+                        double score = prevScore[p] + AssociationDelta.cost(prevAssociations.get(p), currAssociations.get(s), removal, addition);
+                        if (score < currScore[s]) {
+                            currScore[s] = score;
+                            back[s] = p;
+                        }
+                    }
+                }
+                backPointers.add(back);
+                prevScore = currScore;
+                prevAssociations = currAssociations;
+            }
+
+            int best = 0;
+            for (int s = 1; s < prevScore.length; s++) {
+                if (prevScore[s] < prevScore[best]) best = s;
+            }
+            for (int t = times.size()-1; t >= 0; t--) {
+                resultMap.put(times.get(t), simulationSolutions.get(times.get(t)).get(best));
+                if (t > 0) best = backPointers.get(t-1)[best];
+            }
+        }
+        assessingCandidate(veh_s, bestResultScore, candidate, removal, addition, 0, resultMap);
+    }
+
+    /**
+     * @return  The indices of the beamWidth configurations with the least score, or all of them if
+     *          beamWidth is not positive
+     */
+    private static int[] beam(double[] score, int beamWidth) {
+        if ((beamWidth <= 0) || (beamWidth >= score.length)) {
+            int[] all = new int[score.length];
+            for (int i = 0; i < all.length; i++) all[i] = i;
+            return all;
+        }
+        Integer[] idx = new Integer[score.length];
+        for (int i = 0; i < idx.length; i++) idx[i] = i;
+        Arrays.sort(idx, Comparator.comparingDouble(i -> score[i]));
+        int[] result = new int[beamWidth];
+        for (int i = 0; i < beamWidth; i++) result[i] = idx[i];
+        return result;
+    }
+
     private static Double assessingCandidate(List<String> veh_s,
                                              Double bestResultScore,
                                              CandidateSolutionParameters candidate,
@@ -138,30 +236,22 @@ public class TemporalNetworkingRanking {
                                               double addition,
                                               Comparator<double[]> dominance) {
         Map<Double, LocalTimeOptimizationProblem.Solution> resultMap = new TreeMap<>();
+        var delta = new AssociationDelta(veh_s);
         LocalTimeOptimizationProblem.Solution prev = null;
-        Double prevSimTime = null;
+        long[] prevEncoded = null;
         for (var simulationTime : timeArrow) {
             var x = simulationSolutions.get(simulationTime);
             if (prev == null) {
                 prev = returnCandidate(x, dominance);
-                prevSimTime = simulationTime;
+                prevEncoded = delta.encode(associations(prev));
                 resultMap.put(simulationTime, prev);
             } else {
                 Double bestScore = Double.MAX_VALUE;
                 LocalTimeOptimizationProblem.Solution nextPreferredSolution = null;
                 for (var localCandidates : x) {
-                    TreeMap<Double, Map<String, List<String>>> vehClustAssoc = new TreeMap<>();
-                    fillFromSimulationTime(vehClustAssoc, prev, prevSimTime);
-                    fillFromSimulationTime(vehClustAssoc, localCandidates, simulationTime);
-
-                    // getting the simulation program associated to each vehicle
-                    HashMap<String, ImmutablePair<ImmutablePair<Double, List<String>>, List<ClusterDifference<String>>>> local_delta_associations = ClusterDifference.computeTemporalDifference(vehClustAssoc, veh_s, StringComparator.getInstance());
-
-                    double totalChangePerVehicle = 0.0;
                     // Among these, we prefer a solution minimizing the size of the deta_associations, for all of the vehicles
-                    for (var eachDelta : local_delta_associations.entrySet()) {
-                        totalChangePerVehicle += ClusterDifference.computeCumulativeChange(eachDelta.getValue().getValue(), removal, addition);
-                    }
+                    var candidateEncoded = delta.encode(associations(localCandidates));
+                    double totalChangePerVehicle = AssociationDelta.cost(prevEncoded, candidateEncoded, removal, addition);
 
                     if (totalChangePerVehicle < bestScore) {
                         bestScore = totalChangePerVehicle;
@@ -174,9 +264,11 @@ public class TemporalNetworkingRanking {
         bestResultScore = assessingCandidate(veh_s, bestResultScore, candidate, removal, addition, 0, resultMap);
     }
 
-    private static void fillFromSimulationTime(TreeMap<Double, Map<String, List<String>>> vehClustAssoc, LocalTimeOptimizationProblem.Solution curr, Double time) {
+    /**
+     * @return  The RSUs with which each vehicle communicates in the given configuration
+     */
+    private static HashMap<String, List<String>> associations(LocalTimeOptimizationProblem.Solution curr) {
         HashMap<String, List<String>> map2 = new HashMap<>();
-        vehClustAssoc.put(time, map2);
         for (var y : curr.rsuToCommunicatingVehiclesCluster.entrySet()) {
             for (var z : y.getValue()) {
                 if (!map2.containsKey(z.id)) {
@@ -185,5 +277,6 @@ public class TemporalNetworkingRanking {
                 map2.get(z.id).add(y.getKey().id);
             }
         }
+        return map2;
     }
-}
+}
\ No newline at end of file
@@ -0,0 +1,71 @@
+package uk.ncl.giacomobergami.utils.algorithms;
+
+import java.util.*;
+
+/**
+ * Incremental alternative to {@link ClusterDifference#computeTemporalDifference(Map, Collection, Comparator)}
+ * when only the cost of the changes between two associations is required. Each association from the
+ * holders (e.g., the vehicles) to their members (e.g., the RSUs they communicate with) is encoded once
+ * as a sorted array of (holder, member) pairs over global dictionaries. The removals and additions
+ * between two associations are then counted by a single merge of their arrays, without allocating.
+ */
+public class AssociationDelta {
+    private final HashMap<String, Integer> holders;
+    private final HashMap<String, Integer> members;
+
+    /**
+     * @param holders   The only holders whose changes are accounted
+     */
+    public AssociationDelta(Collection<String> holders) {
+        this.holders = new HashMap<>();
+        for (var holder : holders) this.holders.putIfAbsent(holder, this.holders.size());
+        members = new HashMap<>();
+    }
+
+    /**
+     * Encodes an association: a holder associated more than once to the same member is considered once,
+     * and the holders not being accounted are ignored.
+     */
+    public long[] encode(Map<String, ? extends Collection<String>> association) {
+        int size = 0;
+        for (var x : association.values()) size += x.size();
+        long[] result = new long[size];
+        int i = 0;
+        for (var x : association.entrySet()) {
+            var holder = holders.get(x.getKey());
+            if (holder == null) continue;
+            for (var member : x.getValue()) {
+                int m = members.computeIfAbsent(member, k -> members.size());
+                result[i++] = (((long) holder) << 32) | m;
+            }
+        }
+        Arrays.sort(result, 0, i);
+        int distinct = 0;
+        for (int j = 0; j < i; j++) {
+            if ((distinct == 0) || (result[distinct-1] != result[j])) result[distinct++] = result[j];
+        }
+        return distinct == result.length ? result : Arrays.copyOf(result, distinct);
+    }
+
+    /**
+     * @return  The cost of changing the prev association into the curr one, as the removal score for each
+     *          pair only in prev and the addition score for each pair only in curr. This is the same
+     *          cost of {@link ClusterDifference#computeCumulativeChange} summed over all the holders.
+     */
+    public static double cost(long[] prev, long[] curr, double scoreRemoval, double scoreAddition) {
+        int i = 0, j = 0, N = prev.length, M = curr.length;
+        long removals = 0, additions = 0;
+        while ((i < N) && (j < M)) {
+            if (prev[i] == curr[j]) {
+                i++; j++;
+            } else if (prev[i] < curr[j]) {
+                removals++; i++;
+            } else {
+                additions++; j++;
+            }
+        }
+        removals += N - i;
+        additions += M - j;
+        return removals * scoreRemoval + additions * scoreAddition;
+    }
+}
@@ -0,0 +1,238 @@
+package uk.ncl.giacomobergami.utils.algorithms;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazy enumeration of the cartesian product of the maps from some keys to their possible values.
+ * Differently from {@link CartesianProduct#mapCartesianProduct(Map)}, the combinations are never
+ * collected in memory: each one is a vector of indices, one per key, visited as an odometer where
+ * the first key is the most significant digit. The values associated to a key are de-duplicated,
+ * and the keys having no values are ignored, as in {@link CartesianProduct}.
+ * <p>
+ * A {@link Pruning} callback is checked as soon as a prefix of the vector is assigned, so that all
+ * the completions of a rejected prefix are skipped without being visited. As each split of the
+ * {@link #indexSpliterator()} covers a contiguous range of odometer readings, the product can also be
+ * consumed as a parallel stream.
+ *
+ * @param <K>   Keys of the maps
+ * @param <V>   Values associated to the keys
+ */
+public class CartesianProductEnumerator<K, V> implements Iterable<Map<K, V>> {
+
+    /**
+     * Decides whether a partial assignment of the keys might lead to an acceptable combination
+     */
+    public interface Pruning {
+        /**
+         * @param depth     Index of the last key being assigned
+         * @param choice    Indices of the values chosen for the keys from 0 up to depth (included):
+         *                  the remaining ones shall be ignored
+         * @return  false if none of the combinations starting with such choice shall be visited
+         */
+        boolean admits(int depth, int[] choice);
+    }
+
+    private final List<K> keys;
+    private final List<List<V>> values;
+    /** Number of odometer readings between two consecutive values of the same key */
+    private final long[] stride;
+    private final long size;
+    private final List<Pruning> prunings;
+
+    public CartesianProductEnumerator(Map<K, ? extends Collection<V>> lists) {
+        this(lists, lists.keySet());
+    }
+
+    /**
+     * @param lists Possible values for each key
+     * @param orderedCollectionOfKeys   Order in which the keys are assigned, from the most significant
+     *                                  to the least one. Keys not in lists are ignored.
+     */
+    public CartesianProductEnumerator(Map<K, ? extends Collection<V>> lists, Collection<K> orderedCollectionOfKeys) {
+        keys = new ArrayList<>(lists.size());
+        values = new ArrayList<>(lists.size());
+        for (var key : orderedCollectionOfKeys) {
+            var ls = lists.get(key);
+            if ((ls == null) || ls.isEmpty()) continue;
+            keys.add(key);
+            values.add(List.copyOf(new LinkedHashSet<>(ls)));
+        }
+        int n = keys.size();
+        stride = new long[n];
+        long total = 1;
+        for (int i = n-1; i >= 0; i--) {
+            stride[i] = total;
+            try {
+                total = Math.multiplyExact(total, values.get(i).size());
+            } catch (ArithmeticException e) {
+                throw new ArithmeticException("The cartesian product has more than " + Long.MAX_VALUE + " combinations");
+            }
+        }
+        size = total;
+        prunings = new ArrayList<>();
+    }
+
+    /**
+     * Adds a pruning condition, which shall hold together with the previously added ones
+     */
+    public CartesianProductEnumerator<K, V> withPruning(Pruning pruning) {
+        prunings.add(pruning);
+        return this;
+    }
+
+    /**
+     * @return  The number of keys being assigned in each combination
+     */
+    public int arity() {
+        return keys.size();
+    }
+
+    public K key(int depth) {
+        return keys.get(depth);
+    }
+
+    /**
+     * @return  The distinct values that can be assigned to the key at the given depth
+     */
+    public List<V> values(int depth) {
+        return values.get(depth);
+    }
+
+    public V value(int depth, int index) {
+        return values.get(depth).get(index);
+    }
+
+    /**
+     * @return  The number of combinations before pruning
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Materialises a combination as a map
+     */
+    public Map<K, V> asMap(int[] choice) {
+        if (choice.length == 0) return Collections.emptyMap();
+        HashMap<K, V> result = new HashMap<>();
+        for (int i = 0; i < choice.length; i++) {
+            result.put(keys.get(i), values.get(i).get(choice[i]));
+        }
+        return result;
+    }
+
+    private boolean admits(int depth, int[] choice) {
+        for (var pruning : prunings) {
+            if (!pruning.admits(depth, choice)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return  The combinations which are not pruned, as index vectors. Each vector is a fresh copy,
+     *          so it can be retained by the consumer.
+     */
+    public Spliterator<int[]> indexSpliterator() {
+        return new Odometer(0, size);
+    }
+
+    public Stream<int[]> indexStream(boolean parallel) {
+        return StreamSupport.stream(indexSpliterator(), parallel);
+    }
+
+    public Stream<Map<K, V>> stream(boolean parallel) {
+        return indexStream(parallel).map(this::asMap);
+    }
+
+    @Override
+    public Iterator<Map<K, V>> iterator() {
+        return stream(false).iterator();
+    }
+
+    private class Odometer implements Spliterator<int[]> {
+        private long rank;
+        private long end;
+        private final int[] digits;
+        /** Number of leading digits which are known to be admitted by the pruning */
+        private int valid;
+
+        Odometer(long rank, long end) {
+            this.rank = rank;
+            this.end = end;
+            digits = new int[keys.size()];
+            valid = 0;
+            decode(rank);
+        }
+
+        /**
+         * Moves to the given reading, and returns the first digit being changed
+         */
+        private int decode(long to) {
+            int changed = digits.length;
+            long r = to;
+            for (int i = 0; i < digits.length; i++) {
+                int d = (int) (r / stride[i]);
+                r -= d * stride[i];
+                if ((d != digits[i]) && (changed == digits.length)) changed = i;
+                digits[i] = d;
+            }
+            rank = to;
+            return changed;
+        }
+
+        /**
+         * Moves to the first reading, from the current one, being admitted by the pruning
+         */
+        private boolean seek() {
+            while (rank < end) {
+                int depth = valid;
+                while ((depth < digits.length) && admits(depth, digits)) depth++;
+                if (depth == digits.length) {
+                    valid = depth;
+                    return true;
+                }
+                // Skipping all the readings sharing the rejected prefix
+                long next = rank - (rank % stride[depth]) + stride[depth];
+                valid = Math.min(depth, decode(Math.min(next, end)));
+            }
+            return false;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super int[]> action) {
+            if (!seek()) return false;
+            var result = digits.clone();
+            valid = Math.min(valid, decode(rank + 1));
+            action.accept(result);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super int[]> action) {
+            while (tryAdvance(action));
+        }
+
+        @Override
+        public Spliterator<int[]> trySplit() {
+            long mid = rank + (end - rank) / 2;
+            if (mid <= rank) return null;
+            var prefix = new Odometer(rank, mid);
+            valid = 0;
+            decode(mid);
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - rank;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE;
+        }
+    }
+}
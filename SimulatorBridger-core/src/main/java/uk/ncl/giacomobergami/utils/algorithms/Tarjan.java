@@ -4,13 +4,30 @@ import uk.ncl.giacomobergami.utils.structures.StraightforwardAdjacencyList;
 
 import java.util.*;
 
+/**
+ * Tarjan's strongly connected components. The visit is iterative, so that deep graphs do not
+ * overflow the stack: the vertices are interned to ints, the graph is converted into adjacency
+ * arrays (CSR) and all the work arrays are reused across the runs of the same instance.
+ * <p>
+ * In the incremental mode, a run on the same graph object and on the same vertices of the previous
+ * run returns the previous components without visiting the graph again: this is the case of the
+ * converters whose RSU network never changes across the ticks. The graph should therefore not be
+ * changed after being given to an incremental instance.
+ *
+ * @param <K>   Vertices of the graph
+ */
 public class Tarjan<K> {
 
-    long index = 0;
-    Stack<K> S;
-    HashMap<K, Long> v_index, low_link;
-    HashSet<K> onStack;
+    private final boolean incremental;
+    private final HashMap<K, Integer> ids;
+    private final List<K> vertices;
+    /** The outgoing edges of the vertex u are adj[head[u]] ... adj[head[u+1]-1] */
+    private int[] head, adj;
+    private int[] v_index, low_link, cursor, S, callStack;
+    private boolean[] onStack;
     List<List<K>> scc;
+    private StraightforwardAdjacencyList<K> lastGraph;
+    private HashSet<K> lastVertexSet;
 
     public static <K> Map<K, Integer> asBelongingMap(List<List<K>> scc) {
         if (scc == null || scc.isEmpty()) return Collections.emptyMap();
@@ -23,58 +40,135 @@ public class Tarjan<K> {
     }
 
     public Tarjan() {
-        S = new Stack<>();
-        v_index = new HashMap<>();
-        low_link = new HashMap<>();
-        onStack = new HashSet<>();
+        this(false);
+    }
+
+    /**
+     * @param incremental   Whether to skip the runs on the same graph and vertices of the previous one
+     */
+    public Tarjan(boolean incremental) {
+        this.incremental = incremental;
+        ids = new HashMap<>();
+        vertices = new ArrayList<>();
+        head = new int[1];
+        adj = new int[0];
+        v_index = low_link = cursor = S = callStack = new int[0];
+        onStack = new boolean[0];
         scc = new ArrayList<>();
+        lastGraph = null;
+        lastVertexSet = null;
     }
 
-    private void init() {
-        index = 0;
-        S.clear();
-        v_index.clear();
-        low_link.clear();
-        onStack.clear();
-        scc.clear();
+    private int intern(K vertex) {
+        return ids.computeIfAbsent(vertex, k -> {
+            vertices.add(k);
+            return vertices.size() - 1;
+        });
+    }
+
+    /**
+     * Converts the graph into the adjacency arrays, preserving the order of the outgoing edges
+     */
+    private int[] init(StraightforwardAdjacencyList<K> graph, Collection<K> vertexSet) {
+        ids.clear();
+        vertices.clear();
+        scc = new ArrayList<>();
+        int[] roots = new int[vertexSet.size()];
+        int r = 0;
+        for (K vertex : vertexSet) roots[r++] = intern(vertex);
+        var edges = graph.asMap();
+        int nEdges = 0;
+        for (var x : edges.entrySet()) {
+            intern(x.getKey());
+            for (K w : x.getValue()) intern(w);
+            nEdges += x.getValue().size();
+        }
+        int n = vertices.size();
+        if (v_index.length < n) {
+            int size = Math.max(n, 2 * v_index.length);
+            v_index = new int[size];
+            low_link = new int[size];
+            cursor = new int[size];
+            S = new int[size];
+            callStack = new int[size];
+            onStack = new boolean[size];
+        }
+        if (head.length < n + 1) head = new int[Math.max(n + 1, 2 * head.length)];
+        if (adj.length < nEdges) adj = new int[Math.max(nEdges, 2 * adj.length)];
+        Arrays.fill(v_index, 0, n, -1);
+        Arrays.fill(onStack, 0, n, false);
+        int e = 0;
+        for (int u = 0; u < n; u++) {
+            head[u] = e;
+            var out = edges.get(vertices.get(u));
+            if (out == null) continue;
+            for (K w : out) adj[e++] = ids.get(w);
+        }
+        head[n] = e;
+        return roots;
     }
 
     public List<List<K>> run(StraightforwardAdjacencyList<K> graph, Collection<K> vertexSet) {
-        init();
-        for (K vertex : vertexSet) {
-            if (v_index.get(vertex) == null) {
-                rec(graph, vertex);
+        if (incremental && (graph == lastGraph) && (lastVertexSet.size() == vertexSet.size()) && lastVertexSet.containsAll(vertexSet)) {
+            return scc;
+        }
+        int[] roots = init(graph, vertexSet);
+        int index = 0;
+        for (int root : roots) {
+            if (v_index[root] == -1) {
+                index = visit(root, index);
             }
         }
+        if (incremental) {
+            lastGraph = graph;
+            lastVertexSet = new HashSet<>(vertexSet);
+        }
         return scc;
     }
 
-    private void rec(StraightforwardAdjacencyList<K> graph, K vertex) {
-        v_index.put(vertex, index);
-        low_link.put(vertex, index);
-        index++;
-        onStack.add(vertex);
-        S.push(vertex);
-
-        for (K w : graph.outgoing(vertex)) {
-            if (v_index.get(w) == null) {
-                rec(graph, w);
-                low_link.put(vertex, Math.min(low_link.get(vertex), low_link.get(w)));
-            } else if (onStack.contains(w)) {
-                low_link.put(vertex, Math.min(low_link.get(vertex), v_index.get(w)));
+    /**
+     * Visits the vertices reachable from the root in the same order of the recursive algorithm,
+     * by keeping the visit of each vertex in the call stack together with its next outgoing edge
+     */
+    private int visit(int root, int index) {
+        int top = 0, calls = 0;
+        v_index[root] = low_link[root] = index++;
+        cursor[root] = head[root];
+        S[top++] = root;
+        onStack[root] = true;
+        callStack[calls++] = root;
+        while (calls > 0) {
+            int vertex = callStack[calls - 1];
+            if (cursor[vertex] < head[vertex + 1]) {
+                int w = adj[cursor[vertex]++];
+                if (v_index[w] == -1) {
+                    v_index[w] = low_link[w] = index++;
+                    cursor[w] = head[w];
+                    S[top++] = w;
+                    onStack[w] = true;
+                    callStack[calls++] = w;
+                } else if (onStack[w]) {
+                    low_link[vertex] = Math.min(low_link[vertex], v_index[w]);
+                }
+            } else {
+                calls--;
+                if (low_link[vertex] == v_index[vertex]) {
+                    List<K> new_scc = new ArrayList<>();
+                    int w;
+                    do {
+                        w = S[--top];
+                        onStack[w] = false;
+                        new_scc.add(vertices.get(w));
+                    } while (w != vertex);
+                    scc.add(new_scc);
+                }
+                if (calls > 0) {
+                    int parent = callStack[calls - 1];
+                    low_link[parent] = Math.min(low_link[parent], low_link[vertex]);
+                }
             }
         }
-
-        if (Objects.equals(low_link.get(vertex), v_index.get(vertex))) {
-            List<K> new_scc = new ArrayList<>();
-            K w = null;
-            do {
-                w = S.pop();
-                onStack.remove(w);
-                new_scc.add(w);
-            } while (!Objects.equals(w, vertex));
-            scc.add(new_scc);
-        }
+        return index;
     }
 
 }
@@ -9,8 +9,11 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 public class CSVMediator<T> {
+    private static final Object END_OF_WRITE = new Object();
     private final Class<T> clazz;
     CsvMapper csvMapper;
     CsvSchema csvSchema;
@@ -58,6 +61,23 @@ public class CSVMediator<T> {
         }
     }
 
+    /**
+     * Opens a writer delegating the serialisation to a dedicated thread: the rows are queued, and
+     * written in the same order they were given. The writing blocks when the queue is full.
+     *
+     * @param filename  File to be written
+     * @param capacity  Maximum number of rows waiting to be written
+     * @return The writer, or null if the file cannot be opened
+     */
+    public CSVWriter beginAsyncCSVWrite(File filename, int capacity) {
+        try {
+            return new CSVWriter(filename, capacity);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
     public CSVReader beginCSVRead(File filename) {
         try {
             return new CSVReader(filename);
@@ -98,14 +118,61 @@ public class CSVMediator<T> {
 
     public class CSVWriter implements AutoCloseable {
         SequenceWriter writer;
+        BlockingQueue<Object> queue;
+        Thread drainer;
+        volatile boolean failed;
+        File filename;
+
         CSVWriter(File filename) throws IOException {
+            this.filename = filename;
             writer = csvMapper.writerFor(clazz)
                     .with(csvSchema)
                     .writeValues(filename.getAbsoluteFile());
+            queue = null;
+            drainer = null;
+            failed = false;
+        }
+
+        CSVWriter(File filename, int capacity) throws IOException {
+            this(filename);
+            queue = new ArrayBlockingQueue<>(capacity);
+            drainer = new Thread(this::drain, "csv-writer-" + filename.getName());
+            drainer.setDaemon(true);
+            drainer.start();
+        }
+
+        private void drain() {
+            try {
+                Object object;
+                while ((object = queue.take()) != END_OF_WRITE) {
+                    // After a failure, the rows are still consumed so not to block the producer
+                    if (!failed) {
+                        try {
+                            writer.write(object);
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                            failed = true;
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed = true;
+            }
         }
 
         public boolean write(T object) {
             if (writer == null) return false;
+            if (queue != null) {
+                if (failed) return false;
+                try {
+                    queue.put(object);
+                    return true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
             try {
                 writer.write(object);
                 return true;
@@ -118,10 +185,19 @@ public class CSVMediator<T> {
 
         @Override
         public void close() throws Exception {
+            if (drainer != null) {
+                queue.put(END_OF_WRITE);
+                drainer.join();
+                drainer = null;
+            }
             if (writer != null) {
                 writer.close();
                 writer = null;
             }
+            // The rows following an asynchronous failure were dropped
+            if (failed) {
+                throw new IOException("ERROR: the CSV file " + filename + " was not completely written");
+            }
         }
     }
 
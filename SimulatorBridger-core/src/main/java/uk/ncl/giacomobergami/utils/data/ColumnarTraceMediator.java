@@ -0,0 +1,393 @@
+package uk.ncl.giacomobergami.utils.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Binary columnar alternative to {@link CSVMediator} for the traces handed between the pipeline
+ * stages. The objects are grouped in blocks, one per simulation tick, which are located through a
+ * time index: a reader can therefore seek to any tick without scanning the previous ones, and the
+ * file is memory-mapped rather than parsed. Within each block, the values are stored by column:
+ * the strings (e.g., ids and lanes) as codes of a dictionary shared by the whole trace, and the
+ * other fields as primitive doubles.
+ * <p>
+ * The file layout is the following, where all the offsets are absolute positions in the file:
+ * <pre>
+ *     header:     MAGIC, VERSION, #string columns, #double columns              (ints)
+ *     blocks:     #rows, then each string column (int codes, -1 for null),
+ *                 then each double column (doubles)
+ *     dictionary: #entries, then each entry as its UTF-8 length and bytes
+ *     time index: #ticks, then the ticks (doubles), then the block offsets (longs)
+ *     footer:     dictionary offset, time index offset (longs), MAGIC (int)
+ * </pre>
+ *
+ * @param <T>   Type of the objects in the trace
+ */
+public class ColumnarTraceMediator<T> {
+    private static final int MAGIC = 0x53425452; // "SBTR"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 * Integer.BYTES;
+    private static final int FOOTER_SIZE = 2 * Long.BYTES + Integer.BYTES;
+
+    private final Supplier<T> constructor;
+    private final ToDoubleFunction<T> getTime;
+    private final ObjDoubleConsumer<T> setTime;
+    private final List<Function<T, String>> stringGetters;
+    private final List<BiConsumer<T, String>> stringSetters;
+    private final List<ToDoubleFunction<T>> doubleGetters;
+    private final List<ObjDoubleConsumer<T>> doubleSetters;
+
+    /**
+     * @param constructor   Creating an empty object, whose columns are then set
+     * @param getTime       Tick of an object, determining the block where it is stored
+     * @param setTime       Setting the tick of an object read from its block
+     */
+    public ColumnarTraceMediator(Supplier<T> constructor,
+                                 ToDoubleFunction<T> getTime,
+                                 ObjDoubleConsumer<T> setTime) {
+        this.constructor = constructor;
+        this.getTime = getTime;
+        this.setTime = setTime;
+        stringGetters = new ArrayList<>();
+        stringSetters = new ArrayList<>();
+        doubleGetters = new ArrayList<>();
+        doubleSetters = new ArrayList<>();
+    }
+
+    public ColumnarTraceMediator<T> withStringColumn(Function<T, String> getter, BiConsumer<T, String> setter) {
+        stringGetters.add(getter);
+        stringSetters.add(setter);
+        return this;
+    }
+
+    public ColumnarTraceMediator<T> withDoubleColumn(ToDoubleFunction<T> getter, ObjDoubleConsumer<T> setter) {
+        doubleGetters.add(getter);
+        doubleSetters.add(setter);
+        return this;
+    }
+
+    /**
+     * @param csvFile   CSV file exported by a pipeline stage
+     * @return  The file where the same stage stores the trace in the columnar format
+     */
+    public static File traceOf(File csvFile) {
+        return new File(csvFile.getPath() + ".trace");
+    }
+
+    /**
+     * @param csvFile   CSV file exported by a pipeline stage
+     * @return  Whether the trace in the columnar format exists, and is not older than the CSV file
+     */
+    public static boolean hasTrace(File csvFile) {
+        File trace = traceOf(csvFile);
+        return trace.exists() && ((!csvFile.exists()) || (trace.lastModified() >= csvFile.lastModified()));
+    }
+
+    public boolean writeAll(File name, Collection<T> values) {
+        var writer = beginWrite(name);
+        if (writer == null) return false;
+        for (T x : values) writer.write(x);
+        try {
+            writer.close();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+        return true;
+    }
+
+    public boolean readAll(File name, Collection<T> values) {
+        var reader = beginRead(name);
+        if (reader == null) return false;
+        while (reader.hasNext()) {
+            values.add(reader.next());
+        }
+        try {
+            reader.close();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+        return true;
+    }
+
+    public TraceWriter beginWrite(File filename) {
+        try {
+            return new TraceWriter(filename);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    public TraceReader beginRead(File filename) {
+        try {
+            return new TraceReader(filename);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Writes the objects, which should be given in non-decreasing tick order: the objects of a tick
+     * are buffered until the first object of the next tick is given.
+     */
+    public class TraceWriter implements AutoCloseable {
+        private final FileChannel channel;
+        private final HashMap<String, Integer> dictionary;
+        private final List<String> entries;
+        private final List<T> block;
+        private double blockTime;
+        private double[] ticks;
+        private long[] offsets;
+        private int nTicks;
+
+        TraceWriter(File filename) throws IOException {
+            channel = FileChannel.open(filename.getAbsoluteFile().toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            dictionary = new HashMap<>();
+            entries = new ArrayList<>();
+            block = new ArrayList<>();
+            blockTime = Double.NaN;
+            ticks = new double[16];
+            offsets = new long[16];
+            nTicks = 0;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(stringGetters.size()).putInt(doubleGetters.size());
+            writeFully(header);
+        }
+
+        public boolean write(T object) {
+            double time = getTime.applyAsDouble(object);
+            if (!block.isEmpty() && (time != blockTime)) {
+                if (time < blockTime) {
+                    throw new IllegalArgumentException("The ticks should be written in non-decreasing order: got " + time + " after " + blockTime);
+                }
+                try {
+                    flushBlock();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    return false;
+                }
+            }
+            blockTime = time;
+            block.add(object);
+            return true;
+        }
+
+        private int encode(String value) {
+            if (value == null) return -1;
+            return dictionary.computeIfAbsent(value, k -> {
+                entries.add(k);
+                return entries.size() - 1;
+            });
+        }
+
+        private void flushBlock() throws IOException {
+            if (block.isEmpty()) return;
+            if (nTicks == ticks.length) {
+                ticks = Arrays.copyOf(ticks, 2 * nTicks);
+                offsets = Arrays.copyOf(offsets, 2 * nTicks);
+            }
+            ticks[nTicks] = blockTime;
+            offsets[nTicks] = channel.position();
+            nTicks++;
+            int rows = block.size();
+            ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + rows * (stringGetters.size() * Integer.BYTES + doubleGetters.size() * Double.BYTES));
+            buffer.putInt(rows);
+            for (var getter : stringGetters) {
+                for (int i = 0; i < rows; i++) buffer.putInt(encode(getter.apply(block.get(i))));
+            }
+            for (var getter : doubleGetters) {
+                for (int i = 0; i < rows; i++) buffer.putDouble(getter.applyAsDouble(block.get(i)));
+            }
+            writeFully(buffer);
+            block.clear();
+        }
+
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+        }
+
+        @Override
+        public void close() throws Exception {
+            try {
+                flushBlock();
+                long dictionaryOffset = channel.position();
+                List<byte[]> encoded = new ArrayList<>(entries.size());
+                int size = Integer.BYTES;
+                for (var x : entries) {
+                    var bytes = x.getBytes(StandardCharsets.UTF_8);
+                    encoded.add(bytes);
+                    size += Integer.BYTES + bytes.length;
+                }
+                ByteBuffer buffer = ByteBuffer.allocate(size);
+                buffer.putInt(encoded.size());
+                for (var bytes : encoded) buffer.putInt(bytes.length).put(bytes);
+                writeFully(buffer);
+
+                long indexOffset = channel.position();
+                buffer = ByteBuffer.allocate(Integer.BYTES + nTicks * (Double.BYTES + Long.BYTES) + FOOTER_SIZE);
+                buffer.putInt(nTicks);
+                for (int i = 0; i < nTicks; i++) buffer.putDouble(ticks[i]);
+                for (int i = 0; i < nTicks; i++) buffer.putLong(offsets[i]);
+                buffer.putLong(dictionaryOffset).putLong(indexOffset).putInt(MAGIC);
+                writeFully(buffer);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Reads the objects either sequentially, as an iterator, or by tick. The blocks are decoded on
+     * demand from the memory-mapped file, and distinct ticks can be read concurrently.
+     */
+    public class TraceReader implements AutoCloseable, Iterator<T> {
+        private final FileChannel channel;
+        private final String[] dictionary;
+        private final double[] ticks;
+        private final long[] offsets;
+        private final ByteBuffer mapped;
+        private List<T> current;
+        private int currentPos, nextBlock;
+
+        TraceReader(File filename) throws IOException {
+            channel = FileChannel.open(filename.getAbsoluteFile().toPath(), StandardOpenOption.READ);
+            try {
+                long size = channel.size();
+                ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+                if ((header.getInt() != MAGIC) || (header.getInt() != VERSION)) {
+                    throw new IOException("Not a columnar trace: " + filename);
+                }
+                if ((header.getInt() != stringGetters.size()) || (header.getInt() != doubleGetters.size())) {
+                    throw new IOException("The trace " + filename + " has different columns than expected");
+                }
+                ByteBuffer footer = channel.map(FileChannel.MapMode.READ_ONLY, size - FOOTER_SIZE, FOOTER_SIZE);
+                long dictionaryOffset = footer.getLong();
+                long indexOffset = footer.getLong();
+                if (footer.getInt() != MAGIC) {
+                    throw new IOException("Truncated columnar trace: " + filename);
+                }
+
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, dictionaryOffset, indexOffset - dictionaryOffset);
+                dictionary = new String[buffer.getInt()];
+                for (int i = 0; i < dictionary.length; i++) {
+                    byte[] bytes = new byte[buffer.getInt()];
+                    buffer.get(bytes);
+                    dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+                }
+
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, size - FOOTER_SIZE - indexOffset);
+                int nTicks = buffer.getInt();
+                ticks = new double[nTicks];
+                offsets = new long[nTicks + 1];
+                for (int i = 0; i < nTicks; i++) ticks[i] = buffer.getDouble();
+                for (int i = 0; i < nTicks; i++) offsets[i] = buffer.getLong();
+                offsets[nTicks] = dictionaryOffset;
+
+                // Mapping all the blocks at once when possible, and each block on its own otherwise
+                mapped = (dictionaryOffset <= Integer.MAX_VALUE) ?
+                        channel.map(FileChannel.MapMode.READ_ONLY, 0, dictionaryOffset) : null;
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+            current = Collections.emptyList();
+            currentPos = 0;
+            nextBlock = 0;
+        }
+
+        /**
+         * @return The ticks of the trace, in increasing order
+         */
+        public double[] getTicks() {
+            return ticks.clone();
+        }
+
+        /**
+         * @param tick  Tick to be read
+         * @return  The objects at the given tick, or an empty list if the tick is not in the trace
+         */
+        public List<T> readTick(double tick) {
+            int i = Arrays.binarySearch(ticks, tick);
+            return (i < 0) ? new ArrayList<>() : readBlock(i);
+        }
+
+        /**
+         * Positions the iterator at the first object whose tick is not lower than the given one
+         * @param tick  Tick from which the iteration restarts
+         */
+        public void seek(double tick) {
+            int i = Arrays.binarySearch(ticks, tick);
+            nextBlock = (i < 0) ? -(i + 1) : i;
+            current = Collections.emptyList();
+            currentPos = 0;
+        }
+
+        private ByteBuffer block(int i) {
+            try {
+                if (mapped != null) {
+                    return mapped.duplicate().position((int) offsets[i]).limit((int) offsets[i + 1]).slice();
+                } else {
+                    return channel.map(FileChannel.MapMode.READ_ONLY, offsets[i], offsets[i + 1] - offsets[i]);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Error while mapping the trace", e);
+            }
+        }
+
+        private List<T> readBlock(int blockId) {
+            ByteBuffer buffer = block(blockId);
+            int rows = buffer.getInt();
+            List<T> result = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                T object = constructor.get();
+                setTime.accept(object, ticks[blockId]);
+                result.add(object);
+            }
+            for (var setter : stringSetters) {
+                for (int i = 0; i < rows; i++) {
+                    int code = buffer.getInt();
+                    setter.accept(result.get(i), code < 0 ? null : dictionary[code]);
+                }
+            }
+            for (var setter : doubleSetters) {
+                for (int i = 0; i < rows; i++) setter.accept(result.get(i), buffer.getDouble());
+            }
+            return result;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while ((currentPos >= current.size()) && (nextBlock < ticks.length)) {
+                current = readBlock(nextBlock++);
+                currentPos = 0;
+            }
+            return currentPos < current.size();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return current.get(currentPos++);
+        }
+
+        @Override
+        public void close() throws Exception {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package uk.ncl.giacomobergami.utils.data;
+
+import uk.ncl.giacomobergami.utils.algorithms.StringComparator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Binary trace of the RSU network over time, replacing the timed SCC and the neighbours' change
+ * JSON files. Each tick is appended as a block as soon as it is computed, so that neither the
+ * writer nor the reader need to hold more than one tick in memory: a block stores the SCCs of the
+ * tick, and the neighbours of the RSUs whose adjacency changed since the previous tick. The RSU ids
+ * are stored as codes of a dictionary shared by the whole trace.
+ * <p>
+ * The file layout is the following, where all the offsets are absolute positions in the file:
+ * <pre>
+ *     header:     MAGIC, VERSION                                                (ints)
+ *     blocks:     #SCCs, then each SCC as its size and codes,
+ *                 #changed RSUs, then each RSU code, #neighbours and their codes (ints)
+ *     dictionary: #entries, then each entry as its UTF-8 length and bytes
+ *     RSUs:       #RSUs, then the codes of all the RSUs appearing in the trace
+ *     time index: #ticks, then the ticks (doubles), then the block offsets (longs)
+ *     footer:     dictionary offset, RSUs offset, time index offset (longs), MAGIC (int)
+ * </pre>
+ */
+public class TimedNetworkTrace {
+    private static final int MAGIC = 0x53424e54; // "SBNT"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int FOOTER_SIZE = 3 * Long.BYTES + Integer.BYTES;
+
+    /**
+     * @param rsuCsvFile    CSV file of the RSUs exported by the traffic converter
+     * @return  The file where the converter stores the network trace of such RSUs
+     */
+    public static File traceOf(File rsuCsvFile) {
+        return new File(rsuCsvFile.getPath() + "_network.trace");
+    }
+
+    /**
+     * @param rsuCsvFile    CSV file of the RSUs exported by the traffic converter
+     * @return  Whether the network trace of such RSUs exists, and is not older than the CSV file
+     */
+    public static boolean hasTrace(File rsuCsvFile) {
+        File trace = traceOf(rsuCsvFile);
+        return trace.exists() && ((!rsuCsvFile.exists()) || (trace.lastModified() >= rsuCsvFile.lastModified()));
+    }
+
+    public static Writer beginWrite(File filename) {
+        try {
+            return new Writer(filename);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    public static Reader beginRead(File filename) {
+        try {
+            return new Reader(filename);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Network at a given tick, as read from the trace
+     */
+    public static class Tick {
+        public final double tick;
+        public final List<List<String>> scc;
+        /** The neighbours of the RSUs whose adjacency changed since the previous tick, sorted */
+        public final Map<String, List<String>> changedAdjacency;
+
+        public Tick(double tick, List<List<String>> scc, Map<String, List<String>> changedAdjacency) {
+            this.tick = tick;
+            this.scc = scc;
+            this.changedAdjacency = changedAdjacency;
+        }
+    }
+
+    /**
+     * Appends the ticks, which should be given in increasing order
+     */
+    public static class Writer implements AutoCloseable {
+        private final File filename;
+        private final FileChannel channel;
+        private final HashMap<String, Integer> dictionary;
+        private final List<String> entries;
+        private final LinkedHashSet<Integer> rsus;
+        /** Sorted neighbours of each RSU at the previous tick, if not empty */
+        private HashMap<Integer, int[]> previous;
+        private double lastTick;
+        private double[] ticks;
+        private long[] offsets;
+        private int nTicks;
+
+        Writer(File filename) throws IOException {
+            this.filename = filename.getAbsoluteFile();
+            channel = FileChannel.open(filename.getAbsoluteFile().toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            dictionary = new HashMap<>();
+            entries = new ArrayList<>();
+            rsus = new LinkedHashSet<>();
+            previous = new HashMap<>();
+            lastTick = -Double.MAX_VALUE;
+            ticks = new double[16];
+            offsets = new long[16];
+            nTicks = 0;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION);
+            writeFully(header);
+        }
+
+        private int encode(String value) {
+            return dictionary.computeIfAbsent(value, k -> {
+                entries.add(k);
+                return entries.size() - 1;
+            });
+        }
+
+        private int[] encodeSorted(Collection<String> values) {
+            var ls = new ArrayList<>(values);
+            ls.sort(StringComparator.getInstance());
+            int[] result = new int[ls.size()];
+            for (int i = 0; i < result.length; i++) result[i] = encode(ls.get(i));
+            return result;
+        }
+
+        /**
+         * @param tick      Tick being written
+         * @param nodes     RSUs available at the tick
+         * @param scc       Strongly connected components of the network at the tick
+         * @param adjacency Neighbours of each RSU at the tick: the missing ones have none
+         */
+        public boolean write(double tick,
+                             Collection<String> nodes,
+                             List<List<String>> scc,
+                             Map<String, ? extends Collection<String>> adjacency) {
+            if (tick <= lastTick) {
+                throw new IllegalArgumentException("The ticks should be written in increasing order: got " + tick + " after " + lastTick);
+            }
+            lastTick = tick;
+            for (var x : nodes) rsus.add(encode(x));
+            int size = 2 * Integer.BYTES;
+            List<int[]> sccs = new ArrayList<>(scc.size());
+            for (var component : scc) {
+                int[] codes = new int[component.size()];
+                for (int i = 0; i < codes.length; i++) codes[i] = encode(component.get(i));
+                sccs.add(codes);
+                size += Integer.BYTES * (1 + codes.length);
+            }
+            HashMap<Integer, int[]> current = new HashMap<>();
+            List<Integer> changed = new ArrayList<>();
+            for (var x : adjacency.entrySet()) {
+                var neighbours = encodeSorted(x.getValue());
+                if (neighbours.length == 0) continue;
+                int rsu = encode(x.getKey());
+                current.put(rsu, neighbours);
+                if (!Arrays.equals(neighbours, previous.get(rsu))) changed.add(rsu);
+            }
+            for (var rsu : previous.keySet()) {
+                if (!current.containsKey(rsu)) changed.add(rsu);
+            }
+            for (var rsu : changed) {
+                var neighbours = current.get(rsu);
+                size += Integer.BYTES * (2 + (neighbours == null ? 0 : neighbours.length));
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            buffer.putInt(sccs.size());
+            for (var codes : sccs) {
+                buffer.putInt(codes.length);
+                for (int code : codes) buffer.putInt(code);
+            }
+            buffer.putInt(changed.size());
+            for (var rsu : changed) {
+                var neighbours = current.get(rsu);
+                buffer.putInt(rsu);
+                if (neighbours == null) {
+                    buffer.putInt(0);
+                } else {
+                    buffer.putInt(neighbours.length);
+                    for (int code : neighbours) buffer.putInt(code);
+                }
+            }
+            previous = current;
+            try {
+                if (nTicks == ticks.length) {
+                    ticks = Arrays.copyOf(ticks, 2 * nTicks);
+                    offsets = Arrays.copyOf(offsets, 2 * nTicks);
+                }
+                ticks[nTicks] = tick;
+                offsets[nTicks] = channel.position();
+                nTicks++;
+                writeFully(buffer);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return false;
+            }
+            return true;
+        }
+
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+        }
+
+        @Override
+        public void close() throws Exception {
+            try {
+                long dictionaryOffset = channel.position();
+                List<byte[]> encoded = new ArrayList<>(entries.size());
+                int size = Integer.BYTES;
+                for (var x : entries) {
+                    var bytes = x.getBytes(StandardCharsets.UTF_8);
+                    encoded.add(bytes);
+                    size += Integer.BYTES + bytes.length;
+                }
+                ByteBuffer buffer = ByteBuffer.allocate(size);
+                buffer.putInt(encoded.size());
+                for (var bytes : encoded) buffer.putInt(bytes.length).put(bytes);
+                writeFully(buffer);
+
+                long rsusOffset = channel.position();
+                buffer = ByteBuffer.allocate(Integer.BYTES * (1 + rsus.size()));
+                buffer.putInt(rsus.size());
+                for (int code : rsus) buffer.putInt(code);
+                writeFully(buffer);
+
+                long indexOffset = channel.position();
+                buffer = ByteBuffer.allocate(Integer.BYTES + nTicks * (Double.BYTES + Long.BYTES) + FOOTER_SIZE);
+                buffer.putInt(nTicks);
+                for (int i = 0; i < nTicks; i++) buffer.putDouble(ticks[i]);
+                for (int i = 0; i < nTicks; i++) buffer.putLong(offsets[i]);
+                buffer.putLong(dictionaryOffset).putLong(rsusOffset).putLong(indexOffset).putInt(MAGIC);
+                writeFully(buffer);
+            } finally {
+                channel.close();
+            }
+        }
+
+        /**
+         * Discards the ticks written so far, instead of closing the trace: no partial trace is left
+         * to be read as a complete one
+         */
+        public void abort() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            if (!filename.delete()) {
+                System.err.println("ERROR: unable to remove the partial network trace " + filename);
+            }
+        }
+    }
+
+    /**
+     * Reads the ticks sequentially: only the dictionary and the time index are loaded upfront, while
+     * each block is read when its tick is reached, into a buffer reused across the ticks.
+     */
+    public static class Reader implements AutoCloseable, Iterator<Tick> {
+        private final FileChannel channel;
+        private final String[] dictionary;
+        private final List<String> rsus;
+        private final double[] ticks;
+        private final long[] offsets;
+        private ByteBuffer block;
+        private int nextBlock;
+
+        Reader(File filename) throws IOException {
+            channel = FileChannel.open(filename.getAbsoluteFile().toPath(), StandardOpenOption.READ);
+            try {
+                long size = channel.size();
+                ByteBuffer header = read(null, 0, HEADER_SIZE);
+                if ((header.getInt() != MAGIC) || (header.getInt() != VERSION)) {
+                    throw new IOException("Not a network trace: " + filename);
+                }
+                ByteBuffer footer = read(null, size - FOOTER_SIZE, FOOTER_SIZE);
+                long dictionaryOffset = footer.getLong();
+                long rsusOffset = footer.getLong();
+                long indexOffset = footer.getLong();
+                if (footer.getInt() != MAGIC) {
+                    throw new IOException("Truncated network trace: " + filename);
+                }
+
+                ByteBuffer buffer = read(null, dictionaryOffset, rsusOffset - dictionaryOffset);
+                dictionary = new String[buffer.getInt()];
+                for (int i = 0; i < dictionary.length; i++) {
+                    byte[] bytes = new byte[buffer.getInt()];
+                    buffer.get(bytes);
+                    dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+                }
+
+                buffer = read(null, rsusOffset, indexOffset - rsusOffset);
+                int nRSUs = buffer.getInt();
+                rsus = new ArrayList<>(nRSUs);
+                for (int i = 0; i < nRSUs; i++) rsus.add(dictionary[buffer.getInt()]);
+
+                buffer = read(null, indexOffset, size - FOOTER_SIZE - indexOffset);
+                int nTicks = buffer.getInt();
+                ticks = new double[nTicks];
+                offsets = new long[nTicks + 1];
+                for (int i = 0; i < nTicks; i++) ticks[i] = buffer.getDouble();
+                for (int i = 0; i < nTicks; i++) offsets[i] = buffer.getLong();
+                offsets[nTicks] = dictionaryOffset;
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+            nextBlock = 0;
+        }
+
+        /**
+         * Reads a region of the trace into the given buffer, which is replaced by a larger one if it
+         * cannot hold the region. Differently from mapping the region, no memory map outlives the call.
+         */
+        private ByteBuffer read(ByteBuffer buffer, long offset, long length) throws IOException {
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Region of the network trace too large: " + length + " bytes");
+            }
+            if ((buffer == null) || (buffer.capacity() < length)) {
+                buffer = ByteBuffer.allocate((int) length);
+            }
+            buffer.clear().limit((int) length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("Truncated network trace");
+                }
+            }
+            return buffer.flip();
+        }
+
+        /**
+         * @return The ticks of the trace, in increasing order
+         */
+        public double[] getTicks() {
+            return ticks.clone();
+        }
+
+        /**
+         * @return All the RSUs appearing in the trace
+         */
+        public List<String> getRSUs() {
+            return rsus;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextBlock < ticks.length;
+        }
+
+        @Override
+        public Tick next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            int i = nextBlock++;
+            ByteBuffer buffer;
+            try {
+                buffer = block = read(block, offsets[i], offsets[i + 1] - offsets[i]);
+            } catch (IOException e) {
+                throw new IllegalStateException("Error while reading the network trace", e);
+            }
+            int nSCC = buffer.getInt();
+            List<List<String>> scc = new ArrayList<>(nSCC);
+            for (int j = 0; j < nSCC; j++) {
+                scc.add(decode(buffer));
+            }
+            int nChanged = buffer.getInt();
+            Map<String, List<String>> changed = new HashMap<>();
+            for (int j = 0; j < nChanged; j++) {
+                var rsu = dictionary[buffer.getInt()];
+                changed.put(rsu, decode(buffer));
+            }
+            return new Tick(ticks[i], scc, changed);
+        }
+
+        private List<String> decode(ByteBuffer buffer) {
+            int n = buffer.getInt();
+            List<String> result = new ArrayList<>(n);
+            for (int k = 0; k < n; k++) result.add(dictionary[buffer.getInt()]);
+            return result;
+        }
+
+        @Override
+        public void close() throws Exception {
+            channel.close();
+        }
+    }
+}
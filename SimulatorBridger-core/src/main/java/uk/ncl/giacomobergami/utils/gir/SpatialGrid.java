@@ -0,0 +1,211 @@
+/*
+ * SpatialGrid.java
+ * This file is part of RunSimulator
+ *
+ * Copyright (C) 2022 - Giacomo Bergami
+ *
+ * RunSimulator is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * RunSimulator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with RunSimulator. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ncl.giacomobergami.utils.gir;
+
+import java.util.*;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Uniform grid indexing points which are not expected to move, such as the RSUs or the edge devices.
+ * Each point might have its own communication radius: as the cells are as large as the greatest
+ * radius, the points whose radius covers a query point are all in the cells adjacent to its own.
+ * All the queries return the points in the same order of the indexed collection, unless otherwise
+ * stated.
+ *
+ * @param <T>   Indexed points
+ */
+public class SpatialGrid<T extends CartesianPoint> {
+    private final List<T> items;
+    private final double[] squaredRadius;
+    private final double maxRadius;
+    private final double cell;
+    private final HashMap<Long, int[]> cells;
+    private final int minCx, maxCx, minCy, maxCy;
+    private static final SquaredCartesianDistanceFunction f = SquaredCartesianDistanceFunction.getInstance();
+
+    /**
+     * Indexes points with no communication radius, which are only queried by distance
+     */
+    public SpatialGrid(Collection<T> items) {
+        this(items, null);
+    }
+
+    /**
+     * @param items     Points to be indexed
+     * @param radius    Communication radius of each point, or null if the points have none
+     */
+    public SpatialGrid(Collection<T> items, ToDoubleFunction<T> radius) {
+        this.items = new ArrayList<>(items);
+        int n = this.items.size();
+        squaredRadius = new double[n];
+        double maxR = 0.0;
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            var x = this.items.get(i);
+            double r = radius == null ? 0.0 : radius.applyAsDouble(x);
+            squaredRadius[i] = r * r;
+            maxR = Math.max(maxR, r);
+            minX = Math.min(minX, x.getX());
+            maxX = Math.max(maxX, x.getX());
+            minY = Math.min(minY, x.getY());
+            maxY = Math.max(maxY, x.getY());
+        }
+        maxRadius = maxR;
+        if (maxR > 0.0) {
+            cell = maxR;
+        } else {
+            // Without a radius, the cells are sized as to contain one point on average
+            double area = (maxX - minX) * (maxY - minY);
+            double side = n > 0 ? Math.sqrt(area / n) : 0.0;
+            cell = side > 0.0 ? side : Math.max(1.0, Math.max(maxX - minX, maxY - minY));
+        }
+
+        HashMap<Long, List<Integer>> buckets = new HashMap<>();
+        int lx = Integer.MAX_VALUE, ly = Integer.MAX_VALUE, hx = Integer.MIN_VALUE, hy = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            var x = this.items.get(i);
+            int cx = cellOf(x.getX()), cy = cellOf(x.getY());
+            lx = Math.min(lx, cx); hx = Math.max(hx, cx);
+            ly = Math.min(ly, cy); hy = Math.max(hy, cy);
+            buckets.computeIfAbsent(key(cx, cy), k -> new ArrayList<>()).add(i);
+        }
+        minCx = lx; maxCx = hx; minCy = ly; maxCy = hy;
+        cells = new HashMap<>();
+        for (var bucket : buckets.entrySet()) {
+            cells.put(bucket.getKey(), bucket.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    private int cellOf(double coordinate) {
+        return (int) Math.floor(coordinate / cell);
+    }
+
+    private static long key(int cx, int cy) {
+        return (((long) cx) << 32) | (cy & 0xffffffffL);
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * Collects the indices of the points in the cells at most rings cells away from the given one
+     */
+    private void collect(int cx, int cy, int rings, List<Integer> result) {
+        for (int i = Math.max(minCx, cx - rings), I = Math.min(maxCx, cx + rings); i <= I; i++) {
+            for (int j = Math.max(minCy, cy - rings), J = Math.min(maxCy, cy + rings); j <= J; j++) {
+                var bucket = cells.get(key(i, j));
+                if (bucket != null) for (int idx : bucket) result.add(idx);
+            }
+        }
+    }
+
+    private int rings(double distance) {
+        long r = (long) Math.ceil(distance / cell);
+        return (int) Math.min(r, Math.max(maxCx - minCx, maxCy - minCy) + 1L);
+    }
+
+    private List<T> asItems(List<Integer> indices) {
+        indices.sort(Comparator.naturalOrder());
+        List<T> result = new ArrayList<>(indices.size());
+        for (int idx : indices) result.add(items.get(idx));
+        return result;
+    }
+
+    /**
+     * @return  The points whose communication radius covers the given one
+     */
+    public List<T> containing(CartesianPoint p) {
+        if (items.isEmpty()) return new ArrayList<>();
+        List<Integer> candidates = new ArrayList<>();
+        collect(cellOf(p.getX()), cellOf(p.getY()), rings(maxRadius), candidates);
+        candidates.removeIf(idx -> f.getDistance(p, items.get(idx)) > squaredRadius[idx]);
+        return asItems(candidates);
+    }
+
+    /**
+     * Answers {@link #containing(CartesianPoint)} for all the given points in a single pass: the
+     * candidates are collected once for all the points falling in the same cell.
+     */
+    public <Q extends CartesianPoint> Map<Q, List<T>> containingAll(Collection<Q> points) {
+        Map<Q, List<T>> result = new HashMap<>();
+        HashMap<Long, List<Q>> byCell = new HashMap<>();
+        for (var p : points) {
+            byCell.computeIfAbsent(key(cellOf(p.getX()), cellOf(p.getY())), k -> new ArrayList<>()).add(p);
+        }
+        int rings = rings(maxRadius);
+        List<Integer> candidates = new ArrayList<>();
+        for (var group : byCell.values()) {
+            var first = group.get(0);
+            candidates.clear();
+            if (!items.isEmpty()) collect(cellOf(first.getX()), cellOf(first.getY()), rings, candidates);
+            candidates.sort(Comparator.naturalOrder());
+            for (var p : group) {
+                List<T> covering = new ArrayList<>();
+                for (int idx : candidates) {
+                    if (f.getDistance(p, items.get(idx)) <= squaredRadius[idx]) covering.add(items.get(idx));
+                }
+                result.put(p, covering);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return  The points whose squared distance from the given one is at most squaredDistance
+     */
+    public List<T> withinDistance(CartesianPoint p, double squaredDistance) {
+        if (items.isEmpty()) return new ArrayList<>();
+        List<Integer> candidates = new ArrayList<>();
+        collect(cellOf(p.getX()), cellOf(p.getY()), rings(Math.sqrt(squaredDistance)), candidates);
+        candidates.removeIf(idx -> f.getDistance(p, items.get(idx)) > squaredDistance);
+        return asItems(candidates);
+    }
+
+    /**
+     * @return  The k points nearest to the given one, sorted by increasing distance
+     */
+    public List<T> nearest(CartesianPoint p, int k) {
+        List<T> result = new ArrayList<>();
+        if (items.isEmpty() || (k <= 0)) return result;
+        int cx = cellOf(p.getX()), cy = cellOf(p.getY());
+        PriorityQueue<Integer> heap = new PriorityQueue<>(Comparator.comparingDouble((Integer idx) -> f.getDistance(p, items.get(idx))).reversed());
+        int maxRings = Math.max(Math.max(Math.abs(cx - minCx), Math.abs(cx - maxCx)), Math.max(Math.abs(cy - minCy), Math.abs(cy - maxCy)));
+        for (int r = 0; r <= maxRings; r++) {
+            for (int i = cx - r; i <= cx + r; i++) {
+                for (int j = cy - r; j <= cy + r; j++) {
+                    if ((Math.abs(i - cx) != r) && (Math.abs(j - cy) != r)) continue; // only the ring
+                    var bucket = cells.get(key(i, j));
+                    if (bucket == null) continue;
+                    for (int idx : bucket) {
+                        heap.add(idx);
+                        if (heap.size() > k) heap.poll();
+                    }
+                }
+            }
+            // The points in the outer rings are at least r cells away
+            if ((heap.size() == k) && (f.getDistance(p, items.get(heap.peek())) <= (r * cell) * (r * cell))) break;
+        }
+        while (!heap.isEmpty()) result.add(items.get(heap.poll()));
+        Collections.reverse(result);
+        return result;
+    }
+}
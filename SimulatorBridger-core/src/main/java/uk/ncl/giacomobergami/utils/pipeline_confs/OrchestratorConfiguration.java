@@ -29,6 +29,47 @@ public class OrchestratorConfiguration {
         public int reset_max_vehicle_communication;
         public String generateRSUAdjacencyList;
         public String updateRSUFields;
+        public int parallelism = 1;
+        public int tick_parallelism = 1;
+        /**
+         * How the clairvoyant planner combines the solutions at each time: "cartesian" enumerates all of
+         * their combinations, "viterbi" finds the best one by dynamic programming, and "beam" only retains
+         * the beam_width best partial combinations at each time
+         */
+        public String clairvoyance_strategy = "cartesian";
+        public int beam_width = 16;
+
+        public String getClairvoyance_strategy() {
+                return clairvoyance_strategy;
+        }
+
+        public void setClairvoyance_strategy(String clairvoyance_strategy) {
+                this.clairvoyance_strategy = clairvoyance_strategy;
+        }
+
+        public int getBeam_width() {
+                return beam_width;
+        }
+
+        public void setBeam_width(int beam_width) {
+                this.beam_width = beam_width;
+        }
+
+        public int getTick_parallelism() {
+                return tick_parallelism;
+        }
+
+        public void setTick_parallelism(int tick_parallelism) {
+                this.tick_parallelism = tick_parallelism;
+        }
+
+        public int getParallelism() {
+                return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+                this.parallelism = parallelism;
+        }
 
         public String getUpdateRSUFields() {
                 return updateRSUFields;
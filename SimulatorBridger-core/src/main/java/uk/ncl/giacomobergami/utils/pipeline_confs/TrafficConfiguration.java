@@ -6,6 +6,24 @@ public class TrafficConfiguration {
         public String RSUCsvFile;
         public String VehicleCsvFile;
         public long begin, end, step;
+        public int converter_threads;
+        public boolean export_csv = true;
+
+        public boolean isExport_csv() {
+            return export_csv;
+        }
+
+        public void setExport_csv(boolean export_csv) {
+            this.export_csv = export_csv;
+        }
+
+        public int getConverter_threads() {
+            return converter_threads;
+        }
+
+        public void setConverter_threads(int converter_threads) {
+            this.converter_threads = converter_threads;
+        }
 
         public long getBegin() {
             return begin;
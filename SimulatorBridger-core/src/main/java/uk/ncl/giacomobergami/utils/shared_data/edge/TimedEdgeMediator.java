@@ -1,9 +1,22 @@
 package uk.ncl.giacomobergami.utils.shared_data.edge;
 
 import uk.ncl.giacomobergami.utils.data.CSVMediator;
+import uk.ncl.giacomobergami.utils.data.ColumnarTraceMediator;
 
 public class TimedEdgeMediator extends CSVMediator<TimedEdge> {
     public TimedEdgeMediator() {
         super(TimedEdge.class);
     }
+
+    /**
+     * @return The mediator storing the edge nodes in the binary columnar format, one block per tick
+     */
+    public static ColumnarTraceMediator<TimedEdge> trace() {
+        return new ColumnarTraceMediator<>(TimedEdge::new, TimedEdge::getSimtime, TimedEdge::setSimtime)
+                .withStringColumn(TimedEdge::getId, TimedEdge::setId)
+                .withDoubleColumn(TimedEdge::getX, TimedEdge::setX)
+                .withDoubleColumn(TimedEdge::getY, TimedEdge::setY)
+                .withDoubleColumn(TimedEdge::getCommunication_radius, TimedEdge::setCommunication_radius)
+                .withDoubleColumn(TimedEdge::getMax_vehicle_communication, TimedEdge::setMax_vehicle_communication);
+    }
 }
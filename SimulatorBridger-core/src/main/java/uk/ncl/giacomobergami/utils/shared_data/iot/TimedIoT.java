@@ -5,8 +5,18 @@ package uk.ncl.giacomobergami.utils.shared_data.iot;
 
 import uk.ncl.giacomobergami.utils.shared_data.abstracted.TimedObject;
 
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
 
+/**
+ * The state of an IoT device at a given simulation time. When the multiplicity is different from
+ * one, the record is a cohort, standing for as many devices sharing the same state (e.g., all the
+ * vehicles counted by a DfT count point within one hour): the devices are only materialised through
+ * {@link #members()}, and their ids are derived from the one of the cohort via {@link #memberId(String, int)}.
+ */
 public class TimedIoT implements TimedObject<TimedIoT> {
     public String id;
     public double x;
@@ -18,6 +28,7 @@ public class TimedIoT implements TimedObject<TimedIoT> {
     public String lane;
     public double slope;
     public double simtime;
+    public int multiplicity = 1;
 
     public TimedIoT() {
     }
@@ -41,9 +52,63 @@ public class TimedIoT implements TimedObject<TimedIoT> {
         return simtime;
     }
 
+    /**
+     * Creates a cohort of devices sharing the same state. A cohort of one device is just that
+     * device, so that its id is the same that it would have had in a cohort of many.
+     *
+     * @param id            Id of the cohort
+     * @param multiplicity  Number of devices in the cohort
+     * @return The cohort, with all the other fields left to their defaults
+     */
+    public static TimedIoT cohort(String id, int multiplicity) {
+        TimedIoT result = new TimedIoT();
+        result.id = multiplicity == 1 ? memberId(id, 0) : id;
+        result.multiplicity = multiplicity;
+        return result;
+    }
+
+    public static String memberId(String cohortId, int i) {
+        return cohortId + "_" + i;
+    }
+
     @Override
     public TimedIoT copy() {
-        return new TimedIoT(id, x, y, angle, type, speed, pos, lane, slope, simtime);
+        var result = new TimedIoT(id, x, y, angle, type, speed, pos, lane, slope, simtime);
+        result.multiplicity = multiplicity;
+        return result;
+    }
+
+    /**
+     * @return The devices represented by this record: the record itself if it is not a cohort. The
+     * members of a cohort are created on access, and are not cached.
+     */
+    public List<TimedIoT> members() {
+        if (multiplicity == 1) return List.of(this);
+        return new AbstractList<>() {
+            @Override
+            public TimedIoT get(int i) {
+                Objects.checkIndex(i, multiplicity);
+                return new TimedIoT(memberId(id, i), x, y, angle, type, speed, pos, lane, slope, simtime);
+            }
+
+            @Override
+            public int size() {
+                return multiplicity;
+            }
+        };
+    }
+
+    /**
+     * Expands the cohorts into their devices
+     * @param records   Records, possibly containing cohorts
+     * @return The devices, in the same order of the records
+     */
+    public static List<TimedIoT> expand(Collection<TimedIoT> records) {
+        int size = 0;
+        for (var x : records) size += x.multiplicity;
+        List<TimedIoT> result = new ArrayList<>(size);
+        for (var x : records) result.addAll(x.members());
+        return result;
     }
 
     public void setSimtime(double simtime) {
@@ -125,16 +190,24 @@ public class TimedIoT implements TimedObject<TimedIoT> {
         this.slope = slope;
     }
 
+    public int getMultiplicity() {
+        return multiplicity;
+    }
+
+    public void setMultiplicity(int multiplicity) {
+        this.multiplicity = multiplicity;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         TimedIoT vehicle = (TimedIoT) o;
-        return Double.compare(vehicle.x, x) == 0 && Double.compare(vehicle.y, y) == 0 && Double.compare(vehicle.angle, angle) == 0 && Double.compare(vehicle.speed, speed) == 0 && Double.compare(vehicle.pos, pos) == 0 && Double.compare(vehicle.slope, slope) == 0 && Objects.equals(id, vehicle.id) && Objects.equals(type, vehicle.type) && Objects.equals(lane, vehicle.lane);
+        return Double.compare(vehicle.x, x) == 0 && Double.compare(vehicle.y, y) == 0 && Double.compare(vehicle.angle, angle) == 0 && Double.compare(vehicle.speed, speed) == 0 && Double.compare(vehicle.pos, pos) == 0 && Double.compare(vehicle.slope, slope) == 0 && vehicle.multiplicity == multiplicity && Objects.equals(id, vehicle.id) && Objects.equals(type, vehicle.type) && Objects.equals(lane, vehicle.lane);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, x, y, angle, type, speed, pos, lane, slope);
+        return Objects.hash(id, x, y, angle, type, speed, pos, lane, slope, multiplicity);
     }
 }
\ No newline at end of file
@@ -1,9 +1,32 @@
 package uk.ncl.giacomobergami.utils.shared_data.iot;
 
 import uk.ncl.giacomobergami.utils.data.CSVMediator;
+import uk.ncl.giacomobergami.utils.data.ColumnarTraceMediator;
 
+/**
+ * Reads and writes the IoT devices as CSV rows, one row per record: the cohorts are serialised
+ * as they are, with their multiplicity as the last column. The files written before the cohorts
+ * were introduced lack such column, and their rows are read as single devices.
+ */
 public class TimedIoTMediator extends CSVMediator<TimedIoT> {
     public TimedIoTMediator() {
         super(TimedIoT.class);
     }
+
+    /**
+     * @return The mediator storing the IoT devices in the binary columnar format, one block per tick
+     */
+    public static ColumnarTraceMediator<TimedIoT> trace() {
+        return new ColumnarTraceMediator<>(TimedIoT::new, TimedIoT::getSimtime, TimedIoT::setSimtime)
+                .withStringColumn(TimedIoT::getId, TimedIoT::setId)
+                .withStringColumn(TimedIoT::getType, TimedIoT::setType)
+                .withStringColumn(TimedIoT::getLane, TimedIoT::setLane)
+                .withDoubleColumn(TimedIoT::getX, TimedIoT::setX)
+                .withDoubleColumn(TimedIoT::getY, TimedIoT::setY)
+                .withDoubleColumn(TimedIoT::getAngle, TimedIoT::setAngle)
+                .withDoubleColumn(TimedIoT::getSpeed, TimedIoT::setSpeed)
+                .withDoubleColumn(TimedIoT::getPos, TimedIoT::setPos)
+                .withDoubleColumn(TimedIoT::getSlope, TimedIoT::setSlope)
+                .withDoubleColumn(TimedIoT::getMultiplicity, (x, m) -> x.setMultiplicity((int) m));
+    }
 }
@@ -1,12 +1,15 @@
 package uk.ncl.giacomobergami.utils.structures;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.SetMultimap;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import uk.ncl.giacomobergami.utils.algorithms.ClusterDifference;
 import uk.ncl.giacomobergami.utils.algorithms.ReconstructorIterator;
 import uk.ncl.giacomobergami.utils.algorithms.StringComparator;
+import uk.ncl.giacomobergami.utils.data.CSVMediator;
+import uk.ncl.giacomobergami.utils.data.ColumnarTraceMediator;
+import uk.ncl.giacomobergami.utils.data.TimedNetworkTrace;
+import uk.ncl.giacomobergami.utils.gir.CartesianPoint;
+import uk.ncl.giacomobergami.utils.gir.SpatialGrid;
 import uk.ncl.giacomobergami.utils.shared_data.edge.Edge;
 import uk.ncl.giacomobergami.utils.shared_data.edge.TimedEdge;
 import uk.ncl.giacomobergami.utils.shared_data.edge.TimedEdgeMediator;
@@ -17,11 +20,29 @@ import java.util.*;
 
 public class ReconstructNetworkInformation implements Iterator<ReconstructNetworkInformation.TimedNetwork> {
 
-    private final TreeMap<Double, List<List<String>>> timed_scc;
-    Iterator<Map.Entry<Double, List<List<String>>>> timed_scc_iterator;
+    /** The SCCs and the adjacency changes of each tick, read one tick at a time */
+    private final Iterator<TimedNetworkTrace.Tick> timed_network_iterator;
+    private final AutoCloseable source;
+    /** The states of the RSUs, read one tick at a time */
+    private final RSUStates states;
+    /** The states of each RSU at the ticks being read so far */
     HashMap<String, Edge> edgeNodeForReconstruction;
-    HashMap<String, ReconstructorIterator<Double, String>> reconstructorIteratorHashMap;
+    /** The RSUs whose neighbours are reconstructed at each tick */
+    private final List<String> holders;
+    /** The neighbours of each RSU at the current tick */
+    private final HashMap<String, List<String>> adjacency;
 
+    /** Each RSU id in the network is interned once to an int, being its index in rsuIds */
+    private final HashMap<String, Integer> rsuIndex;
+    private final String[] rsuIds;
+    /** The first state of each RSU, indexed by its interned id, giving its position in rsuGrid */
+    private final TimedEdge[] located;
+    /** Index of the RSUs by position, only rebuilt when an RSU appears for the first time */
+    private SpatialGrid<TimedEdge> rsuGrid;
+
+    /**
+     * @return  The states of each RSU at the ticks being read so far: all of them, once the iteration is over
+     */
     public HashMap<String, Edge> getEdgeNodeForReconstruction() {
         return edgeNodeForReconstruction;
     }
@@ -29,12 +50,22 @@ public class ReconstructNetworkInformation implements Iterator<ReconstructNetwor
         this.edgeNodeForReconstruction = edgeNodeForReconstruction;
     }
 
+    /**
+     * Reads the network lazily from the trace written by the traffic converter
+     */
+    public static ReconstructNetworkInformation fromTrace(File networkTrace,
+                                                          File rsucsv) {
+        var reader = TimedNetworkTrace.beginRead(networkTrace);
+        if (reader == null) {
+            System.exit(1);
+        }
+        return new ReconstructNetworkInformation(reader, readEdges(rsucsv));
+    }
+
     public static ReconstructNetworkInformation fromFiles(File timedscc,
                                                           File neighdelta,
                                                           File rsucsv) {
 
-        TimedEdgeMediator rsum;
-        rsum = new TimedEdgeMediator();
         Gson gson = new Gson();
         Type sccType = new TypeToken<TreeMap<Double, List<List<String>>>>() {}.getType();
         Type networkType = new TypeToken<HashMap<String, ImmutablePair<ImmutablePair<Double, List<String>>, List<ClusterDifference<String>>>>>() {}.getType();
@@ -56,85 +87,317 @@ public class ReconstructNetworkInformation implements Iterator<ReconstructNetwor
             e.printStackTrace();
             System.exit(1);
         }
-        var reader3 = rsum.beginCSVRead(rsucsv);
-        HashMap<String, Edge> finalLS = new HashMap<>();
-        {
-            HashMap<String, HashMap<Double, TimedEdge>> ls = new HashMap<>();
-            while (reader3.hasNext()) {
-                var curr = reader3.next();
-                ls.computeIfAbsent(curr.id, s -> new HashMap<>()).put(curr.simtime, curr);
-            }
-            try {
-                reader3.close();
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-            for (var x : ls.entrySet()) {
-                finalLS.put(x.getKey(), new Edge(x.getValue(), null));
-            }
-        }
         return new ReconstructNetworkInformation(adjacencyListVariationInTime,
                 timed_scc,
-                finalLS);
+                readEdges(rsucsv));
+    }
+
+    /**
+     * Opens the states of the RSUs, preferring the columnar trace to the CSV file
+     */
+    private static RSUStates readEdges(File rsucsv) {
+        var trace = ColumnarTraceMediator.hasTrace(rsucsv) ?
+                TimedEdgeMediator.trace().beginRead(ColumnarTraceMediator.traceOf(rsucsv)) : null;
+        if (trace != null)
+            return new RSUStates() {
+                @Override
+                List<TimedEdge> at(double tick) {
+                    return trace.readTick(tick);
+                }
+
+                @Override
+                public void close() throws Exception {
+                    trace.close();
+                }
+            };
+        var reader = new TimedEdgeMediator().beginCSVRead(rsucsv);
+        if (reader == null) {
+            System.exit(1);
+        }
+        return new SequentialRSUStates(reader);
+    }
+
+    /**
+     * The states of the RSUs, being read by increasing tick
+     */
+    private static abstract class RSUStates implements AutoCloseable {
+        /**
+         * @return  The states of the RSUs at the tick, which should be greater than the one previously read
+         */
+        abstract List<TimedEdge> at(double tick);
+
+        @Override
+        public void close() throws Exception {}
+    }
+
+    /**
+     * Reads the RSU states from the rows of a CSV file, which the traffic converter writes by increasing tick
+     */
+    private static class SequentialRSUStates extends RSUStates {
+        private final CSVMediator<TimedEdge>.CSVReader reader;
+        /** The first row of the following tick, if already read */
+        private TimedEdge next;
+
+        SequentialRSUStates(CSVMediator<TimedEdge>.CSVReader reader) {
+            this.reader = reader;
+            this.next = null;
+        }
+
+        @Override
+        List<TimedEdge> at(double tick) {
+            List<TimedEdge> result = new ArrayList<>();
+            while ((next != null) || reader.hasNext()) {
+                if (next == null) next = reader.next();
+                if (next.simtime > tick) break;
+                if (next.simtime == tick) result.add(next);
+                next = null;
+            }
+            return result;
+        }
+
+        @Override
+        public void close() throws Exception {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads the RSU states from the ones already loaded in memory
+     */
+    private static RSUStates inMemory(HashMap<String, Edge> edgeNodeForReconstruction) {
+        return new RSUStates() {
+            @Override
+            List<TimedEdge> at(double tick) {
+                List<TimedEdge> result = new ArrayList<>();
+                for (var edge : edgeNodeForReconstruction.values()) {
+                    var state = edge.dynamicInformation.get(tick);
+                    if (state != null) result.add(state);
+                }
+                return result;
+            }
+        };
     }
 
     public static class TimedNetwork {
         public StraightforwardAdjacencyList<TimedEdge> network;
         public ArrayList<TimedEdge> tls;
         public HashMap<String, TimedEdge> rsuProgramHashMap;
-        public SetMultimap<TimedEdge, TimedEdge> edgeToSCC;
+        /** The members of each SCC, being the SCC label their index */
+        public List<List<TimedEdge>> sccs;
+        /** The SCC label of each RSU, indexed by its interned id, or -1 if it belongs to no SCC */
+        public int[] sccOf;
+        HashMap<String, Integer> rsuIndex;
+        /** Index of the RSUs by position, shared by the ticks as the RSUs do not move */
+        SpatialGrid<TimedEdge> rsuGrid;
+        /** The RSUs in tls, indexed by their interned id */
+        TimedEdge[] available;
+
+        /**
+         * Answers the communication range queries on the grid shared by the ticks, while returning the
+         * RSUs of this tick, in the order of their interned ids
+         * @return  For each point, the RSUs in tls whose communication radius covers it
+         */
+        public <Q extends CartesianPoint> Map<Q, List<TimedEdge>> coveringRSUs(Collection<Q> points) {
+            var coverage = rsuGrid.containingAll(points);
+            for (var x : coverage.entrySet()) {
+                List<TimedEdge> covering = new ArrayList<>(x.getValue().size());
+                for (var rsu : x.getValue()) {
+                    var current = available[rsuIndex.get(rsu.id)];
+                    if (current != null) covering.add(current);
+                }
+                x.setValue(covering);
+            }
+            return coverage;
+        }
+
+        /**
+         * @return  The label of the SCC containing the RSU, or -1 if it belongs to none
+         */
+        public int sccLabel(TimedEdge rsu) {
+            var idx = rsuIndex.get(rsu.id);
+            return idx == null ? -1 : sccOf[idx];
+        }
+
+        /**
+         * @return  All the RSUs being in the same SCC of the given one, including it
+         */
+        public List<TimedEdge> scc(TimedEdge rsu) {
+            int label = sccLabel(rsu);
+            return label == -1 ? Collections.emptyList() : sccs.get(label);
+        }
     }
 
     public ReconstructNetworkInformation(HashMap<String, ImmutablePair<ImmutablePair<Double, List<String>>, List<ClusterDifference<String>>>> adjacencyListVariationInTime,
                                          TreeMap<Double, List<List<String>>> timed_scc,
                                          HashMap<String, Edge> edgeNodeForReconstruction) {
-        this.timed_scc = timed_scc;
-        this.timed_scc_iterator = this.timed_scc.entrySet().iterator();
+        this(adjacencyListVariationInTime, timed_scc, inMemory(edgeNodeForReconstruction));
         this.edgeNodeForReconstruction = edgeNodeForReconstruction;
-        this.reconstructorIteratorHashMap = new HashMap<>();
+    }
+
+    private ReconstructNetworkInformation(HashMap<String, ImmutablePair<ImmutablePair<Double, List<String>>, List<ClusterDifference<String>>>> adjacencyListVariationInTime,
+                                          TreeMap<Double, List<List<String>>> timed_scc,
+                                          RSUStates states) {
+        this.source = null;
+        this.states = states;
+        this.holders = new ArrayList<>(adjacencyListVariationInTime.keySet());
+        // Reconstructing the neighbours of all the RSUs at each tick from their changes
+        HashMap<String, ReconstructorIterator<Double, String>> reconstructorIteratorHashMap = new HashMap<>();
         for (var x : adjacencyListVariationInTime.entrySet()) {
             reconstructorIteratorHashMap.put(x.getKey(), new ReconstructorIterator<>(x.getValue(), StringComparator.getInstance()));
         }
+        var timed_scc_iterator = timed_scc.entrySet().iterator();
+        this.timed_network_iterator = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return timed_scc_iterator.hasNext();
+            }
+
+            @Override
+            public TimedNetworkTrace.Tick next() {
+                var cp = timed_scc_iterator.next();
+                HashMap<String, List<String>> changed = new HashMap<>();
+                for (var cp2 : reconstructorIteratorHashMap.entrySet()) {
+                    changed.put(cp2.getKey(), cp2.getValue().next());
+                }
+                return new TimedNetworkTrace.Tick(cp.getKey(), cp.getValue(), changed);
+            }
+        };
+        this.adjacency = new HashMap<>();
+        this.edgeNodeForReconstruction = new HashMap<>();
+        Set<String> rsus = new LinkedHashSet<>(holders);
+        for (var sccs : timed_scc.values())
+            for (var scc : sccs)
+                rsus.addAll(scc);
+        this.rsuIds = rsus.toArray(new String[0]);
+        this.rsuIndex = intern(rsuIds);
+        this.located = new TimedEdge[rsuIds.length];
+    }
+
+    /**
+     * Reads the network lazily from the trace, which is closed once all of its ticks are read
+     */
+    public ReconstructNetworkInformation(TimedNetworkTrace.Reader trace,
+                                         HashMap<String, Edge> edgeNodeForReconstruction) {
+        this(trace, inMemory(edgeNodeForReconstruction));
+        this.edgeNodeForReconstruction = edgeNodeForReconstruction;
+    }
+
+    private ReconstructNetworkInformation(TimedNetworkTrace.Reader trace,
+                                          RSUStates states) {
+        this.source = trace;
+        this.states = states;
+        this.holders = trace.getRSUs();
+        this.timed_network_iterator = trace;
+        this.adjacency = new HashMap<>();
+        this.edgeNodeForReconstruction = new HashMap<>();
+        this.rsuIds = holders.toArray(new String[0]);
+        this.rsuIndex = intern(rsuIds);
+        this.located = new TimedEdge[rsuIds.length];
+    }
+
+    private static HashMap<String, Integer> intern(String[] rsuIds) {
+        HashMap<String, Integer> rsuIndex = new HashMap<>();
+        for (int i = 0; i < rsuIds.length; i++) rsuIndex.put(rsuIds[i], i);
+        return rsuIndex;
     }
 
 
     @Override
     public boolean hasNext() {
-        return timed_scc_iterator.hasNext();
+        if (timed_network_iterator.hasNext()) return true;
+        for (var closeable : new AutoCloseable[]{source, states}) {
+            if (closeable == null) continue;
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        return false;
     }
 
+    /**
+     * @return  The state of the RSU at the tick, if such tick was already read
+     */
     public TimedEdge reconstructTimeEdge(String edgeId, double tick) {
-        return edgeNodeForReconstruction.get(edgeId).dynamicInformation.get(tick);
+        var edge = edgeNodeForReconstruction.get(edgeId);
+        return edge == null ? null : edge.dynamicInformation.get(tick);
+    }
+
+    /**
+     * @return  The state of the RSU appearing in the network at the given tick
+     */
+    private TimedEdge stateOf(TimedEdge[] row, String id, double tick) {
+        Integer rsu = rsuIndex.get(id);
+        if ((rsu == null) || (row[rsu] == null)) {
+            throw new IllegalStateException("ERROR: the RSU " + id + " appearing in the network at tick " + tick + " has no state in the RSU file");
+        }
+        return row[rsu];
     }
 
     @Override
     public TimedNetwork next() {
-        var cp = timed_scc_iterator.next();
-        var tick = cp.getKey();
+        var cp = timed_network_iterator.next();
+        // Only the states of the current tick are resolved, while being recorded for the RSU programs
+        var row = new TimedEdge[rsuIds.length];
+        boolean relocate = rsuGrid == null;
+        for (var state : states.at(cp.tick)) {
+            var rsu = rsuIndex.get(state.id);
+            if (rsu != null) {
+                row[rsu] = state;
+                if (located[rsu] == null) {
+                    located[rsu] = state;
+                    relocate = true;
+                }
+            }
+            edgeNodeForReconstruction.computeIfAbsent(state.id, s -> new Edge(new HashMap<>(), null))
+                    .dynamicInformation.put(cp.tick, state);
+        }
+        if (relocate) {
+            // Indexing each RSU at its first known position, as the RSUs do not move across the ticks
+            List<TimedEdge> positions = new ArrayList<>();
+            for (var x : located) if (x != null) positions.add(x);
+            rsuGrid = new SpatialGrid<>(positions, x -> x.communication_radius);
+        }
+        for (var changed : cp.changedAdjacency.entrySet()) {
+            if (changed.getValue().isEmpty())
+                adjacency.remove(changed.getKey());
+            else
+                adjacency.put(changed.getKey(), changed.getValue());
+        }
         var result = new TimedNetwork();
         var rsuses = new HashSet<TimedEdge>();
 
-        // Getting the SCCs
+        // Getting the SCCs, as a label per RSU
+        result.rsuIndex = rsuIndex;
         result.rsuProgramHashMap = new HashMap<>();
-        result.edgeToSCC = HashMultimap.create();
-        for (var scc : cp.getValue()) {
+        result.sccs = new ArrayList<>(cp.scc.size());
+        result.sccOf = new int[rsuIds.length];
+        Arrays.fill(result.sccOf, -1);
+        for (var scc : cp.scc) {
+            int label = result.sccs.size();
+            List<TimedEdge> members = new ArrayList<>(scc.size());
             for (String id : scc) {
-                var dst1 = result.rsuProgramHashMap.computeIfAbsent(id, s -> reconstructTimeEdge(s, tick));
-                for (String id2 : scc) {
-                    var dst2 = result.rsuProgramHashMap.computeIfAbsent(id2, s -> reconstructTimeEdge(s, tick));
-                    result.edgeToSCC.put(dst1, dst2);
-                }
+                var state = stateOf(row, id, cp.tick);
+                int rsu = rsuIndex.get(id);
+                if (result.sccOf[rsu] != -1) continue;
+                result.sccOf[rsu] = label;
+                members.add(state);
+                result.rsuProgramHashMap.put(id, state);
             }
+            result.sccs.add(members);
         }
 
         // Reconstructing the network
         result.network = new StraightforwardAdjacencyList<>();
-        for (var cp2 : reconstructorIteratorHashMap.entrySet()) {
-            var rsu = cp2.getKey();
-            TimedEdge src = reconstructTimeEdge(rsu, tick);
+        for (var rsu : holders) {
+            var neighbours = adjacency.getOrDefault(rsu, Collections.emptyList());
+            // Skipping the RSUs not being at this tick
+            if (neighbours.isEmpty() && (row[rsuIndex.get(rsu)] == null)) continue;
+            TimedEdge src = stateOf(row, rsu, cp.tick);
             rsuses.add(src);
-            for (var dstIdStr : cp2.getValue().next()) {
-                TimedEdge dst = reconstructTimeEdge(dstIdStr, tick);
+            for (var dstIdStr : neighbours) {
+                TimedEdge dst = stateOf(row, dstIdStr, cp.tick);
                 result.network.put(src, dst);
                 rsuses.add(dst);
             }
@@ -142,6 +405,9 @@ public class ReconstructNetworkInformation implements Iterator<ReconstructNetwor
 
         // Reconstructing the set of available edges.
         result.tls = new ArrayList<>(rsuses);
+        result.rsuGrid = rsuGrid;
+        result.available = new TimedEdge[rsuIds.length];
+        for (var rsu : result.tls) result.available[rsuIndex.get(rsu.id)] = rsu;
 
         return result;
     }
@@ -1,25 +1,25 @@
 package uk.ncl.giacomobergami.traffic_converter.abstracted;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import uk.ncl.giacomobergami.utils.algorithms.ClusterDifference;
-import uk.ncl.giacomobergami.utils.algorithms.StringComparator;
 import uk.ncl.giacomobergami.utils.algorithms.Tarjan;
 import uk.ncl.giacomobergami.utils.data.CSVMediator;
+import uk.ncl.giacomobergami.utils.data.ColumnarTraceMediator;
+import uk.ncl.giacomobergami.utils.data.TimedNetworkTrace;
 import uk.ncl.giacomobergami.utils.pipeline_confs.TrafficConfiguration;
 import uk.ncl.giacomobergami.utils.shared_data.edge.TimedEdge;
 import uk.ncl.giacomobergami.utils.shared_data.edge.TimedEdgeMediator;
 import uk.ncl.giacomobergami.utils.shared_data.iot.TimedIoT;
 import uk.ncl.giacomobergami.utils.shared_data.iot.TimedIoTMediator;
-import uk.ncl.giacomobergami.utils.structures.ImmutablePair;
 import uk.ncl.giacomobergami.utils.structures.StraightforwardAdjacencyList;
 
 import java.io.*;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 public abstract class TrafficConverter {
@@ -27,12 +27,17 @@ public abstract class TrafficConverter {
     private final String RSUCsvFile;
     public final String vehicleCSVFile;
     private final TrafficConfiguration conf;
-    private final Gson gson;
     protected TimedEdgeMediator rsum;
     protected TimedIoTMediator vehm;
     protected CSVMediator<TimedEdge>.CSVWriter rsuwrite;
     protected CSVMediator<TimedIoT>.CSVWriter vehwrite;
+    protected ColumnarTraceMediator<TimedEdge> rsut;
+    protected ColumnarTraceMediator<TimedIoT> veht;
+    protected ColumnarTraceMediator<TimedEdge>.TraceWriter rsutrace;
+    protected ColumnarTraceMediator<TimedIoT>.TraceWriter vehtrace;
     private static Logger logger = LogManager.getRootLogger();
+    private static final int WRITER_QUEUE_CAPACITY = 8192;
+    private static final int PENDING_TICKS_PER_THREAD = 4;
 
     public TrafficConverter(TrafficConfiguration conf) {
         logger.info("=== TRAFFIC CONVERTER ===");
@@ -44,16 +49,40 @@ public abstract class TrafficConverter {
         rsuwrite = null;
         vehm = new TimedIoTMediator();
         vehwrite = null;
-        gson = new GsonBuilder().setPrettyPrinting().create();
+        rsut = TimedEdgeMediator.trace();
+        rsutrace = null;
+        veht = TimedIoTMediator.trace();
+        vehtrace = null;
     }
 
     protected abstract boolean initReadSimulatorOutput();
     protected abstract List<Double> getSimulationTimeUnits();
     protected abstract Collection<TimedIoT> getTimedIoT(Double tick);
+    /**
+     * The network is read concurrently, while the following ticks are read: it should not be
+     * changed after being returned (e.g., a fresh network per tick, or always the same one).
+     */
     protected abstract StraightforwardAdjacencyList<String> getTimedEdgeNetwork(Double tick);
     protected abstract HashSet<TimedEdge> getTimedEdgeNodes(Double tick);
     protected abstract void endReadSimulatorOutput();
 
+    /**
+     * Visits the simulation ticks in increasing order, together with the IoT devices at each tick.
+     * The default implementation relies on the data loaded by {@link #initReadSimulatorOutput()};
+     * converters reading large traces override it to stream the ticks, one at a time.
+     *
+     * @param consumer  Receiving each tick and its IoT devices
+     * @return Whether the simulator output was successfully read
+     */
+    protected boolean forEachTick(BiConsumer<Double, Collection<TimedIoT>> consumer) {
+        List<Double> timeUnits = getSimulationTimeUnits();
+        Collections.sort(timeUnits);
+        for (Double tick : timeUnits) {
+            consumer.accept(tick, getTimedIoT(tick));
+        }
+        return true;
+    }
+
     public boolean run() {
         logger.trace("TRAFFIC CONVERTER: running the simulator as per configuration: " +conf.YAMLConverterConfiguration);
         runSimulator(conf);
@@ -63,85 +92,163 @@ public abstract class TrafficConverter {
         } else {
             logger.trace("Collecting the data from the simulator output");
         }
-        List<Double> timeUnits = getSimulationTimeUnits();
-        Collections.sort(timeUnits);
-        TreeMap<Double, List<List<String>>> sccPerTimeComponent = new TreeMap<>();
-        TreeMap<Double, Map<String, List<String>>> timedNodeAdjacency = new TreeMap<>();
-        HashSet<String> allTlsS = new HashSet<>();
-        for (Double tick : timeUnits) {
-            // Writing IoT Devices
-            getTimedIoT(tick).forEach(this::writeTimedIoT);
-
-            // Getting all of the IoT Devices
-            HashSet<TimedEdge> allEdgeNodes = getTimedEdgeNodes(tick);
-            allEdgeNodes.forEach(x -> {
-                allTlsS.add(x.getId());
-                writeTimedEdge(x);
-            });
-            StraightforwardAdjacencyList<String> network = getTimedEdgeNetwork(tick);
-
-            var scc = new Tarjan<String>().run(network, allEdgeNodes.stream().map(TimedEdge::getId).toList());
-            sccPerTimeComponent.put(tick, scc);
-            timedNodeAdjacency.put(tick, network.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey, x->new ArrayList<>(x.getValue()))));
+        // The network of each tick is appended to the trace as soon as it is computed
+        var networkTrace = TimedNetworkTrace.beginWrite(TimedNetworkTrace.traceOf(new File(conf.RSUCsvFile)));
+        if (networkTrace == null) {
+            endReadSimulatorOutput();
+            return false;
         }
 
-        logger.trace("Dumping the last results...");
-        HashMap<String, ImmutablePair<ImmutablePair<Double, List<String>>, List<ClusterDifference<String>>>> delta_network_neighbours = ClusterDifference.computeTemporalDifference(timedNodeAdjacency, allTlsS, StringComparator.getInstance());
+        // Pipeline: the ticks are read by this thread, their SCCs and adjacency are computed by the
+        // pool, and the CSV rows are serialised by the writers' threads in the order of the ticks
+        int nThreads = conf.converter_threads > 0 ? conf.converter_threads : Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(nThreads);
+        ArrayDeque<Future<TickNetwork>> pending = new ArrayDeque<>();
+        // Each worker reuses its SCC algorithm, which also skips the ticks whose network is unchanged
+        ThreadLocal<Tarjan<String>> tarjan = ThreadLocal.withInitial(() -> new Tarjan<>(true));
+        boolean read = false, traced = false, written;
         try {
-            Files.writeString(Paths.get(new File(conf.RSUCsvFile+"_"+"neighboursChange.json").getAbsolutePath()), gson.toJson(delta_network_neighbours));
-        } catch (IOException e) {
-            e.printStackTrace();
+            read = forEachTick((tick, timedIoTs) -> {
+                // Writing IoT Devices
+                for (TimedIoT x : timedIoTs) {
+                    if (!writeTimedIoT(x)) {
+                        throw new IllegalStateException("Error while writing the IoT devices at tick " + tick);
+                    }
+                }
+
+                // Getting all of the IoT Devices
+                HashSet<TimedEdge> allEdgeNodes = getTimedEdgeNodes(tick);
+                List<String> edgeIds = new ArrayList<>(allEdgeNodes.size());
+                for (TimedEdge x : allEdgeNodes) {
+                    edgeIds.add(x.getId());
+                    if (!writeTimedEdge(x)) {
+                        throw new IllegalStateException("Error while writing the RSUs at tick " + tick);
+                    }
+                }
+                StraightforwardAdjacencyList<String> network = getTimedEdgeNetwork(tick);
+
+                pending.add(pool.submit(() -> new TickNetwork(tick,
+                        edgeIds,
+                        tarjan.get().run(network, edgeIds),
+                        network.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey, x->new ArrayList<>(x.getValue()))))));
+                // Bounding the number of ticks being processed
+                while (pending.size() > PENDING_TICKS_PER_THREAD * nThreads) {
+                    collect(pending.poll(), networkTrace);
+                }
+            });
+            while (!pending.isEmpty()) {
+                collect(pending.poll(), networkTrace);
+            }
+            traced = true;
+        } catch (IllegalStateException e) {
+            logger.error(e.getMessage(), e);
+        } finally {
+            pool.shutdownNow();
+            // The writers report here the rows which could not be serialised asynchronously
+            written = closeWritingTimedIoT() & closeWritingTimedEdge();
+            endReadSimulatorOutput();
+            if (read && traced && written) {
+                // Closing the trace writes its dictionary and time index: this happens last, so
+                // that the trace is not older than the RSU file
+                traced = close(networkTrace);
+            } else {
+                // A partial trace would otherwise be read as a complete one
+                networkTrace.abort();
+            }
+        }
+        if (!read || !traced) {
+            logger.error("Error while reading the simulator output");
             return false;
         }
-        try {
-            Files.writeString(Paths.get(new File(conf.RSUCsvFile+"_"+"timed_scc.json").getAbsolutePath()), gson.toJson(sccPerTimeComponent));
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (!written) {
+            logger.error("Error while writing the converted simulator output");
             return false;
         }
+
         logger.trace("quitting...");
-        closeWritingTimedIoT();
-        closeWritingTimedEdge();
-        endReadSimulatorOutput();
         logger.info("=========================");
         return true;
     }
 
 
 
+    private static class TickNetwork {
+        final Double tick;
+        final List<String> nodes;
+        final List<List<String>> scc;
+        final Map<String, List<String>> adjacency;
+
+        TickNetwork(Double tick, List<String> nodes, List<List<String>> scc, Map<String, List<String>> adjacency) {
+            this.tick = tick;
+            this.nodes = nodes;
+            this.scc = scc;
+            this.adjacency = adjacency;
+        }
+    }
+
+    private static void collect(Future<TickNetwork> result,
+                                TimedNetworkTrace.Writer networkTrace) {
+        TickNetwork network;
+        try {
+            network = result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while computing the RSU network", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error while computing the RSU network", e.getCause());
+        }
+        if (!networkTrace.write(network.tick, network.nodes, network.scc, network.adjacency)) {
+            throw new IllegalStateException("Error while writing the RSU network at tick " + network.tick);
+        }
+    }
+
     protected boolean writeTimedEdge(TimedEdge object) {
+        if (rsutrace == null) {
+            rsutrace = rsut.beginWrite(ColumnarTraceMediator.traceOf(new File(RSUCsvFile)));
+            if (rsutrace == null) return false;
+        }
+        if (!rsutrace.write(object)) return false;
+        if (!conf.export_csv) return true;
         if (rsuwrite == null) {
-            rsuwrite = rsum.beginCSVWrite(new File(RSUCsvFile));
+            rsuwrite = rsum.beginAsyncCSVWrite(new File(RSUCsvFile), WRITER_QUEUE_CAPACITY);
             if (rsuwrite == null) return false;
         }
         return rsuwrite.write(object);
     }
 
     protected boolean closeWritingTimedEdge() {
-        if (rsuwrite != null) {
-            try {
-                rsuwrite.close();
-                return true;
-            } catch (Exception e) {
-                e.printStackTrace();
-                return false;
-            }
-        }
-        return true;
+        // The trace is closed last, so not to be older than the CSV file
+        boolean result = close(rsuwrite) & close(rsutrace);
+        rsuwrite = null;
+        rsutrace = null;
+        return result;
     }
 
     protected boolean writeTimedIoT(TimedIoT object) {
+        if (vehtrace == null) {
+            vehtrace = veht.beginWrite(ColumnarTraceMediator.traceOf(new File(vehicleCSVFile)));
+            if (vehtrace == null) return false;
+        }
+        if (!vehtrace.write(object)) return false;
+        if (!conf.export_csv) return true;
         if (vehwrite == null) {
-            vehwrite = vehm.beginCSVWrite(new File(vehicleCSVFile));
+            vehwrite = vehm.beginAsyncCSVWrite(new File(vehicleCSVFile), WRITER_QUEUE_CAPACITY);
             if (vehwrite == null) return false;
         }
         return vehwrite.write(object);
     }
 
     protected boolean closeWritingTimedIoT() {
-        if (vehwrite != null) {
+        boolean result = close(vehwrite) & close(vehtrace);
+        vehwrite = null;
+        vehtrace = null;
+        return result;
+    }
+
+    private static boolean close(AutoCloseable writer) {
+        if (writer != null) {
             try {
-                vehwrite.close();
+                writer.close();
                 return true;
             } catch (Exception e) {
                 e.printStackTrace();
@@ -8,6 +8,7 @@ import uk.ncl.giacomobergami.traffic_converter.TrafficConverterRunner;
 import uk.ncl.giacomobergami.traffic_converter.abstracted.TrafficConverter;
 import uk.ncl.giacomobergami.traffic_orchestrator.PreSimulatorEstimator;
 import uk.ncl.giacomobergami.traffic_orchestrator.CentralAgentPlannerRunner;
+import uk.ncl.giacomobergami.utils.data.TimedNetworkTrace;
 import uk.ncl.giacomobergami.utils.data.YAML;
 import uk.ncl.giacomobergami.utils.pipeline_confs.OrchestratorConfiguration;
 import uk.ncl.giacomobergami.utils.pipeline_confs.TrafficConfiguration;
@@ -84,8 +85,9 @@ public class MainExample {
                 var configuration_file = new File(finalSimulator_runner).getAbsoluteFile();
                 var conf3 = YAML.parse(EnsembleConfigurations.Configuration.class, configuration_file).orElseThrow();
                 conf3.converter_yaml = converter_file.getAbsolutePath();
-                conf3.strongly_connected_components = new File(output_folder_1, converter_out_RSUCsvFile+"_timed_scc.json").getAbsolutePath();
-                conf3.edge_neighbours = new File(output_folder_1, converter_out_RSUCsvFile+"_neighboursChange.json").getAbsolutePath();
+                // The network trace provides both the SCCs and the neighbours of the edge nodes
+                conf3.strongly_connected_components = TimedNetworkTrace.traceOf(new File(output_folder_1, converter_out_RSUCsvFile)).getAbsolutePath();
+                conf3.edge_neighbours = conf3.strongly_connected_components;
                 conf3.iots = x.vehiclejsonFile;
                 conf3.edge_information = x.RSUJsonFile;
                 conf3.reset_rsu_communication_radius = x.reset_rsu_communication_radius;
@@ -10,7 +10,7 @@ import uk.ncl.giacomobergami.SumoOsmosisBridger.meap.messages.PayloadForIoTAgent
 import uk.ncl.giacomobergami.SumoOsmosisBridger.meap.messages.PayloadFromIoTAgent;
 import uk.ncl.giacomobergami.components.iot.IoTDevice;
 import uk.ncl.giacomobergami.components.sdn_routing.MaximumFlowRoutingPolicy;
-import uk.ncl.giacomobergami.traffic_orchestrator.solver.MinCostMaxFlow;
+import uk.ncl.giacomobergami.traffic_orchestrator.solver.SparseMinCostMaxFlow;
 import uk.ncl.giacomobergami.utils.gir.CartesianPoint;
 import uk.ncl.giacomobergami.utils.gir.SquaredCartesianDistanceFunction;
 import uk.ncl.giacomobergami.utils.structures.ImmutablePair;
@@ -163,18 +163,13 @@ public class AbstractNetworkAgent extends AbstractAgent {
                 }
 
                 int N = id_generator.get();
-                var graph = MinCostMaxFlow.createGraph(N);
-                int cost[][] = new int[N][N];
-                for (var array: cost) Arrays.fill(array, 0);
-                int cap[][] = new int[N][N];
-                for (var array: cap) Arrays.fill(array, 0);
+                var graph = SparseMinCostMaxFlow.builder(N);
 
                 // After counting how many nodes are there, now we can actually create the network!
                 for (var cp : payloadMap.asMap().entrySet()) {
                     var iot = iot_prefix+cp.getKey();
                     var iot_id = name_to_id.get(iot);
-                    cost[bogusSrc][iot_id] = 1;
-                    cap[bogusSrc][iot_id] = 1;
+                    graph.setArc(bogusSrc, iot_id, 1, 1);
                     for (var msgPayload : cp.getValue()) {
                         for (var edgeCandidate : msgPayload.candidates) {
                             var edgeDataCenter = edgeCandidate.getLeft();
@@ -188,10 +183,8 @@ public class AbstractNetworkAgent extends AbstractAgent {
                                 throw new RuntimeException(doppelGangerName);
                             if (!Objects.equals(id_to_name.get(edgeId),edgeName))
                                 throw new RuntimeException(name_to_id.get(edgeId)+" for "+edgeId+" != "+edgeName);
-                            cost[iot_id][edgeId-1] = (int)Math.round(Math.sqrt(f.getDistance(devices.get(cp.getKey()),  edgeNode.location)) * 100.0);
-                            cap[iot_id][edgeId-1] = 1;
-                            cost[edgeId-1][edgeId] = 1;
-                            cap[edgeId-1][edgeId] = (int)edgeNode.max_vehicle_communication;
+                            graph.setArc(iot_id, edgeId-1, 1, (int)Math.round(Math.sqrt(f.getDistance(devices.get(cp.getKey()),  edgeNode.location)) * 100.0));
+                            graph.setArc(edgeId-1, edgeId, (int)edgeNode.max_vehicle_communication, 1);
                         }
                     }
 
@@ -218,25 +211,24 @@ public class AbstractNetworkAgent extends AbstractAgent {
                             var dstHost = dst.getVal2().getHost();
                             if (!(dstHost instanceof EdgeDevice))
                                 throw new RuntimeException("ERROR on dst host: this supports only edge hotsts! "+ dstHost);
-                            cap[srcId][dstId] = Math.min((int)((EdgeDevice)srcHost).max_vehicle_communication,
-                                                          (int)((EdgeDevice)dstHost).max_vehicle_communication);
-                            cost[srcId][dstId] = (int)Math.round(Math.sqrt(f.getDistance(((EdgeDevice)srcHost),((EdgeDevice)dstHost))) * 100.0);
+                            graph.setArc(srcId, dstId,
+                                         Math.min((int)((EdgeDevice)srcHost).max_vehicle_communication,
+                                                  (int)((EdgeDevice)dstHost).max_vehicle_communication),
+                                         (int)Math.round(Math.sqrt(f.getDistance(((EdgeDevice)srcHost),((EdgeDevice)dstHost))) * 100.0));
                         } else {
-                            cap[srcId][dstId] = niot;
-                            cost[srcId][dstId] = 1;
+                            graph.setArc(srcId, dstId, niot, 1);
                         }
                     }
                     var gateway = actualNetwork.getGateway().getName()+element_with_separator+net.getKey();
                     var gatewayId = name_to_id.get(gateway);
                     if (gatewayId == null)
                         throw new RuntimeException("ERROR: unresolved gateway " + gateway);
-                    cap[gatewayId][bogusDst] = niot;
-                    cost[gatewayId][bogusDst] = 1;
+                    graph.setArc(gatewayId, bogusDst, niot, 1);
                 }
 
                 // Now, we can run the pathing algorithm
-                MinCostMaxFlow algorithm = new MinCostMaxFlow();
-                var result = algorithm.getMaxFlow(cap, cost, bogusSrc, bogusDst);
+                var algorithm = graph.build();
+                var result = algorithm.solve(bogusSrc, bogusDst);
                 Set<String> computedIoTPaths = new HashSet<>();
                 HashMultimap<String, List<String>> obtainedPaths = HashMultimap.create();
 
@@ -252,15 +244,16 @@ public class AbstractNetworkAgent extends AbstractAgent {
                         throw new RuntimeException("We are expecting the opposite, that the mined paths are less than the expected ones");
                     }
                     for (var v : devices.entrySet()) {
-                        if (computedIoTPaths.contains(v.getKey())) continue; // I am not re-computing the paths that were computed before
-                        var iotDeviceId = name_to_id.get(v.getKey());
-                        algorithm.bellman_ford_moore(iotDeviceId);
-                        var p = algorithm.map.get(new ImmutablePair<>(iotDeviceId, bogusDst));
+                        var iot = iot_prefix+v.getKey();
+                        if (computedIoTPaths.contains(iot)) continue; // I am not re-computing the paths that were computed before
+                        var iotDeviceId = name_to_id.get(iot);
+                        var p = algorithm.shortestPaths(iotDeviceId).get(bogusDst);
                         if (p == null) {
                             throw new RuntimeException("There should always be a path for the device towards the bogus destination! " + v.getKey()+ " with id  "+ iotDeviceId);
                         }
-                        var pp = p.stream().map(id_to_name::get).collect(Collectors.toList());
-                        paths.put(v.getKey(), pp);
+                        // As for the mined paths, skipping the doppelgängers and the bogus destination
+                        var pp = p.stream().map(id_to_name::get).filter(Objects::nonNull).collect(Collectors.toList());
+                        paths.put(iot, pp);
                     }
                     if ((paths.size() != niot)) {
                         throw new RuntimeException("That should have fixed the problem! " + paths.size()+ " vs "+ niot);
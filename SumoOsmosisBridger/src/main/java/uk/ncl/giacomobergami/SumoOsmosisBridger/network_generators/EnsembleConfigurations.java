@@ -156,9 +156,9 @@ public class EnsembleConfigurations {
         public double end_vehicle_time;                 // 100.0
         public String iots;                             // /home/giacomo/IdeaProjects/SimulatorBridger/stats/test_vehicle.json
         public String iot_generators;                   // /home/giacomo/IdeaProjects/SimulatorBridger/iot_generators.yaml
-        public String strongly_connected_components;    // /home/giacomo/IdeaProjects/SimulatorBridger/rsu.csv_timed_scc.json"
+        public String strongly_connected_components;    // /home/giacomo/IdeaProjects/SimulatorBridger/rsu.csv_network.trace, or rsu.csv_timed_scc.json
         public String edge_information;                 // /home/giacomo/IdeaProjects/SimulatorBridger/stats/test_rsu.json
-        public String edge_neighbours;                  // /home/giacomo/IdeaProjects/SimulatorBridger/rsu.csv_neighboursChange.json
+        public String edge_neighbours;                  // ignored for a network trace, or /home/giacomo/IdeaProjects/SimulatorBridger/rsu.csv_neighboursChange.json
         public String cloud_general_configuration;      // /home/giacomo/IdeaProjects/SimulatorBridger/cloud_generators.yaml
         public String edge_general_configuration;       // /home/giacomo/IdeaProjects/SimulatorBridger/edge_generators.yaml
         public String wan_general_configuration;       // /home/giacomo/IdeaProjects/SimulatorBridger/edge_generators.yaml
@@ -166,6 +166,10 @@ public class EnsembleConfigurations {
         public String mel_app_policy;
         public boolean only_one_mel_per_edge_network;
         public String mel_routing_policy;
+        public String future_queue;
+        public String future_queue_trace;
+        public int logical_process_threads;
+        public String history_sink;
         public boolean ignore_csv_apps;
         public String AGENT_CONFIG_FILE;
         public String RES_CONFIG_FILE;
@@ -299,7 +303,7 @@ public class EnsembleConfigurations {
                 WANInfrastructureGenerator.generate(cloudNets, edgeNets, conf, global_network_links);
 
 
-        return new GlobalConfigurationSettings(actualEdgeDataCenters,
+        var result = new GlobalConfigurationSettings(actualEdgeDataCenters,
                 actualCloudDataCenters,
                 iotDevices,
                 global_network_links,
@@ -316,6 +320,11 @@ public class EnsembleConfigurations {
                 confDis.AGENT_CONFIG_FILE,
                 confDis.RES_CONFIG_FILE,
                 confDis.netsim_output);
+        result.future_queue = confDis.future_queue;
+        result.future_queue_trace = confDis.future_queue_trace;
+        result.logical_process_threads = confDis.logical_process_threads;
+        result.history_sink = confDis.history_sink;
+        return result;
     }
 
 
@@ -9,6 +9,7 @@ import uk.ncl.giacomobergami.SumoOsmosisBridger.network_generators.EdgeInfrastru
 import uk.ncl.giacomobergami.utils.algorithms.ClusterDifference;
 import uk.ncl.giacomobergami.utils.algorithms.ReconstructorIterator;
 import uk.ncl.giacomobergami.utils.algorithms.StringComparator;
+import uk.ncl.giacomobergami.utils.data.TimedNetworkTrace;
 import uk.ncl.giacomobergami.utils.shared_data.edge.Edge;
 import uk.ncl.giacomobergami.utils.shared_data.edge.TimedEdge;
 import uk.ncl.giacomobergami.utils.structures.ImmutablePair;
@@ -62,12 +63,16 @@ public class EdgeNetworksGenerator {
         Type networkType = new TypeToken<HashMap<String, ImmutablePair<ImmutablePair<Double, List<String>>, List<ClusterDifference<String>>>>>() {}.getType();
         Gson gson = new Gson();
 
+        // The network trace provides both the SCCs and the neighbours, in place of the JSON files
+        boolean fromTrace = scc_json.getName().endsWith(".trace");
         BufferedReader reader1 = null, reader2 = null, reader3 = null;
         retrieved_basic_information = new HashMap<>();
         try {
-            reader1 = new BufferedReader(new FileReader(scc_json.getAbsoluteFile()));
+            if (!fromTrace) {
+                reader1 = new BufferedReader(new FileReader(scc_json.getAbsoluteFile()));
+                reader3 = new BufferedReader(new FileReader(neigh_json.getAbsoluteFile()));
+            }
             reader2 = new BufferedReader(new FileReader(rsu_json.getAbsoluteFile()));
-            reader3 = new BufferedReader(new FileReader(neigh_json.getAbsoluteFile()));
         } catch (FileNotFoundException e) {
             e.printStackTrace();
             System.exit(1);
@@ -75,7 +80,12 @@ public class EdgeNetworksGenerator {
         {
             // Getting the static information of the SCCs
             TreeMap<Double, Set<Set<String>>> subnets_in_time;
-            subnets_in_time = gson.fromJson(reader1, sccType);
+            if (fromTrace) {
+                subnets_in_time = new TreeMap<>();
+                readNetworkTrace(scc_json, subnets_in_time);
+            } else {
+                subnets_in_time = gson.fromJson(reader1, sccType);
+            }
             HashMap<Set<Set<String>>, TreeSet<Double>> elements = new HashMap<>();
             subnets_in_time.forEach((x,y)-> elements.computeIfAbsent(y, sets -> new TreeSet<>()).add(x));
             subnets_in_time.clear();
@@ -109,26 +119,53 @@ public class EdgeNetworksGenerator {
             TreeSet<Double> ticks = new TreeSet<>(retrieved_basic_information.keySet());
 
             // Reconstructing the edges' neighbours
-            HashMap<String, ImmutablePair<ImmutablePair<Double, List<String>>, List<ClusterDifference<String>>>>
-                    adjacencyListVariationInTime =  gson.fromJson(reader3, networkType);
-            for (var cp: adjacencyListVariationInTime.entrySet()) {
-                var it = new ReconstructorIterator<>(cp.getValue(), StringComparator.getInstance());
-                for (Double tick : ticks) {
-                    if (!it.hasNext()) throw new RuntimeException("ERROR!");
-                    timed_connectivity.computeIfAbsent(tick, any -> HashMultimap.create()).putAll(cp.getKey(), it.next());
+            if (!fromTrace) {
+                HashMap<String, ImmutablePair<ImmutablePair<Double, List<String>>, List<ClusterDifference<String>>>>
+                        adjacencyListVariationInTime = gson.fromJson(reader3, networkType);
+                for (var cp : adjacencyListVariationInTime.entrySet()) {
+                    var it = new ReconstructorIterator<>(cp.getValue(), StringComparator.getInstance());
+                    for (Double tick : ticks) {
+                        if (!it.hasNext()) throw new RuntimeException("ERROR!");
+                        timed_connectivity.computeIfAbsent(tick, any -> HashMultimap.create()).putAll(cp.getKey(), it.next());
+                    }
                 }
             }
         }
         try {
-            reader1.close();
+            if (reader1 != null) reader1.close();
             reader2.close();
-            reader3.close();
+            if (reader3 != null) reader3.close();
         } catch (IOException e) {
             e.printStackTrace();
             System.exit(1);
         }
     }
 
+    /**
+     * Reads the SCCs and the neighbours of the RSUs at each tick from the network trace
+     */
+    private void readNetworkTrace(File trace, TreeMap<Double, Set<Set<String>>> subnets_in_time) {
+        var reader = TimedNetworkTrace.beginRead(trace.getAbsoluteFile());
+        if (reader == null) {
+            System.exit(1);
+        }
+        HashMap<String, List<String>> adjacency = new HashMap<>();
+        while (reader.hasNext()) {
+            var tick = reader.next();
+            Set<Set<String>> scc = new HashSet<>();
+            tick.scc.forEach(x -> scc.add(new HashSet<>(x)));
+            subnets_in_time.put(tick.tick, scc);
+            adjacency.putAll(tick.changedAdjacency);
+            var connectivity = timed_connectivity.computeIfAbsent(tick.tick, any -> HashMultimap.create());
+            adjacency.forEach(connectivity::putAll);
+        }
+        try {
+            reader.close();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
 //    public void updateEdgeDevice(EdgeDevice device, double lower, double upper) {
 //        var retrieve = retriveEdgeLocationInTime(lower, device.getDeviceName());
 //        if (retrieve == null) return;
@@ -6,20 +6,45 @@ import org.cloudbus.osmosis.core.OsmoticBroker;
 import uk.ncl.giacomobergami.components.iot.IoTDevice;
 import uk.ncl.giacomobergami.components.mel_routing.RoundRobinMELSwitchPolicy;
 import uk.ncl.giacomobergami.utils.gir.CartesianPoint;
+import uk.ncl.giacomobergami.utils.gir.SpatialGrid;
 import uk.ncl.giacomobergami.utils.gir.SquaredCartesianDistanceFunction;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 public class MELNearestDistanceSwitch extends RoundRobinMELSwitchPolicy {
     private final DistanceFunction<CartesianPoint> f;
     private Map<String, Integer> roundRobinMelMap;
+    private OsmoticBroker indexedBroker;
+    private int indexedVersion;
+    private SpatialGrid<EdgeDevice> edgeHosts;
 
     public MELNearestDistanceSwitch() {
         f = SquaredCartesianDistanceFunction.getInstance();
         roundRobinMelMap = new HashMap<>();
+        indexedBroker = null;
+        indexedVersion = 0;
+        edgeHosts = null;
+    }
+
+    /**
+     * Indexes the edge devices by their signal range, so that they are not resolved again at each
+     * request unless the broker indexes its VMs again
+     */
+    private SpatialGrid<EdgeDevice> edgeHosts(OsmoticBroker self) {
+        int version = self.getVmIndexVersion();
+        if ((edgeHosts == null) || (indexedBroker != self) || (indexedVersion != version)) {
+            // A host might appear more than once: keeping its last occurrence, as the last nearest one is chosen
+            LinkedHashMap<String, EdgeDevice> resolved = new LinkedHashMap<>();
+            for (String host : self.selectVMFromHostPredicate()) {
+                var edgeHost = self.resolveEdgeDeviceFromId(host);
+                resolved.remove(host);
+                if (edgeHost != null) resolved.put(host, edgeHost);
+            }
+            edgeHosts = new SpatialGrid<>(resolved.values(), x -> x.signalRange);
+            indexedBroker = self;
+            indexedVersion = version;
+        }
+        return edgeHosts;
     }
 
     @Override
@@ -42,16 +67,11 @@ public class MELNearestDistanceSwitch extends RoundRobinMELSwitchPolicy {
                         OsmoticBroker self) {
         double minimumDistance = Double.MAX_VALUE;
         EdgeDevice minimumHost = null;
-        var hosts = self.selectVMFromHostPredicate();
-        for (String host : hosts) {
-            var edgeHost = self.resolveEdgeDeviceFromId(host);
-            double edgeSqRange = edgeHost.signalRange * edgeHost.signalRange;
+        for (var edgeHost : edgeHosts(self).containing(ioTDevice)) {
             var squaredDistance = f.getDistance(ioTDevice, edgeHost);
-            if (squaredDistance <= edgeSqRange) {
-                if (squaredDistance <= minimumDistance) {
-                    minimumDistance = squaredDistance;
-                    minimumHost = edgeHost;
-                }
+            if (squaredDistance <= minimumDistance) {
+                minimumDistance = squaredDistance;
+                minimumHost = edgeHost;
             }
         }
         if (minimumHost != null) {
@@ -1,6 +1,7 @@
 package uk.ncl.giacomobergami.SumoOsmosisBridger.traffic_converter;
 
 import com.opencsv.exceptions.CsvException;
+import com.opencsv.exceptions.CsvValidationException;
 import org.apache.commons.lang3.builder.CompareToBuilder;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -29,6 +30,7 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.io.FileReader;
@@ -41,6 +43,7 @@ public class DfTConverter extends TrafficConverter {
 
     private final SUMOConfiguration concreteConf;
     private long earliestTime;
+    private long latestTime;
     private final NetworkGenerator netGen;
     private final RSUUpdater rsuUpdater;
     private DocumentBuilder db;
@@ -54,6 +57,9 @@ public class DfTConverter extends TrafficConverter {
     List<TimedEdge> timedEdges = new ArrayList<>();
     List<String> rows = new ArrayList<>();
     List<Double> temporalOrdering;
+    HashMap<Long, DfTReader.Row> lastRowPerTime;
+    HashMap<String, DfTReader.Row> countPoints;
+    boolean ingested;
     private static Logger logger = LogManager.getRootLogger();
 
     public DfTConverter(TrafficConfiguration conf) {
@@ -67,6 +73,9 @@ public class DfTConverter extends TrafficConverter {
         }
         concreteConf = YAML.parse(SUMOConfiguration.class, new File(conf.YAMLConverterConfiguration)).orElseThrow();
         temporalOrdering = new ArrayList<>();
+        lastRowPerTime = new HashMap<>();
+        countPoints = new HashMap<>();
+        ingested = false;
         networkFile = null;
         timedIoTDevices = new HashMap<>();
         roadSideUnits = new HashSet<>();
@@ -77,124 +86,84 @@ public class DfTConverter extends TrafficConverter {
         connectionPath = new StraightforwardAdjacencyList<>();
     }
 
+    /**
+     * Reads the DfT file in a single pass, only retaining what the conversion needs: the first row
+     * of each count point, locating its RSU, and the row providing the vehicles at each time, i.e.
+     * the last one when the rows are ordered by time and count point. The size of the retained
+     * data depends on the number of distinct times and count points, and not on the file's rows.
+     */
+    private boolean ingest() {
+        File file = new File(concreteConf.DfT_file_path);
+        lastRowPerTime.clear();
+        countPoints.clear();
+        earliestTime = Long.MAX_VALUE;
+        latestTime = Long.MIN_VALUE;
+        try (DfTReader reader = new DfTReader(file)) {
+            while (reader.hasNext()) {
+                var row = reader.next();
+                earliestTime = Math.min(earliestTime, row.epochSecond);
+                latestTime = Math.max(latestTime, row.epochSecond);
+                countPoints.putIfAbsent(row.countPointId, row);
+                lastRowPerTime.merge(row.epochSecond, row, (old, curr) -> curr.countPointNumber >= old.countPointNumber ? curr : old);
+            }
+        } catch (IOException | CsvValidationException | IllegalStateException | NumberFormatException | DateTimeParseException e) {
+            // Failing the conversion, rather than converting the counts read so far
+            logger.error("Unable to read the DfT file " + file + ": " + e.getMessage());
+            throw new RuntimeException("ERROR: malformed or unreadable DfT file " + file, e);
+        }
+        if (lastRowPerTime.isEmpty()) {
+            earliestTime = latestTime = 0;
+        }
+        ingested = true;
+        return true;
+    }
+
     @Override
     protected boolean initReadSimulatorOutput() {
         connectionPath.clear();
         temporalOrdering.clear();
         timedIoTDevices.clear();
+        roadSideUnits.clear();
         networkFile = null;
 
-        File file = new File(concreteConf.DfT_file_path);
-        Document DfTFile = null;
-
         logger.trace("Loading the traffic light information...");
+        if (!ingested && !ingest()) {
+            return false;
+        }
 
-        try {
-            CSVReader reader = new CSVReader(new FileReader(file));
-            List<String[]> rows = reader.readAll();
-            //determining the indices of columns
-            int timeColumnIndex = Arrays.asList(rows.get(0)).indexOf("hour");
-            int VehColumnIndex = Arrays.asList(rows.get(0)).indexOf("All_motor_vehicles");
-            int eastColumnIndex = Arrays.asList(rows.get(0)).indexOf("Easting");
-            int northColumnIndex = Arrays.asList(rows.get(0)).indexOf("Northing");
-            int laneColumnIndex = Arrays.asList(rows.get(0)).indexOf("Direction_of_travel");
-            int dateColumnIndex = Arrays.asList(rows.get(0)).indexOf("Count_date");
-            int idColumnIndex = Arrays.asList(rows.get(0)).indexOf("Count_point_id");
-            int hourColumnIndex = Arrays.asList(rows.get(0)).indexOf("hour");
-            DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
-
-            Function<String[], ImmutablePair<LocalDateTime, Integer>> f = o1 -> {
-                String dateString = o1[dateColumnIndex];
-                String hourString = o1[hourColumnIndex];
-                LocalDateTime dateTime = LocalDateTime.parse(dateString, dateFormatter);
-                // dateTime = LocalDate.parse(dateString, dateFormatter).atStartOfDay();
-                int hour = Integer.parseInt(hourString);
-                dateTime = dateTime.withHour(hour); // add the time in "hour" to the date
-                var id = o1[idColumnIndex];
-                return new ImmutablePair<>(dateTime, Integer.parseInt(id));
-            };
-            var body = rows.subList(1, rows.size());
-            body.sort(Comparator.comparing(f::apply));
-
-            for (int i = 0; i < body.size(); i++) {
-                String[] row = body.get(i);
-                //   String curr = String.valueOf(row[dateColumnIndex]);
-                //  double currTime = Double.parseDouble(row[timeColumnIndex]); //
-                //double currTime = 1; // bec each row has 1 hour which is 3600 sec
-                double x = Double.parseDouble(row[eastColumnIndex]);
-                double y = Double.parseDouble(row[northColumnIndex]);
-
-                String lane = row[laneColumnIndex];
-                String dateString = row[dateColumnIndex];
-                String hourString = row[hourColumnIndex];
-                //  String dateTimeString = dateString + "  " + hourString;
-                //  System.out.println("dateString" + dateString);
-                LocalDateTime dateTime = LocalDateTime.parse(dateString, dateFormatter);
-                // dateTime = LocalDate.parse(dateString, dateFormatter).atStartOfDay();
-                int hour = Integer.parseInt(hourString);
-                dateTime = dateTime.withHour(hour); // add the time in "hour" to the date
-                double currTime =(dateTime.toEpochSecond(ZoneOffset.UTC) -earliestTime);
-
-                temporalOrdering.add(currTime);
-                var ls = new ArrayList<TimedIoT>();
-                timedIoTDevices.put(currTime, ls);
-                int N = Integer.parseInt(row[VehColumnIndex]);
-                // generate ID for vehicles
-                for (int counter = 0; counter < N;) {
-                    TimedIoT rec = new TimedIoT();
-                    rec.id = "id_" + counter;
-                    //rec.numberOfVeh = N; // need to check
-                    rec.x = x;
-                    rec.y = y;
-                    rec.lane = lane;
-                    rec.simtime = currTime; //need to solve it!! let it i?
-                    ls.add(rec);
-                    counter++;
-                }
-            }
-              // 1. Extract all ID values
-            Set<String> uniqueIds = new HashSet<>();
-            for (int i = 1; i < body.size(); i++) {
-                uniqueIds.add(body.get(i)[idColumnIndex]);
-            }
-            List<String> allIds = new ArrayList<>();
-            for (int i = 1; i < body.size(); i++) {
-                allIds.add(body.get(i)[idColumnIndex]);
-            }
-            // 2. Filter out duplicates
-            Set<String> traffic_lights = new HashSet<>(allIds);
-            // 3. Loop over the unique ID values
-            for (String id : traffic_lights) {
-                for (int i = 0; i < body.size(); i++) {
-                    if (body.get(i)[idColumnIndex].equals(id)) {
-                       var curr = rows.get(i);
-                       var rsu = new TimedEdge(
-                               String.valueOf(curr[idColumnIndex]),
-                                Double.parseDouble(curr[eastColumnIndex]),
-                                Double.parseDouble(curr[northColumnIndex]),
-                                concreteConf.default_rsu_communication_radius,
-                                concreteConf.default_max_vehicle_communication, 0);
-                        rsuUpdater.accept(rsu);
-                        roadSideUnits.add(rsu);
-                        break;
-                    }
-                }
+        for (var row : lastRowPerTime.values()) {
+            double currTime = row.epochSecond - earliestTime;
+            temporalOrdering.add(currTime);
+            var ls = new ArrayList<TimedIoT>();
+            timedIoTDevices.put(currTime, ls);
+            // one cohort for all the counted vehicles, expanded into id_0...id_N-1 only when needed
+            if (row.vehicles > 0) {
+                TimedIoT rec = TimedIoT.cohort("id", row.vehicles);
+                rec.x = row.easting;
+                rec.y = row.northing;
+                rec.lane = row.lane;
+                rec.simtime = currTime;
+                ls.add(rec);
             }
-                var tmp = netGen.apply(roadSideUnits);
-            tmp.forEach((k, v) -> {
-                connectionPath.put(k.id, v.id);
-            });
-            }
-        catch (FileNotFoundException e) {
-            System.out.println("File not found: " + file);
-            e.printStackTrace();
-        } catch (IOException e) {
-            System.out.println("Error reading file: " + file);
-            e.printStackTrace();
-        } catch (CsvException e) {
-            System.out.println("Error parsing CSV file: " + file);
-            e.printStackTrace();
         }
+        for (var row : countPoints.values()) {
+            var rsu = new TimedEdge(row.countPointId,
+                    row.easting,
+                    row.northing,
+                    concreteConf.default_rsu_communication_radius,
+                    concreteConf.default_max_vehicle_communication, 0);
+            rsuUpdater.accept(rsu);
+            roadSideUnits.add(rsu);
+        }
+        var tmp = netGen.apply(roadSideUnits);
+        tmp.forEach((k, v) -> {
+            connectionPath.put(k.id, v.id);
+        });
+
+        // The next conversion reads the file again, as it might have changed
+        lastRowPerTime.clear();
+        countPoints.clear();
+        ingested = false;
         return true;
     }
 
@@ -235,50 +204,13 @@ public class DfTConverter extends TrafficConverter {
 
     @Override
     public boolean runSimulator(TrafficConfiguration conf) {
-        File file = new File(concreteConf.DfT_file_path);
-        try {
-            CSVReader reader = new CSVReader(new FileReader(file));
-            List<String[]> allRows = reader.readAll();
-            String[] headers = allRows.get(0);
-            int dateColumnIndex = Arrays.asList(headers).indexOf("Count_date");
-            int hourColumnIndex = Arrays.asList(headers).indexOf("hour");
-            DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
-
-            // Initialize earliest and latest DateTime to extreme values
-            LocalDateTime earliestDateTime = LocalDateTime.MAX;
-            LocalDateTime latestDateTime = LocalDateTime.MIN;
-
-            for (String[] row : allRows.subList(1, allRows.size())) {
-                String dateString = row[dateColumnIndex];
-                int hour = Integer.parseInt(row[hourColumnIndex]);
-                LocalDateTime dateTime = LocalDate.parse(dateString, dateFormatter).atStartOfDay().withHour(hour);
-
-                if (dateTime.isBefore(earliestDateTime)) {
-                    earliestDateTime = dateTime;
-                }
-                if (dateTime.isAfter(latestDateTime)) {
-                    latestDateTime = dateTime;
-                }
-            }
-
-            earliestTime = earliestDateTime.toEpochSecond(ZoneOffset.UTC);
-            long latestTime = latestDateTime.toEpochSecond(ZoneOffset.UTC);
-
-            // Adjust configuration based on the calculated times
-            conf.begin = 0;
-            conf.end = latestTime - earliestTime;
-            conf.step = 3600; // Assuming each step is 1 second
-
-
-        } catch (FileNotFoundException e) {
-            System.out.println("File not found: " + file);
-            e.printStackTrace();
-            return false;
-        } catch (IOException | CsvException e) {
-            System.out.println("Error reading file: " + file);
-            e.printStackTrace();
+        if (!ingest()) {
             return false;
         }
+        // Adjust configuration based on the calculated times
+        conf.begin = 0;
+        conf.end = latestTime - earliestTime;
+        conf.step = 3600; // Assuming each step is 1 second
         return true;
     }
 
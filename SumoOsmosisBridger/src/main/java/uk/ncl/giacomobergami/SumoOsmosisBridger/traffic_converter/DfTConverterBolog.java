@@ -154,9 +154,8 @@ public class DfTConverterBolog extends TrafficConverter {
                 var ls = new ArrayList<TimedIoT>();
                 timedIoTDevices.put(currTime, ls);
                 int N = Integer.parseInt(row[vehnumColumnIndex]);
-                for (int counter = 0; counter < N; counter++) {
-                    TimedIoT rec = new TimedIoT();
-                    rec.id = "id_" + counter;
+                if (N > 0) {
+                    TimedIoT rec = TimedIoT.cohort("id", N);
                     rec.x = x;
                     rec.y = y;
                     rec.lane = lane;
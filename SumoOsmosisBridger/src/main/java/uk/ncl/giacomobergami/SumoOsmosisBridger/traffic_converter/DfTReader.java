@@ -0,0 +1,107 @@
+package uk.ncl.giacomobergami.SumoOsmosisBridger.traffic_converter;
+
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+
+import java.io.*;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Streaming reader for the DfT raw counts. Differently from reading the whole CSV file, each row is
+ * parsed once, when visited, into a {@link Row} only retaining the fields used by the converter.
+ * As the same count dates recur for all the count points and hours, the date parsing is cached.
+ */
+public class DfTReader implements AutoCloseable, Iterator<DfTReader.Row> {
+    private static final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+
+    public static class Row {
+        public String countPointId;
+        public int countPointNumber;
+        public long epochSecond;
+        public double easting;
+        public double northing;
+        public String lane;
+        public int vehicles;
+    }
+
+    private final CSVReader reader;
+    private final int vehColumnIndex, eastColumnIndex, northColumnIndex, laneColumnIndex,
+            dateColumnIndex, idColumnIndex, hourColumnIndex;
+    private final HashMap<String, Long> dateToEpochSecond;
+    private Row next;
+
+    public DfTReader(File file) throws IOException, CsvValidationException {
+        reader = new CSVReader(new BufferedReader(new FileReader(file)));
+        String[] header = reader.readNext();
+        if (header == null) {
+            reader.close();
+            throw new IOException("Empty DfT file: " + file);
+        }
+        List<String> columns = Arrays.asList(header);
+        vehColumnIndex = columns.indexOf("All_motor_vehicles");
+        eastColumnIndex = columns.indexOf("Easting");
+        northColumnIndex = columns.indexOf("Northing");
+        laneColumnIndex = columns.indexOf("Direction_of_travel");
+        dateColumnIndex = columns.indexOf("Count_date");
+        idColumnIndex = columns.indexOf("Count_point_id");
+        hourColumnIndex = columns.indexOf("hour");
+        dateToEpochSecond = new HashMap<>();
+        next = null;
+    }
+
+    /**
+     * The time of the count is the one of its date, with the hour replaced by the count's hour
+     */
+    private long epochSecond(String date, int hour) {
+        long midnight = dateToEpochSecond.computeIfAbsent(date, d -> LocalDateTime.parse(d, dateFormatter)
+                .withHour(0)
+                .toEpochSecond(ZoneOffset.UTC));
+        return midnight + hour * 3600L;
+    }
+
+    private Row readRow() throws IOException, CsvValidationException {
+        String[] row = reader.readNext();
+        if (row == null) return null;
+        Row result = new Row();
+        result.countPointId = row[idColumnIndex];
+        result.countPointNumber = Integer.parseInt(result.countPointId);
+        result.epochSecond = epochSecond(row[dateColumnIndex], Integer.parseInt(row[hourColumnIndex]));
+        result.easting = Double.parseDouble(row[eastColumnIndex]);
+        result.northing = Double.parseDouble(row[northColumnIndex]);
+        result.lane = row[laneColumnIndex];
+        result.vehicles = Integer.parseInt(row[vehColumnIndex]);
+        return result;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = readRow();
+            } catch (IOException | CsvValidationException e) {
+                throw new IllegalStateException("Malformed DfT file", e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public Row next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        var result = next;
+        next = null;
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
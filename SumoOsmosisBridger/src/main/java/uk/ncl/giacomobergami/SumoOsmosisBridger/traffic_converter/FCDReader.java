@@ -0,0 +1,114 @@
+package uk.ncl.giacomobergami.SumoOsmosisBridger.traffic_converter;
+
+import uk.ncl.giacomobergami.utils.shared_data.iot.TimedIoT;
+import uk.ncl.giacomobergami.utils.structures.ImmutablePair;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streaming reader for the SUMO floating car data (<code>--fcd-output</code>) traces. Differently
+ * from loading the whole trace in a DOM, only one timestep is kept in memory at a time: each
+ * element returned by the iterator is the time of a timestep, together with the vehicles at that
+ * time. Traces compressed with gzip (<code>.gz</code>) are decompressed on the fly.
+ */
+public class FCDReader implements AutoCloseable, Iterator<ImmutablePair<Double, List<TimedIoT>>> {
+    private final InputStream stream;
+    private final XMLStreamReader reader;
+    private ImmutablePair<Double, List<TimedIoT>> next;
+
+    public FCDReader(File file) throws IOException, XMLStreamException {
+        InputStream is = new BufferedInputStream(new FileInputStream(file));
+        if (file.getName().endsWith(".gz")) {
+            is = new GZIPInputStream(is);
+        }
+        stream = is;
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        reader = factory.createXMLStreamReader(stream);
+        next = null;
+    }
+
+    /**
+     * Reads the next timestep, skipping the elements outside the timesteps
+     * @return the next timestep, or null if the trace is over
+     * @throws XMLStreamException   If the trace is not well-formed
+     */
+    private ImmutablePair<Double, List<TimedIoT>> readTimestep() throws XMLStreamException {
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("timestep")) {
+                double time = Double.parseDouble(reader.getAttributeValue(null, "time"));
+                List<TimedIoT> vehicles = new ArrayList<>();
+                int depth = 1;
+                while (depth > 0) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        if (depth == 1 && reader.getLocalName().equals("vehicle")) {
+                            vehicles.add(readVehicle(time));
+                        }
+                        depth++;
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        depth--;
+                    }
+                }
+                return new ImmutablePair<>(time, vehicles);
+            }
+        }
+        return null;
+    }
+
+    private TimedIoT readVehicle(double time) {
+        TimedIoT rec = new TimedIoT();
+        rec.angle = doubleAttribute("angle");
+        rec.x = doubleAttribute("x");
+        rec.y = doubleAttribute("y");
+        rec.speed = doubleAttribute("speed");
+        rec.pos = doubleAttribute("pos");
+        rec.slope = doubleAttribute("slope");
+        rec.id = reader.getAttributeValue(null, "id");
+        rec.type = reader.getAttributeValue(null, "type");
+        rec.lane = reader.getAttributeValue(null, "lane");
+        rec.simtime = time;
+        return rec;
+    }
+
+    private double doubleAttribute(String name) {
+        String value = reader.getAttributeValue(null, name);
+        return value == null ? 0.0 : Double.parseDouble(value);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = readTimestep();
+            } catch (XMLStreamException e) {
+                throw new IllegalStateException("Malformed FCD trace", e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public ImmutablePair<Double, List<TimedIoT>> next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        var result = next;
+        next = null;
+        return result;
+    }
+
+    @Override
+    public void close() throws Exception {
+        reader.close();
+        stream.close();
+    }
+}
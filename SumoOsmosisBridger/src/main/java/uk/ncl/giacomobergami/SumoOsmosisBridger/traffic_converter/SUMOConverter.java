@@ -3,7 +3,6 @@ package uk.ncl.giacomobergami.SumoOsmosisBridger.traffic_converter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.w3c.dom.Document;
-import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 import uk.ncl.giacomobergami.traffic_converter.abstracted.TrafficConverter;
@@ -17,6 +16,7 @@ import uk.ncl.giacomobergami.utils.data.YAML;
 import uk.ncl.giacomobergami.utils.pipeline_confs.TrafficConfiguration;
 import uk.ncl.giacomobergami.utils.shared_data.edge.TimedEdge;
 import uk.ncl.giacomobergami.utils.shared_data.iot.TimedIoT;
+import uk.ncl.giacomobergami.utils.structures.ImmutablePair;
 import uk.ncl.giacomobergami.utils.structures.StraightforwardAdjacencyList;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -26,6 +26,7 @@ import javax.xml.xpath.XPathExpressionException;
 import java.io.*;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 public class SUMOConverter extends TrafficConverter {
@@ -37,7 +38,7 @@ public class SUMOConverter extends TrafficConverter {
     List<Double> temporalOrdering;
     Document networkFile;
     StraightforwardAdjacencyList<String> connectionPath;
-    HashMap<Double, List<TimedIoT>> timedIoTDevices;
+    ImmutablePair<Double, List<TimedIoT>> currentTimestep;
     HashSet<TimedEdge> roadSideUnits;
     private static Logger logger = LogManager.getRootLogger();
 
@@ -53,7 +54,7 @@ public class SUMOConverter extends TrafficConverter {
         concreteConf = YAML.parse(SUMOConfiguration.class, new File(conf.YAMLConverterConfiguration)).orElseThrow();
         temporalOrdering = new ArrayList<>();
         networkFile = null;
-        timedIoTDevices = new HashMap<>();
+        currentTimestep = null;
         roadSideUnits = new HashSet<>();
         netGen = NetworkGeneratorFactory.generateFacade(concreteConf.generateRSUAdjacencyList);
         rsuUpdater = RSUUpdaterFactory.generateFacade(concreteConf.updateRSUFields,
@@ -66,7 +67,7 @@ public class SUMOConverter extends TrafficConverter {
     protected boolean initReadSimulatorOutput() {
         connectionPath.clear();
         temporalOrdering.clear();
-        timedIoTDevices.clear();
+        currentTimestep = null;
         networkFile = null;
 
         File file = new File(concreteConf.sumo_configuration_file_path);
@@ -112,50 +113,7 @@ public class SUMOConverter extends TrafficConverter {
             logger.error("ERROR: sumo has not built the trace file: " + trajectory_python.getAbsolutePath());
             return false;
         }
-
-        logger.trace("Loading the vehicle information...");
-        Document trace_document = null;
-        try {
-            trace_document = db.parse(trajectory_python);
-        } catch (SAXException | IOException e) {
-            e.printStackTrace();
-            return false;
-        }
-        NodeList timestamp_eval;
-        try {
-            timestamp_eval = XPathUtil.evaluateNodeList(trace_document, "/fcd-export/timestep");
-        } catch (XPathExpressionException e) {
-            e.printStackTrace();
-            return false;
-        }
-
-        for (int i = 0, N = timestamp_eval.getLength(); i<N; i++) {
-            var curr = timestamp_eval.item(i);
-            double currTime = Double.parseDouble(curr.getAttributes().getNamedItem("time").getTextContent());
-            temporalOrdering.add(currTime);
-            var ls = new ArrayList<TimedIoT>();
-            timedIoTDevices.put(currTime, ls);
-            var tag = timestamp_eval.item(i).getChildNodes();
-            for (int j = 0, M = tag.getLength(); j < M; j++) {
-                var veh = tag.item(j);
-                if (veh.getNodeType() == Node.ELEMENT_NODE) {
-                    assert (Objects.equals(veh.getNodeName(), "vehicle"));
-                    var attrs = veh.getAttributes();
-                    TimedIoT rec = new TimedIoT();
-                    rec.angle = Double.parseDouble(attrs.getNamedItem("angle").getTextContent());
-                    rec.x = Double.parseDouble(attrs.getNamedItem("x").getTextContent());
-                    rec.y = Double.parseDouble(attrs.getNamedItem("y").getTextContent());
-                    rec.speed = Double.parseDouble(attrs.getNamedItem("speed").getTextContent());
-                    rec.pos = Double.parseDouble(attrs.getNamedItem("pos").getTextContent());
-                    rec.slope = Double.parseDouble(attrs.getNamedItem("slope").getTextContent());
-                    rec.id = (attrs.getNamedItem("id").getTextContent());
-                    rec.type = (attrs.getNamedItem("type").getTextContent());
-                    rec.lane = (attrs.getNamedItem("lane").getTextContent());
-                    rec.simtime = currTime;
-                    ls.add(rec);
-                }
-            }
-        }
+        // The vehicle information is streamed by forEachTick, one timestep at a time
 
         NodeList traffic_lights = null;
         try {
@@ -182,14 +140,45 @@ public class SUMOConverter extends TrafficConverter {
         return true;
     }
 
+    @Override
+    protected boolean forEachTick(BiConsumer<Double, Collection<TimedIoT>> consumer) {
+        logger.trace("Streaming the vehicle information...");
+        try (FCDReader reader = new FCDReader(new File(concreteConf.trace_file))) {
+            while (reader.hasNext()) {
+                currentTimestep = reader.next();
+                double currTime = currentTimestep.getLeft();
+                if ((!temporalOrdering.isEmpty()) && (temporalOrdering.get(temporalOrdering.size()-1) >= currTime)) {
+                    logger.error("ERROR: the timesteps in the trace file are not in increasing order: " + currTime);
+                    return false;
+                }
+                temporalOrdering.add(currTime);
+                consumer.accept(currTime, currentTimestep.getRight());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            currentTimestep = null;
+        }
+        return true;
+    }
+
+    /**
+     * @return the ticks streamed so far by {@link #forEachTick(BiConsumer)}
+     */
     @Override
     protected List<Double> getSimulationTimeUnits() {
         return temporalOrdering;
     }
 
+    /**
+     * @return the IoT devices of the timestep being streamed, as the trace is not kept in memory
+     */
     @Override
     protected Collection<TimedIoT> getTimedIoT(Double tick) {
-        return timedIoTDevices.get(tick);
+        if ((currentTimestep == null) || (!currentTimestep.getLeft().equals(tick)))
+            return Collections.emptyList();
+        return currentTimestep.getRight();
     }
 
     @Override
@@ -209,7 +198,7 @@ public class SUMOConverter extends TrafficConverter {
     @Override
     protected void endReadSimulatorOutput() {
         temporalOrdering.clear();
-        timedIoTDevices.clear();
+        currentTimestep = null;
         networkFile = null;
         connectionPath.clear();
     }
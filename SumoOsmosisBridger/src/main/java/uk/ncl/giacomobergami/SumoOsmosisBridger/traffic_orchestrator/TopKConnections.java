@@ -1,9 +1,8 @@
 package uk.ncl.giacomobergami.SumoOsmosisBridger.traffic_orchestrator;
 
-import com.eatthepath.jvptree.VPTree;
 import uk.ncl.giacomobergami.traffic_orchestrator.rsu_network.netgen.NetworkGenerator;
 import uk.ncl.giacomobergami.utils.data.YAML;
-import uk.ncl.giacomobergami.utils.gir.SquaredCartesianDistanceFunction;
+import uk.ncl.giacomobergami.utils.gir.SpatialGrid;
 import uk.ncl.giacomobergami.utils.shared_data.edge.TimedEdge;
 import uk.ncl.giacomobergami.utils.structures.StraightforwardAdjacencyList;
 
@@ -14,7 +13,6 @@ import java.util.Objects;
 
 public class TopKConnections implements NetworkGenerator {
 
-    SquaredCartesianDistanceFunction dist = SquaredCartesianDistanceFunction.getInstance();
     private TopKConnectionsConfiguration conf;
 
     public TopKConnections() {
@@ -23,16 +21,16 @@ public class TopKConnections implements NetworkGenerator {
 
     @Override
     public StraightforwardAdjacencyList<TimedEdge> apply(Collection<TimedEdge> rsuses) {
-        var tree = new VPTree<>(dist, rsuses);
+        var grid = new SpatialGrid<>(rsuses);
         StraightforwardAdjacencyList<TimedEdge> result = new StraightforwardAdjacencyList<>();
         for (var x : rsuses) {
             List<TimedEdge> adj;
             if (conf.squaredDistance > 0.0) {
-                adj = tree.getAllWithinDistance(x, conf.squaredDistance);
+                adj = grid.withinDistance(x, conf.squaredDistance);
             } else if (conf.top_k > 0) {
-                adj = tree.getNearestNeighbors(x, conf.top_k+1);
+                adj = grid.nearest(x, conf.top_k+1);
             } else {
-                adj = tree.getNearestNeighbors(x, 4);
+                adj = grid.nearest(x, 4);
             }
             if ((adj != null) && (adj.isEmpty())) {
                 for (var next : adj) {